@@ -0,0 +1,107 @@
+package com.sseltzer.selenium.internal.test.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ *
+ *
+ * BenchmarkComparator.java
+ * 
+ * ##About:
+ * 
+ * Compares two JMH JSON result files (as written by `mvn -P benchmark verify`) benchmark by 
+ * benchmark and exits non-zero if any score got worse than the baseline by more than the 
+ * tolerance. The direction follows the mode: throughput should go up, time based modes down. 
+ * Benchmarks present in only one file are listed but never fail the comparison. 
+ * 
+ * ##Usage: 
+ * 
+ *     java BenchmarkComparator baseline.json target/jmh-result.json [tolerancePercent, default 10]
+ *
+ */
+public class BenchmarkComparator {
+	
+	private static final double DEFAULT_TOLERANCE_PERCENT = 10;
+	
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("usage: BenchmarkComparator <baseline.json> <current.json> [tolerancePercent]");
+			System.exit(2);
+		}
+		double tolerance = (args.length > 2) ? Double.parseDouble(args[2]) : DEFAULT_TOLERANCE_PERCENT;
+		Map<String, Score> baseline = read(new File(args[0]));
+		Map<String, Score> current = read(new File(args[1]));
+		
+		int regressions = 0;
+		for (Map.Entry<String, Score> entry : current.entrySet()) {
+			Score before = baseline.get(entry.getKey());
+			Score after = entry.getValue();
+			if (before == null) {
+				System.out.println(String.format("NEW        %s %.3f %s", entry.getKey(), after.value, after.unit));
+				continue;
+			}
+			double change = after.changePercent(before);
+			boolean regressed = change < -tolerance;
+			if (regressed) regressions++;
+			System.out.println(String.format("%-10s %s %.3f -> %.3f %s (%+.1f%%)", 
+					regressed ? "REGRESSED" : "ok", entry.getKey(), before.value, after.value, after.unit, change));
+		}
+		for (String name : baseline.keySet()) {
+			if (!current.containsKey(name)) System.out.println("MISSING    " + name);
+		}
+		if (regressions > 0) {
+			System.out.println(regressions + " benchmark(s) regressed by more than " + tolerance + "%");
+			System.exit(1);
+		}
+	}
+	
+	private static Map<String, Score> read(File file) throws IOException {
+		Map<String, Score> scores = new LinkedHashMap<String, Score>();
+		for (JsonNode run : new ObjectMapper().readTree(file)) {
+			String name = run.path("benchmark").asText() + params(run.path("params"));
+			JsonNode metric = run.path("primaryMetric");
+			scores.put(name, new Score(run.path("mode").asText(), metric.path("score").asDouble(), metric.path("scoreUnit").asText()));
+		}
+		return scores;
+	}
+	
+	private static String params(JsonNode params) {
+		if (params.isMissingNode() || params.size() == 0) return "";
+		StringBuilder output = new StringBuilder();
+		Iterator<Map.Entry<String, JsonNode>> fields = params.fields();
+		while (fields.hasNext()) {
+			Map.Entry<String, JsonNode> field = fields.next();
+			output.append(output.length() == 0 ? "[" : ",").append(field.getKey()).append("=").append(field.getValue().asText());
+		}
+		return output.append("]").toString();
+	}
+	
+	// One benchmark's primary score. 
+	//
+	private static class Score {
+		
+		private final boolean higherIsBetter;
+		private final double value;
+		private final String unit;
+		
+		public Score(String mode, double value, String unit) {
+			this.higherIsBetter = mode.equals("thrpt");
+			this.value = value;
+			this.unit = unit;
+		}
+		
+		// Positive is an improvement, negative a regression, in percent of the baseline. 
+		public double changePercent(Score baseline) {
+			if (baseline.value == 0) return 0;
+			double change = (value - baseline.value) / baseline.value * 100;
+			return higherIsBetter ? change : -change;
+		}
+	}
+}
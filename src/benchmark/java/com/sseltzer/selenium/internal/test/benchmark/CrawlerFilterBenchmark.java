@@ -0,0 +1,68 @@
+package com.sseltzer.selenium.internal.test.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sseltzer.selenium.framework.utility.crawler.UrlFilter;
+
+/**
+ *
+ *
+ * CrawlerFilterBenchmark.java
+ * 
+ * The Crawler's relevance check over a mix of urls resembling a real page's anchors: mostly on 
+ * the seed host, some off site, some hitting the blacklist. Scores are per url. 
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CrawlerFilterBenchmark {
+	
+	private static final int URLS = 1000;
+	
+	private UrlFilter filter;
+	private List<String> urls;
+	
+	@Setup
+	public void setUp() {
+		filter = new UrlFilter("http://www.valpak.com/", Arrays.asList("grocery"));
+		urls = new ArrayList<String>();
+		for (int i = 0; i < URLS; i++) {
+			switch (i % 5) {
+				case 0:  urls.add("http://www.facebook.com/share?u=" + i); break;
+				case 1:  urls.add("http://www.valpak.com/coupons/search?sort=distance&page=" + i); break;
+				default: urls.add("http://www.valpak.com/coupons/savings/category-" + i + "/tampa-fl"); break;
+			}
+		}
+		Collections.shuffle(urls);
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(URLS)
+	public int accepts() {
+		int accepted = 0;
+		for (String url : urls) {
+			if (filter.accepts(url)) accepted++;
+		}
+		return accepted;
+	}
+}
@@ -0,0 +1,58 @@
+package com.sseltzer.selenium.internal.test.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.sseltzer.selenium.framework.data.DataAggregator;
+import com.sseltzer.selenium.framework.data.DataLocator;
+
+/**
+ *
+ *
+ * DataAggregatorBenchmark.java
+ * 
+ * Stores a table of ROWS x KEYS values the way a test scrapes one, reads every value back through 
+ * its DataLocator, then clears the aggregator so each invocation starts empty. Scores are per 
+ * add/get pair. 
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataAggregatorBenchmark {
+	
+	private static final int ROWS = 100;
+	private static final int KEYS = 10;
+	
+	private final String[] keys = new String[KEYS];
+	private final DataLocator[] locators = new DataLocator[ROWS * KEYS];
+	
+	public DataAggregatorBenchmark() {
+		for (int k = 0; k < KEYS; k++) keys[k] = "key" + k;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(ROWS * KEYS)
+	public void addThenGet(Blackhole blackhole) {
+		DataAggregator data = DataAggregator.getInstance();
+		for (int row = 0; row < ROWS; row++) {
+			for (int k = 0; k < KEYS; k++) locators[row * KEYS + k] = data.add("coupons", keys[k], "value");
+		}
+		for (DataLocator locator : locators) blackhole.consume(data.get(locator));
+		data.clear();
+	}
+}
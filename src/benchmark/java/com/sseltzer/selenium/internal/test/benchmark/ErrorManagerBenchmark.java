@@ -0,0 +1,47 @@
+package com.sseltzer.selenium.internal.test.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sseltzer.selenium.framework.error.ErrorManager;
+import com.sseltzer.selenium.framework.error.FillDataBuilder;
+import com.sseltzer.selenium.framework.strings.maps.PublicErrorStrings;
+
+/**
+ *
+ *
+ * ErrorManagerBenchmark.java
+ * 
+ * Cost of building an error message from a template, with one and with two fill markers. 
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ErrorManagerBenchmark {
+	
+	private final FillDataBuilder oneValue = FillDataBuilder.create("#dataPage");
+	private final FillDataBuilder twoValues = FillDataBuilder.create("Expected Title", "Actual Title");
+	
+	@Benchmark
+	public String fillOneMarker() {
+		return ErrorManager.fillErrorString(PublicErrorStrings.DATA_PAGE, oneValue);
+	}
+	
+	@Benchmark
+	public String fillTwoMarkers() {
+		return ErrorManager.fillErrorString(PublicErrorStrings.TITLE_MATCHES, twoValues);
+	}
+}
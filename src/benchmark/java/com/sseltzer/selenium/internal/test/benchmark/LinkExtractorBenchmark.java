@@ -0,0 +1,61 @@
+package com.sseltzer.selenium.internal.test.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sseltzer.selenium.framework.utility.crawler.LinkExtractor;
+
+/**
+ *
+ *
+ * LinkExtractorBenchmark.java
+ * 
+ * The streaming crawler's per-page work: tokenizing a listing page of about 100KB with a few 
+ * hundred anchors, a script block and comments. Scores are per page. 
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LinkExtractorBenchmark {
+	
+	private static final int ANCHORS = 400;
+	
+	private URL page;
+	private String html;
+	
+	@Setup
+	public void setUp() throws IOException {
+		page = new URL("http://www.valpak.com/coupons/savings/tampa-fl");
+		StringBuilder body = new StringBuilder("<!DOCTYPE html><html><head><title>Coupons</title>");
+		body.append("<script type=\"text/javascript\">var links = ['<a href=\"/x\">'];</script></head><body>");
+		for (int i = 0; i < ANCHORS; i++) {
+			body.append("<div class=\"coupon-tile\" data-id=\"").append(i).append("\"><!-- tile ").append(i).append(" -->");
+			body.append("<a class=\"coupon-link\" href=\"/coupons/savings/category-").append(i).append("/tampa-fl?sort=distance&amp;page=2\">");
+			body.append("<img src=\"/img/").append(i).append(".png\" alt=\"Save 20% at a local business\"></a>");
+			body.append("<p>Expires soon. Limit one per household. Valid at participating locations only.</p></div>");
+		}
+		html = body.append("</body></html>").toString();
+	}
+	
+	@Benchmark
+	public int extract() throws IOException {
+		return new LinkExtractor(page).extract(new StringReader(html)).getLinks().size();
+	}
+}
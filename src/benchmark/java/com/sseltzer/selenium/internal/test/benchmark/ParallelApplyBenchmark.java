@@ -0,0 +1,73 @@
+package com.sseltzer.selenium.internal.test.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sseltzer.selenium.framework.utility.parallelism.Function;
+import com.sseltzer.selenium.framework.utility.parallelism.Parallel;
+
+/**
+ *
+ *
+ * ParallelApplyBenchmark.java
+ * 
+ * Framework overhead per task of Parallel.apply: the function does next to nothing, so the score 
+ * (per item, thanks to OperationsPerInvocation) is submission, metering, completion tracking and 
+ * result ordering. 
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelApplyBenchmark {
+	
+	private static final int ITEMS = 1000;
+	
+	@Param({ "fixed", "virtual" })
+	public String mode;
+	
+	private Parallel parallel;
+	private List<Integer> items;
+	
+	private static final Function<Integer, Integer> increment = new Function<Integer, Integer>() {
+		public Integer apply(Integer i) {
+			return i + 1;
+		}
+	};
+	
+	@Setup
+	public void setUp() {
+		parallel = mode.equals("virtual") ? Parallel.virtualThreads(20) : Parallel.fixedThreads(20);
+		items = new ArrayList<Integer>();
+		for (int i = 0; i < ITEMS; i++) items.add(i);
+	}
+	
+	@TearDown
+	public void tearDown() {
+		parallel.shutdownNow();
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(ITEMS)
+	public List<Integer> apply() {
+		return parallel.apply(items, increment);
+	}
+}
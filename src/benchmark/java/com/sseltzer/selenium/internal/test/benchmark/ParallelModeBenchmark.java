@@ -0,0 +1,98 @@
+package com.sseltzer.selenium.internal.test.benchmark;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sseltzer.selenium.framework.utility.parallelism.Function;
+import com.sseltzer.selenium.framework.utility.parallelism.Parallel;
+import com.sseltzer.selenium.internal.test.tests.utility.LoopbackServer;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ *
+ *
+ * ParallelModeBenchmark.java 
+ *
+ * The default fixed 20 thread Parallel against Parallel.virtualThreads(500) on blocking HTTP 
+ * fetches from a LoopbackServer that answers after `latencyMillis`. Each request waits on that 
+ * latency, which is exactly the case where a thread count, not the CPU, is the bottleneck. Scores 
+ * are per request; without virtual thread support the "virtual" mode falls back to a fixed pool 
+ * of 500. 
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelModeBenchmark {
+	
+	private static final int REQUESTS = 1000;
+	
+	@Param({ "fixed", "virtual" })
+	public String mode;
+	
+	@Param({ "50" })
+	public long latencyMillis;
+	
+	private LoopbackServer server;
+	private Parallel parallel;
+	private List<String> urls;
+	
+	private static final Function<String, Integer> fetch = new Function<String, Integer>() {
+		public Integer apply(String url) throws Exception {
+			HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+			InputStream in = connection.getInputStream();
+			byte[] buffer = new byte[4096];
+			while (in.read(buffer) != -1) ;
+			in.close();
+			return connection.getResponseCode();
+		}
+	};
+	
+	@Setup
+	public void setUp() {
+		server = new LoopbackServer();
+		server.setLatency(latencyMillis);
+		server.setFallback(new LoopbackServer.Responder() {
+			public LoopbackServer.Response respond(HttpExchange exchange, String path) {
+				return LoopbackServer.Response.html("<h1>" + path + "</h1><a href=\"" + path + "/a\">a</a>");
+			}
+		});
+		server.start();
+		parallel = mode.equals("virtual") ? Parallel.virtualThreads(500) : new Parallel();
+		urls = new ArrayList<String>();
+		for (int i = 0; i < REQUESTS; i++) urls.add(server.url("/page/" + i));
+	}
+	
+	@TearDown
+	public void tearDown() {
+		parallel.shutdownNow();
+		server.stop();
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(REQUESTS)
+	public List<Integer> apply() {
+		return parallel.apply(urls, fetch);
+	}
+}
@@ -0,0 +1,55 @@
+package com.sseltzer.selenium.internal.test.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sseltzer.selenium.framework.selenium.mapping.PageObject;
+import com.sseltzer.selenium.framework.selenium.webpage.base.TagDetector;
+import com.sseltzer.selenium.framework.selenium.wrappers.ByWrapper;
+import com.sseltzer.selenium.framework.selenium.wrappers.WebDriverWrapper;
+
+/**
+ *
+ *
+ * TagDetectorBenchmark.java
+ * 
+ * Locator detection for an id, a css selector and a selector that only matches on the last css 
+ * flag. detectBy never touches the driver, so a wrapper around null stands in for a browser. 
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TagDetectorBenchmark {
+	
+	@Param({ "searchBox", ".nav-bar", "div span" })
+	public String tag;
+	
+	private WebDriverWrapper webDriver;
+	private PageObject pageObject;
+	
+	@Setup
+	public void setUp() {
+		webDriver = new WebDriverWrapper(null);
+		pageObject = new PageObject(tag);
+	}
+	
+	@Benchmark
+	public ByWrapper detectBy() {
+		return TagDetector.detectBy(webDriver, pageObject);
+	}
+}
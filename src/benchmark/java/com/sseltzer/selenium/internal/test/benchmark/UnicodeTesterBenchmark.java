@@ -0,0 +1,58 @@
+package com.sseltzer.selenium.internal.test.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sseltzer.selenium.framework.verification.string.UnicodeTester;
+
+/**
+ *
+ *
+ * UnicodeTesterBenchmark.java
+ * 
+ * Scans a generated page source of `lines` lines, one in a hundred of which carries a replacement 
+ * character (raw or escaped). 
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UnicodeTesterBenchmark {
+	
+	@Param({ "1000", "10000" })
+	public int lines;
+	
+	private String source;
+	
+	@Setup
+	public void setUp() {
+		StringBuilder page = new StringBuilder();
+		for (int i = 0; i < lines; i++) {
+			page.append("    <div class=\"coupon\"><span>Save 20% on item ").append(i).append("</span>");
+			if (i % 200 == 0) page.append(UnicodeTester.UNICODE_ERROR_CHAR);
+			else if (i % 100 == 0) page.append(UnicodeTester.ESCAPED_ERROR_CHAR);
+			page.append("</div>\n");
+		}
+		source = page.toString();
+	}
+	
+	@Benchmark
+	public List<String> collectUnicodeErrors() {
+		return UnicodeTester.collectUnicodeErrors(source);
+	}
+}
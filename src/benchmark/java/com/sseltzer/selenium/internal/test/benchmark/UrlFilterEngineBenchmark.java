@@ -0,0 +1,108 @@
+package com.sseltzer.selenium.internal.test.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sseltzer.selenium.framework.utility.crawler.filter.AhoCorasick;
+import com.sseltzer.selenium.framework.utility.crawler.filter.UrlFilterEngine;
+
+/**
+ *
+ *
+ * UrlFilterEngineBenchmark.java
+ * 
+ * Blacklist matching as the number of substrings grows: the old loop of String.contains (with 
+ * the old per-call domain regex in front of it) against one Aho-Corasick pass and the full 
+ * compiled UrlFilterEngine. Scores are per url. 
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlFilterEngineBenchmark {
+	
+	private static final int URLS = 1000;
+	private static final String DOMAIN_REGEX = ".*www.valpak.com.*";
+	
+	@Param({ "8", "64", "512" })
+	public int substrings;
+	
+	private List<String> blackList;
+	private AhoCorasick automaton;
+	private UrlFilterEngine engine;
+	private List<String> urls;
+	
+	@Setup
+	public void setUp() {
+		blackList = new ArrayList<String>();
+		for (int i = 0; i < substrings; i++) blackList.add("blocked-" + i + "/");
+		automaton = new AhoCorasick(blackList);
+		engine = new UrlFilterEngine.Builder()
+			.includeHost("www.valpak.com")
+			.excludeSubstrings(blackList)
+			.excludeQueryParam("sort")
+			.excludePathPrefix("/blog")
+			.build();
+		urls = new ArrayList<String>();
+		for (int i = 0; i < URLS; i++) {
+			switch (i % 5) {
+				case 0:  urls.add("http://www.facebook.com/share?u=" + i); break;
+				case 1:  urls.add("http://www.valpak.com/coupons/blocked-" + (i % substrings) + "/tampa-fl"); break;
+				default: urls.add("http://www.valpak.com/coupons/savings/category-" + i + "/tampa-fl"); break;
+			}
+		}
+		Collections.shuffle(urls);
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(URLS)
+	public int regexAndContainsLoop() {
+		int accepted = 0;
+		for (String url : urls) {
+			if (!url.matches(DOMAIN_REGEX)) continue;
+			boolean blocked = false;
+			for (String criterion : blackList) 
+				if (url.contains(criterion)) blocked = true;
+			if (!blocked) accepted++;
+		}
+		return accepted;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(URLS)
+	public int ahoCorasick() {
+		int accepted = 0;
+		for (String url : urls) {
+			if (!automaton.matches(url)) accepted++;
+		}
+		return accepted;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(URLS)
+	public int compiledEngine() {
+		int accepted = 0;
+		for (String url : urls) {
+			if (engine.accepts(url)) accepted++;
+		}
+		return accepted;
+	}
+}
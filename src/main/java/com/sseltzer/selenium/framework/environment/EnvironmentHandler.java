@@ -38,6 +38,9 @@ public final class EnvironmentHandler {
 	private static final String BUILD_NUMBER 	= "build_number";
 	private static final String IMAGE_PATH 		= "image_path";
 	private static final String COUPON_COUNT_PATH 	= "couponCountPath";
+	private static final String PARALLEL_METRICS_PATH 	= "parallelMetrics";
+	private static final String HTTP_CACHE_PATH 	= "httpCachePath";
+	private static final String CRAWL_REPORT_PATH 	= "crawlReportPath";
 
 	private static final String LOGGING_RECORD 	= "loggingRecord";
 	
@@ -89,6 +92,18 @@ public final class EnvironmentHandler {
 		String path = loader.getVariable(COUPON_COUNT_PATH);
 		return (path == null) ? "" : path;
 	}
+	public static String getParallelMetricsPath() {
+		String path = loader.getVariable(PARALLEL_METRICS_PATH);
+		return (path == null) ? "" : path;
+	}
+	public static String getHttpCachePath() {
+		String path = loader.getVariable(HTTP_CACHE_PATH);
+		return (path == null) ? "" : path;
+	}
+	public static String getCrawlReportPath() {
+		String path = loader.getVariable(CRAWL_REPORT_PATH);
+		return (path == null) ? "" : path;
+	}
 	
 	public static boolean isMobileTest() {
 		if (loader.getVariable(MOBILE_DEVICE) != null && !loader.getVariable(MOBILE_DEVICE).isEmpty()) return true;
@@ -0,0 +1,79 @@
+package com.sseltzer.selenium.framework.utility.crawler;
+
+/**
+ *
+ *
+ * BloomSeenSet.java
+ * 
+ * Memory-bounded, probabilistic seen set: a Bloom filter sized up front for an expected number 
+ * of urls and a false positive rate. It never forgets a url, but may claim to have seen one it 
+ * has not -- and the crawler will then skip that page. At 1% that is under 10 bits per url 
+ * (about 1.2 MB for a million), and the size never changes however far the crawl overruns the 
+ * estimate; only the false positive rate climbs. 
+ * 
+ * The k probe positions come from the url's 64-bit fingerprint by double hashing 
+ * (Kirsch-Mitzenmacher), so each lookup hashes the url once. 
+ *
+ */
+public class BloomSeenSet implements UrlSeenSet {
+	
+	private final long[] bits;
+	private final long bitCount;
+	private final int hashes;
+	private long size = 0;
+	
+	public BloomSeenSet(long expectedUrls, double falsePositiveRate) {
+		if (expectedUrls < 1) throw new IllegalArgumentException("expectedUrls must be at least 1");
+		if (falsePositiveRate <= 0 || falsePositiveRate >= 1) throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+		double ln2 = Math.log(2);
+		long optimalBits = (long) Math.ceil(-expectedUrls * Math.log(falsePositiveRate) / (ln2 * ln2));
+		this.bits = new long[(int) Math.max(1, (optimalBits + 63) / 64)];
+		this.bitCount = bits.length * 64L;
+		this.hashes = Math.max(1, (int) Math.round((double) bitCount / expectedUrls * ln2));
+	}
+
+	public boolean add(String url) {
+		long fingerprint = UrlFingerprint.of(url);
+		int h1 = (int) fingerprint;
+		int h2 = (int) (fingerprint >>> 32);
+		boolean added = false;
+		for (int i = 0; i < hashes; i++) {
+			long bit = position(h1 + i * h2);
+			long word = bits[(int) (bit >>> 6)];
+			long flag = 1L << bit;
+			if ((word & flag) == 0) {
+				bits[(int) (bit >>> 6)] = word | flag;
+				added = true;
+			}
+		}
+		if (added) size++;
+		return added;
+	}
+
+	public boolean contains(String url) {
+		long fingerprint = UrlFingerprint.of(url);
+		int h1 = (int) fingerprint;
+		int h2 = (int) (fingerprint >>> 32);
+		for (int i = 0; i < hashes; i++) {
+			long bit = position(h1 + i * h2);
+			if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) return false;
+		}
+		return true;
+	}
+
+	public long size() {
+		return size;
+	}
+	
+	public long getBitCount() {
+		return bitCount;
+	}
+	
+	public int getHashCount() {
+		return hashes;
+	}
+	
+	private long position(int combined) {
+		return (combined & 0x7fffffffL) % bitCount;
+	}
+}
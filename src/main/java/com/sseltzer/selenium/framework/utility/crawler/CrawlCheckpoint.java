@@ -0,0 +1,345 @@
+package com.sseltzer.selenium.framework.utility.crawler;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import com.sseltzer.selenium.framework.error.exceptions.FrameworkException;
+
+/**
+ *
+ *
+ * CrawlCheckpoint.java
+ * 
+ * ##About:
+ * 
+ * An append-only journal of everything a crawl does, kept in a directory so the crawl can be 
+ * resumed after the JVM dies. One line per event: 
+ * 
+ *     Q <depth> <url>    url accepted into the frontier 
+ *     S <url>            url marked seen without being queued (the seed) 
+ *     V <url>            page fetched 
+ *     B <url> <code>     page broken, with its status or error 
+ *     D <url>            page finished; it will not be fetched again 
+ * 
+ * Replaying the journal gives back the seen set (every Q and S), the frontier (every Q without a 
+ * D -- including pages that were mid-fetch when the process died) and the results (V and B of 
+ * pages that are not going back into the frontier; those are fetched again and their V and B 
+ * come after the restart, so no page is reported twice). 
+ * Nothing is ever rewritten, so a crash can only lose the unflushed tail; a torn last line is cut 
+ * off when the journal is reopened, so it is never replayed as a shorter url. 
+ * 
+ * Writes are buffered and made durable (flushed and forced to disk) at most every 
+ * `intervalMillis`, on `checkpoint()`, and on `close()`. The seed lives in crawl.properties next 
+ * to the journal. 
+ *
+ */
+public class CrawlCheckpoint {
+	
+	private static final String META_FILE = "crawl.properties";
+	private static final String JOURNAL_FILE = "journal.log";
+	
+	private final File directory;
+	private final String seed;
+	private final long intervalMillis;
+	private FileOutputStream out;
+	private BufferedWriter writer;
+	private long lastCheckpoint = System.currentTimeMillis();
+	
+	private CrawlCheckpoint(File directory, String seed, long intervalMillis, boolean append) {
+		this.directory = directory;
+		this.seed = seed;
+		this.intervalMillis = intervalMillis;
+		try {
+			File journal = new File(directory, JOURNAL_FILE);
+			if (append) truncateTornLine(journal);
+			out = new FileOutputStream(journal, append);
+			writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+		} catch (IOException e) {
+			throw new FrameworkException("Could not open crawl journal in " + directory, e);
+		}
+	}
+	
+	/**
+	 * Starts a new checkpoint for a crawl of seed, discarding any earlier one in the directory. 
+	 */
+	public static CrawlCheckpoint create(File directory, String seed, long intervalMillis) {
+		if (!directory.isDirectory() && !directory.mkdirs()) 
+			throw new FrameworkException("Could not create checkpoint directory " + directory);
+		writeMeta(directory, seed);
+		return new CrawlCheckpoint(directory, seed, intervalMillis, false);
+	}
+	
+	/**
+	 * Reopens an existing checkpoint; new events are appended after the old ones. 
+	 */
+	public static CrawlCheckpoint open(File directory, long intervalMillis) {
+		File meta = new File(directory, META_FILE);
+		if (!meta.isFile()) throw new FrameworkException("No crawl checkpoint in " + directory);
+		Properties properties = new Properties();
+		FileInputStream in = null;
+		try {
+			in = new FileInputStream(meta);
+			properties.load(in);
+		} catch (IOException e) {
+			throw new FrameworkException("Could not read " + meta, e);
+		} finally {
+			close(in);
+		}
+		return new CrawlCheckpoint(directory, properties.getProperty("seed"), intervalMillis, true);
+	}
+	
+	public String getSeed() {
+		return seed;
+	}
+	
+	public File getDirectory() {
+		return directory;
+	}
+	
+	public void queued(String url, int depth) {
+		write("Q\t" + depth + "\t" + url);
+	}
+	
+	public void seen(String url) {
+		write("S\t" + url);
+	}
+	
+	public void visited(String url) {
+		write("V\t" + url);
+	}
+	
+	public void broken(String url, String code) {
+		write("B\t" + url + "\t" + clean(code));
+	}
+	
+	public void done(String url) {
+		write("D\t" + url);
+	}
+	
+	private synchronized void write(String line) {
+		try {
+			writer.write(line);
+			writer.write('\n');
+			if (System.currentTimeMillis() - lastCheckpoint >= intervalMillis) checkpoint();
+		} catch (IOException e) {
+			throw new FrameworkException("Could not write crawl journal in " + directory, e);
+		}
+	}
+	
+	/**
+	 * Flushes buffered events and forces them to disk. 
+	 */
+	public synchronized void checkpoint() {
+		try {
+			writer.flush();
+			out.getChannel().force(false);
+			lastCheckpoint = System.currentTimeMillis();
+		} catch (IOException e) {
+			throw new FrameworkException("Could not checkpoint crawl journal in " + directory, e);
+		}
+	}
+	
+	public synchronized void close() {
+		checkpoint();
+		close(writer);
+	}
+	
+	/**
+	 * Reads the journal back into the state the crawl had when it was last checkpointed. 
+	 */
+	public Recovered replay() {
+		Recovered state = new Recovered(seed);
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(new File(directory, JOURNAL_FILE)), StandardCharsets.UTF_8));
+			String line;
+			while ((line = reader.readLine()) != null) state.apply(line.split("\t", 3));
+		} catch (IOException e) {
+			throw new FrameworkException("Could not read crawl journal in " + directory, e);
+		} finally {
+			close(reader);
+		}
+		return state;
+	}
+	
+	// The crawl state rebuilt from a journal. 
+	//
+	public static class Recovered {
+		
+		private final List<String> seen = new ArrayList<String>();
+		private final Map<String, Integer> pending = new LinkedHashMap<String, Integer>();
+		private final Set<String> visited = new LinkedHashSet<String>();
+		private final Map<String, String> broken = new LinkedHashMap<String, String>();
+		// workers journal a page's D and the Q of the page that found it independently, so a 
+		// fast page can be finished before its Q line lands 
+		private final Set<String> finishedBeforeQueued = new HashSet<String>();
+		private final String seed;
+		private int finished = 0;
+		private boolean seedFinished = false;
+		
+		private Recovered(String seed) {
+			this.seed = seed;
+		}
+		
+		private void apply(String[] record) {
+			// a record cut short by a crash is dropped 
+			if (record.length < 2) return;
+			char type = record[0].isEmpty() ? ' ' : record[0].charAt(0);
+			switch (type) {
+				case 'Q':
+					if (record.length < 3) return;
+					int depth;
+					try {
+						depth = Integer.parseInt(record[1]);
+					} catch (NumberFormatException e) {
+						return;
+					}
+					seen.add(record[2]);
+					if (finishedBeforeQueued.remove(record[2])) finished++;
+					else pending.put(record[2], depth);
+					break;
+				case 'S':
+					seen.add(record[1]);
+					break;
+				case 'V':
+					visited.add(record[1]);
+					break;
+				case 'B':
+					if (record.length < 3) return;
+					broken.put(record[1], record[2]);
+					break;
+				case 'D':
+					if (pending.remove(record[1]) != null) finished++;
+					else if (record[1].equals(seed)) seedFinished = true;
+					else finishedBeforeQueued.add(record[1]);
+					break;
+				default:
+					break;
+			}
+		}
+		
+		/**
+		 * Every url the crawl had accepted, queued or not. 
+		 */
+		public List<String> getSeen() {
+			return seen;
+		}
+		
+		/**
+		 * Queued urls that never finished, with their depths, in the order they were queued. 
+		 */
+		public Map<String, Integer> getPending() {
+			return pending;
+		}
+		
+		/**
+		 * Pages fetched before the checkpoint, each once, leaving out those still pending. 
+		 */
+		public List<String> getVisited() {
+			List<String> finishedPages = new ArrayList<String>();
+			for (String url : visited) 
+				if (!pending.containsKey(url)) finishedPages.add(url);
+			return finishedPages;
+		}
+		
+		/**
+		 * Broken pages as {url, code} pairs, each once, leaving out those still pending. 
+		 */
+		public List<String[]> getBroken() {
+			List<String[]> finishedPages = new ArrayList<String[]>();
+			for (Map.Entry<String, String> page : broken.entrySet()) 
+				if (!pending.containsKey(page.getKey())) finishedPages.add(new String[] { page.getKey(), page.getValue() });
+			return finishedPages;
+		}
+		
+		/**
+		 * Number of queued pages that finished. 
+		 */
+		public int getFinished() {
+			return finished;
+		}
+		
+		/**
+		 * Whether the seed itself was fetched and expanded before the checkpoint. 
+		 */
+		public boolean isSeedFinished() {
+			return seedFinished;
+		}
+	}
+	
+	private static void writeMeta(File directory, String seed) {
+		Properties properties = new Properties();
+		properties.setProperty("seed", seed);
+		File meta = new File(directory, META_FILE);
+		File temp = new File(directory, META_FILE + ".tmp");
+		FileOutputStream metaOut = null;
+		try {
+			metaOut = new FileOutputStream(temp);
+			properties.store(metaOut, "Crawler checkpoint");
+			metaOut.close();
+			metaOut = null;
+			Files.move(temp.toPath(), meta.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new FrameworkException("Could not write " + meta, e);
+		} finally {
+			close(metaOut);
+		}
+	}
+	
+	private static void truncateTornLine(File file) throws IOException {
+		// a crash mid-write leaves a prefix of a record, which can still parse ("Q 1 http://h/produ"), 
+		// so everything after the last complete line is dropped 
+		if (!file.isFile() || file.length() == 0) return;
+		RandomAccessFile journal = new RandomAccessFile(file, "rw");
+		try {
+			byte[] buffer = new byte[8192];
+			long end = journal.length();
+			while (end > 0) {
+				int length = (int) Math.min(buffer.length, end);
+				journal.seek(end - length);
+				journal.readFully(buffer, 0, length);
+				for (int i = length - 1; i >= 0; i--) {
+					if (buffer[i] != '\n') continue;
+					long complete = end - length + i + 1;
+					if (complete < journal.length()) journal.getChannel().truncate(complete);
+					return;
+				}
+				end -= length;
+			}
+			journal.getChannel().truncate(0);
+		} finally {
+			journal.close();
+		}
+	}
+	
+	private static String clean(String value) {
+		// keeps error messages on one line and out of the field separator 
+		return (value == null) ? "null" : value.replace('\t', ' ').replace('\r', ' ').replace('\n', ' ');
+	}
+	
+	private static void close(Closeable closeable) {
+		try {
+			if (closeable != null) closeable.close();
+		} catch (IOException e) {
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package com.sseltzer.selenium.framework.utility.crawler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.sseltzer.selenium.framework.environment.enums.EnvironmentConfig;
+
+/**
+ *
+ *
+ * CrawlDiff.java
+ * 
+ * ##About:
+ * 
+ * Lines up the results of crawling the same site in several environments. Urls are compared by 
+ * their path relative to each environment's base url, so `http://dev1.../coupons` and 
+ * `http://prd1.../coupons` are the same page; urls off every base (verified external links) are 
+ * compared as they are. 
+ * 
+ * `getDifferences` is the point of the exercise: pages broken in at least one environment and 
+ * fine in at least one other, i.e. a deploy or config problem rather than a bad link. Pages 
+ * broken everywhere they were crawled are in `getBrokenEverywhere`. Each Entry also says which 
+ * environments never reached the page at all. 
+ *
+ */
+public class CrawlDiff {
+	
+	private final Set<EnvironmentConfig> environments = EnumSet.noneOf(EnvironmentConfig.class);
+	private final Map<String, Entry> entries = new TreeMap<String, Entry>();
+	
+	/**
+	 * Adds one crawl's results for an environment. An environment may be added more than once 
+	 * (one crawl per seed). 
+	 */
+	public synchronized void add(EnvironmentConfig environment, String baseUrl, List<String> visited, List<HashMap<String, String>> broken) {
+		environments.add(environment);
+		synchronized (visited) {
+			for (String url : visited) entry(relativize(url, baseUrl)).ok.add(environment);
+		}
+		synchronized (broken) {
+			for (HashMap<String, String> brokenUrl : broken) {
+				Entry entry = entry(relativize(brokenUrl.get("url"), baseUrl));
+				entry.broken.put(environment, brokenUrl.get("code"));
+			}
+		}
+	}
+	
+	public synchronized List<Entry> getDifferences() {
+		List<Entry> differences = new ArrayList<Entry>();
+		for (Entry entry : entries.values()) {
+			if (!entry.getBroken().isEmpty() && !entry.getOk().isEmpty()) differences.add(entry);
+		}
+		return differences;
+	}
+	
+	public synchronized List<Entry> getBrokenEverywhere() {
+		List<Entry> brokenEverywhere = new ArrayList<Entry>();
+		for (Entry entry : entries.values()) {
+			if (!entry.getBroken().isEmpty() && entry.getOk().isEmpty()) brokenEverywhere.add(entry);
+		}
+		return brokenEverywhere;
+	}
+	
+	public synchronized Set<EnvironmentConfig> getEnvironments() {
+		return Collections.unmodifiableSet(EnumSet.copyOf(environments));
+	}
+	
+	public synchronized List<String> format() {
+		List<String> lines = new ArrayList<String>();
+		for (Entry entry : getDifferences()) {
+			lines.add(String.format("Differs: %s; Broken: %s; OK: %s; Not crawled: %s", 
+					entry.getUrl(), entry.getBroken(), entry.getOk(), entry.getNotCrawled()));
+		}
+		return lines;
+	}
+	
+	private Entry entry(String url) {
+		Entry entry = entries.get(url);
+		if (entry == null) {
+			entry = new Entry(url);
+			entries.put(url, entry);
+		}
+		return entry;
+	}
+	
+	private static String relativize(String url, String baseUrl) {
+		String base = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+		if (!url.startsWith(base)) return url;
+		String path = url.substring(base.length());
+		if (path.isEmpty()) return "/";
+		// "http://dev1.valpak.com" must not claim "http://dev1.valpak.com.au" 
+		char next = path.charAt(0);
+		return (next == '/' || next == '?' || next == '#') ? path : url;
+	}
+	
+	// One page across environments: the code it was broken with in each environment where it 
+	// was, and the environments where it was fine. 
+	//
+	public class Entry {
+		private final String url;
+		private final Map<EnvironmentConfig, String> broken = new EnumMap<EnvironmentConfig, String>(EnvironmentConfig.class);
+		private final Set<EnvironmentConfig> ok = EnumSet.noneOf(EnvironmentConfig.class);
+		
+		private Entry(String url) {
+			this.url = url;
+		}
+		
+		public String getUrl() {
+			return url;
+		}
+		
+		public Map<EnvironmentConfig, String> getBroken() {
+			return Collections.unmodifiableMap(broken);
+		}
+		
+		/**
+		 * Environments that fetched the page without error. 
+		 */
+		public Set<EnvironmentConfig> getOk() {
+			Set<EnvironmentConfig> healthy = EnumSet.copyOf(ok);
+			healthy.removeAll(broken.keySet());
+			return healthy;
+		}
+		
+		public Set<EnvironmentConfig> getNotCrawled() {
+			Set<EnvironmentConfig> missing = EnumSet.copyOf(environments);
+			missing.removeAll(ok);
+			missing.removeAll(broken.keySet());
+			return missing;
+		}
+	}
+}
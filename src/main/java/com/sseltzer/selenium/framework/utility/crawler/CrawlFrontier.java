@@ -0,0 +1,205 @@
+package com.sseltzer.selenium.framework.utility.crawler;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ *
+ *
+ * CrawlFrontier.java
+ * 
+ * The queue of urls still to be crawled, shared by all of a crawl's workers. Every url is only 
+ * ever accepted once, whether it is still queued or already crawled. Entries come out in priority 
+ * order, by default FrontierEntry.SHALLOW_FIRST, so the crawl proceeds breadth first however many 
+ * workers are pulling from it. 
+ * 
+ * What has been seen is kept in a UrlSeenSet, by default an exact FingerprintSeenSet; pass a 
+ * BloomSeenSet to bound memory on very large crawls. Or give it a UrlInterner, which is an exact 
+ * seen set as well, and every entry carries its url's id and the interned url instance. 
+ * 
+ * Given a CrawlPriority (and a UrlInterner) the order is FrontierEntry.MOST_IMPORTANT_FIRST 
+ * instead: every url's inbound links are counted as it is offered again, and a url still queued 
+ * is queued again, a little further forward, whenever its score goes up. `take` skips the copies 
+ * left behind. 
+ * 
+ * `take` blocks while the queue is empty but some worker is still busy with a page (that page 
+ * may add more urls), and returns null once the queue is empty and no worker is busy -- which is 
+ * how the workers know the crawl is over. Every successful `take` must be paired with a `done`. 
+ *
+ */
+public class CrawlFrontier {
+	
+	private final PriorityQueue<FrontierEntry> queue;
+	private final UrlSeenSet seen;
+	private final UrlInterner interner;
+	private final CrawlPriority priority;
+	private int[] inbound = new int[0];
+	private FrontierEntry[] pending = new FrontierEntry[0];
+	private final BitSet brokenLastTime = new BitSet();
+	private int stale = 0;
+	private int dropped = 0;
+	private long sequence = 0;
+	private int active = 0;
+	private boolean closed = false;
+	
+	public CrawlFrontier() {
+		this(FrontierEntry.SHALLOW_FIRST, new FingerprintSeenSet());
+	}
+	
+	public CrawlFrontier(Comparator<FrontierEntry> order, UrlSeenSet seen) {
+		this.queue = new PriorityQueue<FrontierEntry>(64, order);
+		this.seen = seen;
+		this.interner = null;
+		this.priority = null;
+	}
+	
+	public CrawlFrontier(Comparator<FrontierEntry> order, UrlInterner interner) {
+		this.queue = new PriorityQueue<FrontierEntry>(64, order);
+		this.seen = interner;
+		this.interner = interner;
+		this.priority = null;
+	}
+	
+	public CrawlFrontier(CrawlPriority priority, UrlInterner interner) {
+		this.queue = new PriorityQueue<FrontierEntry>(64, FrontierEntry.MOST_IMPORTANT_FIRST);
+		this.seen = interner;
+		this.interner = interner;
+		this.priority = priority;
+	}
+	
+	/**
+	 * Queues the url at the given link depth unless it has been offered before. Returns whether 
+	 * it was queued. 
+	 */
+	public synchronized boolean offer(String url, int depth) {
+		return offer(url, depth, false);
+	}
+	
+	/**
+	 * As offer, noting whether the url was broken on the previous crawl (which only matters to a 
+	 * CrawlPriority). 
+	 */
+	public synchronized boolean offer(String url, int depth, boolean wasBroken) {
+		if (closed) return false;
+		if (interner == null) {
+			if (!seen.add(url)) return false;
+			queue.add(new FrontierEntry(url, depth, sequence++));
+		} else if (priority == null) {
+			int id = interner.put(url);
+			if (id < 0) return false;
+			queue.add(new FrontierEntry(url, id, depth, sequence++));
+		} else {
+			int id = interner.put(url);
+			if (id < 0) {
+				relink(-id - 1, depth);
+				return false;
+			}
+			ensureCapacity(id);
+			inbound[id] = 1;
+			if (wasBroken) brokenLastTime.set(id);
+			queueScored(url, id, depth);
+		}
+		notifyAll();
+		return true;
+	}
+	
+	// Another link to a url already seen: if it is still queued and now scores higher, it is 
+	// queued again and the old entry goes stale. 
+	private void relink(int id, int depth) {
+		ensureCapacity(id);
+		inbound[id]++;
+		FrontierEntry entry = pending[id];
+		if (entry == null) return;
+		int shallowest = Math.min(depth, entry.getDepth());
+		if (priority.score(shallowest, inbound[id], brokenLastTime.get(id)) <= entry.getScore()) return;
+		stale++;
+		queueScored(entry.getUrl(), id, shallowest);
+		notifyAll();
+	}
+	
+	private void queueScored(String url, int id, int depth) {
+		FrontierEntry entry = new FrontierEntry(url, id, depth, sequence++, priority.score(depth, inbound[id], brokenLastTime.get(id)));
+		pending[id] = entry;
+		queue.add(entry);
+	}
+	
+	private void ensureCapacity(int id) {
+		if (id < inbound.length) return;
+		int capacity = Math.max(id + 1, Math.max(64, inbound.length * 2));
+		inbound = Arrays.copyOf(inbound, capacity);
+		pending = Arrays.copyOf(pending, capacity);
+	}
+	
+	/**
+	 * Records the url as seen without queueing it (e.g. the seed, which is crawled up front). 
+	 * Returns whether it was new. 
+	 */
+	public synchronized boolean markSeen(String url) {
+		return seen.add(url);
+	}
+	
+	public synchronized boolean isSeen(String url) {
+		return seen.contains(url);
+	}
+	
+	public synchronized FrontierEntry take() throws InterruptedException {
+		while (true) {
+			if (queue.isEmpty()) {
+				if (closed || active == 0) return null;
+				wait();
+				continue;
+			}
+			FrontierEntry entry = queue.poll();
+			if (priority != null) {
+				if (pending[entry.getId()] != entry) {
+					stale--;
+					continue;
+				}
+				pending[entry.getId()] = null;
+			}
+			active++;
+			return entry;
+		}
+	}
+	
+	/**
+	 * Inbound links counted so far for the url's id; only kept with a CrawlPriority. 
+	 */
+	public synchronized int getInboundLinks(int id) {
+		return (id < inbound.length) ? inbound[id] : 0;
+	}
+	
+	public synchronized void done() {
+		active--;
+		if (active == 0 && size() == 0) notifyAll();
+	}
+	
+	/**
+	 * Drops everything still queued and releases every waiting worker. 
+	 */
+	public synchronized void close() {
+		if (!closed) dropped = size();
+		closed = true;
+		queue.clear();
+		Arrays.fill(pending, null);
+		stale = 0;
+		notifyAll();
+	}
+	
+	/**
+	 * How many urls were still queued when the frontier was closed. 
+	 */
+	public synchronized int droppedCount() {
+		return dropped;
+	}
+	
+	public synchronized int size() {
+		return queue.size() - stale;
+	}
+	
+	public synchronized long seenCount() {
+		return seen.size();
+	}
+}
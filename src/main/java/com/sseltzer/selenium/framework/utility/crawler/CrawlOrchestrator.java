@@ -0,0 +1,188 @@
+package com.sseltzer.selenium.framework.utility.crawler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.sseltzer.selenium.framework.environment.enums.EnvironmentConfig;
+import com.sseltzer.selenium.framework.error.exceptions.FrameworkException;
+
+/**
+ *
+ *
+ * CrawlOrchestrator.java
+ * 
+ * ##About:
+ * 
+ * Crawls many seeds across many environments at once and lines the results up in a CrawlDiff. 
+ * Each seed is a path (`/`, `/coupons`) crawled once under every target's base url, so adding 
+ * DEV1, TST1 and PRD1..PRD4 with two seeds runs fourteen crawls. 
+ * 
+ * Every crawl gets its own Crawler from the CrawlerFactory, so frontiers, seen sets, limits and 
+ * checkpoints never mix. What is shared is threads: up to `maxConcurrentCrawls` crawls run at a 
+ * time, and all of their workers come out of one pool, so fourteen crawls do not mean fourteen 
+ * pools. Every worker holds its thread for the whole crawl, so the pool is never smaller than the 
+ * workers of the crawls that can run at once (fourteen crawls of 4 workers get 56 threads even 
+ * though `workerThreads` is 16); otherwise workers would sit queued while their crawl, and its 
+ * time budget, ran on without them. Lower `maxConcurrentCrawls` to bound the thread count. A 
+ * crawl that fails is recorded in `getFailures` and the rest carry on. 
+ * 
+ * ##Usage: 
+ * 
+ *     CrawlOrchestrator orchestrator = new CrawlOrchestrator();
+ *     orchestrator.addTarget(EnvironmentConfig.TST1, "http://tst1.valpak.com");
+ *     orchestrator.addTarget(EnvironmentConfig.PRD1, "http://www.valpak.com");
+ *     orchestrator.addSeed("/");
+ *     CrawlDiff diff = orchestrator.run();
+ *
+ */
+public class CrawlOrchestrator {
+	
+	private static final int DEFAULT_WORKER_THREADS = 16;
+	
+	// Makes the Crawler for one environment and seed. Called once per crawl, so the 
+	// returned Crawler must be new, though crawls can share one CrawlerConfig. 
+	//
+	public interface CrawlerFactory {
+		public Crawler create(EnvironmentConfig environment, String seed);
+	}
+	
+	private final Map<EnvironmentConfig, String> targets = new LinkedHashMap<EnvironmentConfig, String>();
+	private final List<String> seeds = new ArrayList<String>();
+	private CrawlerFactory factory = new CrawlerFactory() {
+		public Crawler create(EnvironmentConfig environment, String seed) {
+			return new Crawler();
+		}
+	};
+	private int maxConcurrentCrawls = 0;
+	private int workerThreads = DEFAULT_WORKER_THREADS;
+	
+	private final Map<EnvironmentConfig, List<CrawlResults>> results = new EnumMap<EnvironmentConfig, List<CrawlResults>>(EnvironmentConfig.class);
+	private final Map<String, Throwable> failures = new LinkedHashMap<String, Throwable>();
+	
+	public void addTarget(EnvironmentConfig environment, String baseUrl) {
+		targets.put(environment, baseUrl);
+	}
+	
+	public void addSeed(String path) {
+		seeds.add(path);
+	}
+	
+	public void setCrawlerFactory(CrawlerFactory factory) {
+		this.factory = factory;
+	}
+	
+	/**
+	 * How many crawls run at once; by default all of them. 
+	 */
+	public void setMaxConcurrentCrawls(int maxConcurrentCrawls) {
+		if (maxConcurrentCrawls < 1) throw new IllegalArgumentException("maxConcurrentCrawls must be at least 1");
+		this.maxConcurrentCrawls = maxConcurrentCrawls;
+	}
+	
+	/**
+	 * Smallest size of the worker pool every crawl fetches pages on; it grows to fit the workers of 
+	 * all the crawls that can run at once. 
+	 */
+	public void setWorkerThreads(int workerThreads) {
+		if (workerThreads < 1) throw new IllegalArgumentException("workerThreads must be at least 1");
+		this.workerThreads = workerThreads;
+	}
+	
+	public Map<EnvironmentConfig, List<CrawlResults>> getResults() {
+		return Collections.unmodifiableMap(results);
+	}
+	
+	/**
+	 * Crawls that threw, by seed url. 
+	 */
+	public Map<String, Throwable> getFailures() {
+		return Collections.unmodifiableMap(failures);
+	}
+	
+	public CrawlDiff run() {
+		if (targets.isEmpty() || seeds.isEmpty()) throw new FrameworkException("CrawlOrchestrator needs at least one target and one seed");
+		results.clear();
+		failures.clear();
+		final CrawlDiff diff = new CrawlDiff();
+		List<Job> jobs = new ArrayList<Job>();
+		for (Map.Entry<EnvironmentConfig, String> target : targets.entrySet()) {
+			for (String seed : seeds) jobs.add(new Job(target.getKey(), target.getValue(), seed));
+		}
+		int crawlThreads = (maxConcurrentCrawls == 0) ? jobs.size() : Math.min(maxConcurrentCrawls, jobs.size());
+		ExecutorService crawls = Executors.newFixedThreadPool(crawlThreads);
+		ExecutorService workers = Executors.newFixedThreadPool(workerPoolSize(jobs, crawlThreads));
+		try {
+			List<Future<CrawlResults>> running = new ArrayList<Future<CrawlResults>>();
+			for (Job job : jobs) running.add(crawls.submit(job.start(workers, diff)));
+			for (int i = 0; i < jobs.size(); i++) {
+				Job job = jobs.get(i);
+				try {
+					CrawlResults crawled = running.get(i).get();
+					if (!results.containsKey(job.environment)) results.put(job.environment, new ArrayList<CrawlResults>());
+					results.get(job.environment).add(crawled);
+				} catch (ExecutionException e) {
+					failures.put(job.seedUrl(), e.getCause());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new FrameworkException(e);
+		} finally {
+			crawls.shutdownNow();
+			workers.shutdownNow();
+		}
+		return diff;
+	}
+	
+	// Enough threads for the crawlers with the most workers to all run at once. 
+	private int workerPoolSize(List<Job> jobs, int crawlThreads) {
+		List<Integer> workerCounts = new ArrayList<Integer>();
+		for (Job job : jobs) workerCounts.add(job.crawler.getConfig().getWorkers());
+		Collections.sort(workerCounts, Collections.reverseOrder());
+		int needed = 0;
+		for (int i = 0; i < crawlThreads; i++) needed += workerCounts.get(i);
+		return Math.max(workerThreads, needed);
+	}
+	
+	// One seed under one environment. The Crawler is made up front, so the worker pool can be 
+	// sized before any crawl starts. 
+	//
+	private class Job {
+		private final EnvironmentConfig environment;
+		private final String baseUrl;
+		private final String seed;
+		private final Crawler crawler;
+		
+		private Job(EnvironmentConfig environment, String baseUrl, String seed) {
+			this.environment = environment;
+			this.baseUrl = baseUrl;
+			this.seed = seed;
+			this.crawler = factory.create(environment, seedUrl());
+		}
+		
+		private String seedUrl() {
+			String base = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+			return seed.startsWith("/") ? base + seed : base + "/" + seed;
+		}
+		
+		private Callable<CrawlResults> start(final ExecutorService workers, final CrawlDiff diff) {
+			return new Callable<CrawlResults>() {
+				public CrawlResults call() {
+					crawler.setWorkerPool(workers);
+					CrawlResults crawled = crawler.crawl(seedUrl());
+					diff.add(environment, baseUrl, crawler.getVisitedUrls(), crawler.getBrokenUrls());
+					return crawled;
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package com.sseltzer.selenium.framework.utility.crawler;
+
+/**
+ *
+ *
+ * CrawlPriority.java
+ * 
+ * ##About:
+ * 
+ * Estimates how much a queued url is worth checking, for crawls that may not get to every url 
+ * (see CrawlerConfig.Builder.timeBudget). A url scores higher the shallower it is, the more pages link to 
+ * it, and if it was broken on the previous crawl: 
+ * 
+ *     score = brokenWeight (if broken last time) + inboundWeight * log2(inbound links) - depthWeight * depth
+ * 
+ * Inbound links count on a log scale so a link from every page's header does not bury 
+ * everything else, and so a url's score only changes when its count doubles (which is when the 
+ * CrawlFrontier re-queues it). With the default weights, being broken last time is worth three 
+ * clicks of depth, and four times the referrers is worth one. 
+ *
+ */
+public class CrawlPriority {
+	
+	private final int depthWeight;
+	private final int inboundWeight;
+	private final int brokenWeight;
+	
+	public CrawlPriority() {
+		this(100, 50, 300);
+	}
+	
+	public CrawlPriority(int depthWeight, int inboundWeight, int brokenWeight) {
+		if (depthWeight < 0 || inboundWeight < 0 || brokenWeight < 0) throw new IllegalArgumentException("Weights cannot be negative");
+		this.depthWeight = depthWeight;
+		this.inboundWeight = inboundWeight;
+		this.brokenWeight = brokenWeight;
+	}
+	
+	public int score(int depth, int inboundLinks, boolean brokenLastTime) {
+		int log2 = (inboundLinks <= 0) ? 0 : 31 - Integer.numberOfLeadingZeros(inboundLinks);
+		return (brokenLastTime ? brokenWeight : 0) + inboundWeight * log2 - depthWeight * depth;
+	}
+}
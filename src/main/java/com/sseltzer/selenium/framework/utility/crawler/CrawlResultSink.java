@@ -0,0 +1,171 @@
+package com.sseltzer.selenium.framework.utility.crawler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+import com.sseltzer.selenium.framework.error.exceptions.FrameworkException;
+
+/**
+ *
+ *
+ * CrawlResultSink.java
+ * 
+ * ##About:
+ * 
+ * Streams one line per fetched url (url, status, latency, depth, error) to a file while the crawl 
+ * runs, so a crawl's results never have to fit in memory and a crawl still in progress (or one 
+ * that died) can be read as far as it got. The format comes from the file name: `.csv` gets a 
+ * header row and RFC 4180 quoting, anything else is JSON Lines. 
+ * 
+ * Lines are encoded into one reused ByteBuffer and written to a FileChannel when it fills, and at 
+ * least every `flushIntervalMillis`, so the file lags the crawl by about a second at most. The 
+ * status is 0 when no response came back at all; the error is null for a healthy page. 
+ * 
+ * `create` starts a new file; `open` appends to one, as `Crawler.resume` does. Safe to share 
+ * between crawl workers. 
+ *
+ */
+public class CrawlResultSink {
+	
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+	private static final String CSV_HEADER = "url,status,latencyMillis,depth,error\n";
+	
+	private final File file;
+	private final boolean csv;
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	private final StringBuilder line = new StringBuilder();
+	private final long flushIntervalMillis;
+	private long lastFlush = System.currentTimeMillis();
+	private long written;
+	
+	private CrawlResultSink(File file, boolean append, long flushIntervalMillis) {
+		this.file = file;
+		this.csv = file.getName().toLowerCase().endsWith(".csv");
+		this.flushIntervalMillis = flushIntervalMillis;
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.isDirectory() && !parent.mkdirs()) 
+			throw new FrameworkException("Could not create " + parent);
+		try {
+			this.channel = append 
+				? FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)
+				: FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			if (csv && channel.size() == 0) buffer.put(CSV_HEADER.getBytes(StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			throw new FrameworkException("Could not open crawl results " + file, e);
+		}
+	}
+	
+	public static CrawlResultSink create(String path) {
+		return new CrawlResultSink(new File(path), false, DEFAULT_FLUSH_INTERVAL_MILLIS);
+	}
+	
+	public static CrawlResultSink open(String path) {
+		return new CrawlResultSink(new File(path), true, DEFAULT_FLUSH_INTERVAL_MILLIS);
+	}
+	
+	public File getFile() {
+		return file;
+	}
+	
+	/**
+	 * Number of results recorded so far. 
+	 */
+	public synchronized long size() {
+		return written;
+	}
+	
+	public synchronized void record(String url, int status, long latencyMillis, int depth, String error) {
+		line.setLength(0);
+		if (csv) {
+			appendCsv(url).append(',').append(status).append(',').append(latencyMillis).append(',').append(depth).append(',');
+			if (error != null) appendCsv(error);
+		} else {
+			line.append("{\"url\":");
+			appendJson(url).append(",\"status\":").append(status)
+				.append(",\"latencyMillis\":").append(latencyMillis)
+				.append(",\"depth\":").append(depth)
+				.append(",\"error\":");
+			if (error == null) line.append("null");
+			else appendJson(error);
+			line.append('}');
+		}
+		line.append('\n');
+		write(line.toString().getBytes(StandardCharsets.UTF_8));
+		written++;
+		if (System.currentTimeMillis() - lastFlush >= flushIntervalMillis) flush();
+	}
+	
+	public synchronized void flush() {
+		try {
+			buffer.flip();
+			while (buffer.hasRemaining()) channel.write(buffer);
+			buffer.clear();
+			lastFlush = System.currentTimeMillis();
+		} catch (IOException e) {
+			throw new FrameworkException("Could not write crawl results " + file, e);
+		}
+	}
+	
+	public synchronized void close() {
+		if (!channel.isOpen()) return;
+		try {
+			flush();
+		} finally {
+			try {
+				channel.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+	
+	private void write(byte[] bytes) {
+		if (bytes.length > buffer.remaining()) flush();
+		if (bytes.length <= buffer.remaining()) {
+			buffer.put(bytes);
+			return;
+		}
+		// a single line bigger than the buffer goes straight out 
+		try {
+			ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+			while (wrapped.hasRemaining()) channel.write(wrapped);
+		} catch (IOException e) {
+			throw new FrameworkException("Could not write crawl results " + file, e);
+		}
+	}
+	
+	private StringBuilder appendCsv(String value) {
+		boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+		if (!quote) return line.append(value);
+		line.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"') line.append('"');
+			line.append(c);
+		}
+		return line.append('"');
+	}
+	
+	private StringBuilder appendJson(String value) {
+		line.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '"':  line.append("\\\""); break;
+				case '\\': line.append("\\\\"); break;
+				case '\n': line.append("\\n"); break;
+				case '\r': line.append("\\r"); break;
+				case '\t': line.append("\\t"); break;
+				default:
+					if (c < 0x20) line.append(String.format("\\u%04x", (int) c));
+					else line.append(c);
+			}
+		}
+		return line.append('"');
+	}
+}
@@ -7,19 +7,33 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
+import com.sseltzer.selenium.framework.environment.EnvironmentHandler;
+
 /**
  *
  *
  * CrawlResults.java
  * Decorator for the Crawler. Provides convenience 
+ * 
+ * Reports are written to the `crawlReportPath` directory, or the working directory when that is 
+ * not set (see `setReportDirectory`). For results written while the crawl runs, see 
+ * CrawlResultSink. When the crawl recorded its link graph, broken urls can be reported with the 
+ * pages that link to them (`writeBrokenReferrersReportToFile`). 
  * @author ckiehl Jun 13, 2014
  */
 public class CrawlResults {
 	private Crawler _crawler;
 	private String STATUS_OK = "200";
+	private File reportDirectory;
 
 	public CrawlResults(Crawler crawler) {
 		this._crawler = crawler;
+		String path = EnvironmentHandler.getCrawlReportPath();
+		this.reportDirectory = new File(path.isEmpty() ? "." : path);
+	}
+	
+	public void setReportDirectory(String reportDirectory) {
+		this.reportDirectory = new File(reportDirectory);
 	}
 
 	public void displayVisitedUrls() {
@@ -41,10 +55,29 @@ public class CrawlResults {
 		this.writeReportToFile(filename, this.formatErrorResults());
 	}
 
+	public void writeBrokenReferrersReportToFile(String filename) {
+		this.writeReportToFile(filename, this.formatBrokenReferrers());
+	}
+
+	/**
+	 * The pages linking to the url, or an empty list when the crawl did not record its link graph 
+	 * (see CrawlerConfig.Builder.recordLinkGraph). 
+	 */
+	public List<String> getReferrers(String url) {
+		LinkGraph graph = this._crawler.getLinkGraph();
+		List<String> referrers = new ArrayList<String>();
+		if (graph == null) return referrers;
+		int id = this._crawler.getUrlIds().idOf(url);
+		if (id < 0 || id >= graph.nodeCount()) return referrers;
+		for (int referrer : graph.getReferrers(id)) referrers.add(graph.urlOf(referrer));
+		return referrers;
+	}
+
 	private void writeReportToFile(String filename, List<String> contents) {
 		BufferedWriter writer = null;
 		try {
-			writer = new BufferedWriter(new FileWriter(new File("C:\\Users\\ckiehl\\Desktop\\" + filename)));
+			reportDirectory.mkdirs();
+			writer = new BufferedWriter(new FileWriter(new File(reportDirectory, filename)));
 			for (String url : contents) {
 				if (url != null) writer.write(url + "\n");
 			}
@@ -72,6 +105,18 @@ public class CrawlResults {
 		return output;
 	}
 
+	private List<String> formatBrokenReferrers() {
+		List<String> output = new ArrayList<String>();
+		for (HashMap<String, String> brokenUrl : this._crawler.getBrokenUrls()) {
+			String url = brokenUrl.get("url");
+			String code = brokenUrl.get("code");
+			if (code.contains("no protocol")) continue;
+			if (code.equals(STATUS_OK)) code = "App Error";
+			output.add(formatError(url, code) + "; Linked From: " + String.join(", ", getReferrers(url)));
+		}
+		return output;
+	}
+
 	private String formatError(String url, String errorCode) {
 		return String.format("Broken Url: Error Code: %s; Url: %s", errorCode, url);
 	}
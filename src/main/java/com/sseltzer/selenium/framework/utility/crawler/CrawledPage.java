@@ -0,0 +1,114 @@
+package com.sseltzer.selenium.framework.utility.crawler;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ *
+ *
+ * CrawledPage.java
+ * 
+ * The outcome of fetching one url, as much as the Crawler needs of it: status, whether the body 
+ * is an error page despite a 200, the validators and body fingerprint for the next recrawl, and 
+ * the absolute urls it links to, and a SimHash of its text when the 
+ * fetcher read the body. A 304 answer to a conditional GET carries the links and 
+ * fingerprint recorded by the previous crawl. 
+ *
+ */
+public class CrawledPage {
+	
+	private static final int STATUS_OK = 200;
+	private static final int STATUS_NOT_MODIFIED = 304;
+	
+	private final String url;
+	private final int statusCode;
+	private final boolean errorPage;
+	private final String etag;
+	private final String lastModified;
+	private final long contentHash;
+	private final List<String> links;
+	private final boolean hasSimHash;
+	private final long simHash;
+	
+	public CrawledPage(String url, int statusCode, boolean errorPage, String etag, String lastModified, long contentHash, List<String> links) {
+		this(url, statusCode, errorPage, etag, lastModified, contentHash, links, false, 0);
+	}
+	
+	public CrawledPage(String url, int statusCode, boolean errorPage, String etag, String lastModified, long contentHash, List<String> links, long simHash) {
+		this(url, statusCode, errorPage, etag, lastModified, contentHash, links, true, simHash);
+	}
+	
+	private CrawledPage(String url, int statusCode, boolean errorPage, String etag, String lastModified, long contentHash, List<String> links, boolean hasSimHash, long simHash) {
+		this.url = url;
+		this.statusCode = statusCode;
+		this.errorPage = errorPage;
+		this.etag = etag;
+		this.lastModified = lastModified;
+		this.contentHash = contentHash;
+		this.links = Collections.unmodifiableList(links);
+		this.hasSimHash = hasSimHash;
+		this.simHash = simHash;
+	}
+	
+	/**
+	 * A 304: the page is as the previous crawl left it. New validators, if the server sent any, 
+	 * replace the old ones. 
+	 */
+	public static CrawledPage notModified(String url, PageRecord previous, String etag, String lastModified) {
+		return new CrawledPage(url, STATUS_NOT_MODIFIED, false, 
+				(etag == null) ? previous.getETag() : etag, 
+				(lastModified == null) ? previous.getLastModified() : lastModified, 
+				previous.getContentHash(), previous.getOutlinks());
+	}
+	
+	public String getUrl() {
+		return url;
+	}
+	
+	public int getStatusCode() {
+		return statusCode;
+	}
+	
+	public String getStatusCodeAsString() {
+		return Integer.toString(statusCode);
+	}
+	
+	public boolean isNotModified() {
+		return statusCode == STATUS_NOT_MODIFIED;
+	}
+	
+	public boolean isBroken() {
+		return errorPage || (statusCode != STATUS_OK && statusCode != STATUS_NOT_MODIFIED);
+	}
+	
+	public String getETag() {
+		return etag;
+	}
+	
+	public String getLastModified() {
+		return lastModified;
+	}
+	
+	public long getContentHash() {
+		return contentHash;
+	}
+	
+	public List<String> getLinks() {
+		return links;
+	}
+	
+	/**
+	 * False when the body was not read: a 304, a HEAD, or a fetch that failed. 
+	 */
+	public boolean hasSimHash() {
+		return hasSimHash;
+	}
+	
+	public long getSimHash() {
+		return simHash;
+	}
+	
+	public PageRecord toRecord() {
+		return new PageRecord(etag, lastModified, contentHash, links);
+	}
+}
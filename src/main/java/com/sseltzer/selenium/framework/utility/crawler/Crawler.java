@@ -1,65 +1,88 @@
 package com.sseltzer.selenium.framework.utility.crawler;
 
+import java.io.File;
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.logging.Level;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import com.gargoylesoftware.htmlunit.BrowserVersion;
 import com.gargoylesoftware.htmlunit.FailingHttpStatusCodeException;
-import com.gargoylesoftware.htmlunit.WebClient;
-import com.gargoylesoftware.htmlunit.WebClientOptions;
-import com.gargoylesoftware.htmlunit.html.HtmlAnchor;
-import com.gargoylesoftware.htmlunit.html.HtmlPage;
 import com.sseltzer.selenium.framework.error.exceptions.FrameworkException;
 import com.sseltzer.selenium.framework.error.exceptions.PublicException;
+import com.sseltzer.selenium.framework.utility.crawler.filter.UrlCanonicalizer;
+import com.sseltzer.selenium.framework.utility.ratelimit.AdaptiveHostScheduler;
+import com.sseltzer.selenium.framework.utility.ratelimit.HostRateLimiter;
 
 /**
  * Crawls all links on Valpak.com and reports any error (e.g. 404, 500,
  * application error, etc..).
  * 
+ * The crawl is breadth first off a CrawlFrontier that records every url's link depth (the seed 
+ * is depth 0). Nothing recurses, so stack use is the same for ten pages or ten million. Pages are 
+ * crawled by a number of workers pulling from that one frontier. Fetching is done by a 
+ * PageFetcher, which need not be thread safe, so every worker owns its own; nothing is shared 
+ * between Crawler instances. 
+ * 
+ * Everything else (limits, politeness, seen set, checkpoints, recrawl index, result sink, time 
+ * budget, link graph, near-duplicate pruning) is set in a CrawlerConfig, which checks once, when 
+ * it is built, that the options fit together. A Crawler reads its config afresh for every crawl 
+ * and `resume`. 
  * 
  * @author ckiehl
  */
 /*
- * Set a maximum recursion depth for the crawler. This thing will run until it runs out of
- * Internet, memory, or stack frames (whichever comes first). So, the maxDepth allows you
- * to bound it to something reasonable.
+ * Set a maximum link depth and/or page count for the crawler. This thing will run until it runs 
+ * out of Internet or memory (whichever comes first). So, the limits allow you to bound it to 
+ * something reasonable. 
  * */
 public class Crawler {
-	private static WebClient webClient = null;
+	
+	// How pages are fetched and their links found. STREAMING tokenizes the body as it 
+	// arrives (see StreamingFetcher); HTMLUNIT builds a full HtmlUnit DOM per page. 
+	//
+	public enum FetchMode {
+		STREAMING, HTMLUNIT
+	}
+	
+	private static final long DEADLINE_GRACE_MILLIS = 10000;
 
 	private List<String> visitedUrls;
 	private List<HashMap<String,String>> brokenUrlsAndCodes;
 	
-	private String primaryDomainToCrawl;
-	private List<String> blackList;
-	private Integer maxDepth; 
+	private final CrawlerConfig config;
+	private final HostRateLimiter politeness;
+	private final HeadFetcher heads = new HeadFetcher();
+	private ExecutorService workerPool;
 	
-	private final Integer STATUS_OK = 200;
+	private UrlFilter urlFilter;
+	private CrawlFrontier frontier;
+	private UrlInterner urlIds;
+	private AtomicInteger pagesRemaining;
+	private CrawlCheckpoint checkpoint;
+	private RecrawlIndex recrawlIndex;
+	private CrawlResultSink resultSink;
+	private AdaptiveHostScheduler hostScheduler;
+	private RobotsTxt robots;
+	private NearDuplicateDetector nearDuplicates;
+	private LinkGraph.Recorder linkRecorder;
+	private LinkGraph linkGraph;
+	private long deadlineNanos;
+	private volatile boolean outOfTime;
 	
-	private static final List<String> blackListDefaults = Arrays.asList(
-		"sort=", 
-		"radius=",	
-		"#respond",
-		"advertise",
-		"blog",
-		"plus.google",
-		"facebook",
-		"twitter"
-	);
-			
 	
 	public Crawler() {
-		this(Collections.<String> emptyList(), Integer.MAX_VALUE);
+		this(CrawlerConfig.DEFAULT);
 	}
 	
 	public Crawler(Integer maxDepth) {
@@ -67,41 +90,103 @@ public class Crawler {
 	}
 	
 	public Crawler(List<String> blackList) {
-		this(blackList, Integer.MAX_VALUE);
+		this(new CrawlerConfig.Builder().blackList(blackList).build());
 	}
-	//TODO Resolve Deprecation
-	@SuppressWarnings("deprecation")
+
+	/**
+	 * A null maxDepth follows links to any depth. 
+	 */
 	public Crawler(List<String> blackList, Integer maxDepth) {
-		this.blackList = buildMasterBlacklist(blackList);
-		this.maxDepth = maxDepth;
-		if (webClient == null) {
-			webClient = new WebClient(BrowserVersion.FIREFOX_45);
-			this.configureOptions(webClient);
-			this.initializeContainers();
-		}
+		this(withMaxDepth(new CrawlerConfig.Builder().blackList(blackList), maxDepth).build());
+	}
+	
+	public Crawler(CrawlerConfig config) {
+		this.config = config;
+		// per Crawler rather than per crawl, so back to back crawls stay polite too 
+		this.politeness = new HostRateLimiter(config.getRequestsPerSecondPerHost(), config.getBurst());
+		this.initializeContainers();
+	}
+	
+	private static CrawlerConfig.Builder withMaxDepth(CrawlerConfig.Builder builder, Integer maxDepth) {
+		return (maxDepth == null) ? builder : builder.maxDepth(maxDepth);
+	}
+	
+	public CrawlerConfig getConfig() {
+		return config;
 	}
 	
-	private List<String> buildMasterBlacklist(List<String> blackList) {
-		// combines the default blacklist with the user supplied blacklist 
-		Set<String> fullBlackList = new HashSet<String>(blackList);
-		fullBlackList.addAll(blackListDefaults);
-		return new ArrayList<String>(fullBlackList);
+	/**
+	 * The RecrawlIndex of the last crawl started, or null. 
+	 */
+	public RecrawlIndex getRecrawlIndex() {
+		return recrawlIndex;
+	}
+	
+	/**
+	 * Runs this crawler's workers on a pool shared with other crawls (see CrawlOrchestrator) 
+	 * instead of one of its own. Each worker holds a thread until the crawl ends, so the pool needs 
+	 * a free thread per worker or the crawl runs short-handed. The pool is not shut down by the 
+	 * Crawler. 
+	 */
+	public void setWorkerPool(ExecutorService workerPool) {
+		this.workerPool = workerPool;
+	}
+	
+	/**
+	 * The per-host scheduler of the last crawl started, or null when it used fixed politeness. 
+	 */
+	public AdaptiveHostScheduler getHostScheduler() {
+		return hostScheduler;
 	}
 
 	private void initializeContainers() {
-		visitedUrls = new ArrayList<String>();
-		brokenUrlsAndCodes = new ArrayList<HashMap<String,String>>();
+		visitedUrls = Collections.synchronizedList(new ArrayList<String>());
+		brokenUrlsAndCodes = Collections.synchronizedList(new ArrayList<HashMap<String,String>>());
 	}
-
-	private void configureOptions(WebClient webClient) {
-		// Turn off all of the WebClient features we don't need (for speed)
-		WebClientOptions options = webClient.getOptions();
-		options.setThrowExceptionOnFailingStatusCode(false);
-		options.setThrowExceptionOnScriptError(false);
-		options.setJavaScriptEnabled(false);
-		options.setAppletEnabled(false);
-		options.setCssEnabled(false);
-		java.util.logging.Logger.getLogger("com.gargoylesoftware").setLevel(Level.OFF);
+	
+	/**
+	 * The ids the last crawl gave its urls, or null when it did not need them (see 
+	 * CrawlerConfig.needsUrlIds). 
+	 */
+	public UrlInterner getUrlIds() {
+		return urlIds;
+	}
+	
+	/**
+	 * Whether the last crawl was stopped by its time budget. 
+	 */
+	public boolean isOutOfTime() {
+		return outOfTime;
+	}
+	
+	/**
+	 * How many queued urls the last crawl did not get to, because of its time or page budget. 
+	 */
+	public int getUncrawledCount() {
+		return (frontier == null) ? 0 : frontier.droppedCount();
+	}
+	
+	/**
+	 * Who linked to whom in the last crawl, or null when it was not recorded. A resumed crawl only 
+	 * knows the links of the pages fetched after the restart. 
+	 */
+	public LinkGraph getLinkGraph() {
+		return linkGraph;
+	}
+	
+	/**
+	 * What the last crawl learned about duplicates, or null when pruning was off. 
+	 */
+	public NearDuplicateDetector getNearDuplicateDetector() {
+		return nearDuplicates;
+	}
+	
+	/**
+	 * Makes the PageFetcher each worker crawls with. 
+	 */
+	protected PageFetcher createFetcher() {
+		if (config.getFetchMode() == FetchMode.HTMLUNIT) return new HtmlUnitFetcher();
+		return new StreamingFetcher();
 	}
 
 	public List<String> getVisitedUrls() {
@@ -116,115 +201,333 @@ public class Crawler {
 		for (String s : this.visitedUrls) 
 			System.out.println("Visited: " + s);
 	}
+
+	public CrawlResults crawl(String seed) {
+		// once, before the seed is marked seen or scopes the UrlFilter, so `http://host` and the 
+		// `http://host/` it links back to are one page 
+		seed = canonical(seed);
+		File checkpointDir = config.getCheckpointDir();
+		CrawlCheckpoint journal = (checkpointDir == null) ? null : CrawlCheckpoint.create(checkpointDir, seed, config.getCheckpointIntervalMillis());
+		return crawl(seed, journal);
+	}
 	
-	private static String createPrimaryDomainRegex(String url) {
-		// used to contrain the crawler to the seed url's host domain
+	/**
+	 * Continues the crawl journaled in checkpointDir. Pages that had finished are not fetched 
+	 * again; pages that were queued or mid-fetch are. Results from before the restart are included 
+	 * in the returned CrawlResults, unless results are kept out of memory. 
+	 */
+	public CrawlResults resume(String checkpointDir) {
+		CrawlCheckpoint journal = CrawlCheckpoint.open(new File(checkpointDir), config.getCheckpointIntervalMillis());
+		CrawlCheckpoint.Recovered state = journal.replay();
+		String seed = canonical(journal.getSeed());
+		if (!state.isSeedFinished()) {
+			// died before the seed was expanded; there is nothing worth keeping 
+			journal.close();
+			return crawl(seed, CrawlCheckpoint.create(journal.getDirectory(), seed, config.getCheckpointIntervalMillis()));
+		}
+		startCrawl(seed, journal, true);
+		if (config.isKeepResultsInMemory()) {
+			visitedUrls.addAll(state.getVisited());
+			for (String[] broken : state.getBroken()) brokenUrlsAndCodes.add(mapValues(broken[0], broken[1]));
+		}
+		if (recrawlIndex != null) carryOverFinished(seed, state);
+		for (Map.Entry<String, Integer> pending : state.getPending().entrySet()) frontier.offer(pending.getKey(), pending.getValue(), wasBroken(pending.getKey()));
+		for (String url : state.getSeen()) frontier.markSeen(url);
+		pagesRemaining.addAndGet(-state.getFinished());
 		try {
-			return String.format(".*%s.*", new URL(url).getHost());
-		} catch (MalformedURLException e) {
-			throw new FrameworkException(e);
+			runWorkers();
+			finishLinkGraph(seed);
+			if (recrawlIndex != null) recrawlIndex.save();
+		} finally {
+			journal.close();
+			if (resultSink != null) resultSink.close();
 		}
+		return new CrawlResults(this);
 	}
-
-	public CrawlResults crawl(String seed) {
+	
+	// Pages finished before the restart are not fetched again, so their records from the previous 
+	// crawl stand in for the ones lost with the old process. 
+	private void carryOverFinished(String seed, CrawlCheckpoint.Recovered state) {
+		Set<String> broken = new HashSet<String>();
+		for (String[] page : state.getBroken()) {
+			broken.add(page[0]);
+			recrawlIndex.recordBroken(page[0]);
+		}
+		if (!broken.contains(seed)) recrawlIndex.carryOver(seed);
+		for (String url : state.getVisited()) 
+			if (!broken.contains(url)) recrawlIndex.carryOver(url);
+	}
+	
+	private void startCrawl(String seed, CrawlCheckpoint journal, boolean resuming) {
+		this.initializeContainers();
+		this.urlFilter = new UrlFilter(seed, config.getBlackList(), config.getUrlRules());
+		CrawlPriority priority = config.getCrawlPriority();
+		this.urlIds = config.needsUrlIds() ? new UrlInterner() : null;
+		if (config.isProbabilisticSeenSet()) 
+			this.frontier = new CrawlFrontier(FrontierEntry.SHALLOW_FIRST, new BloomSeenSet(config.getExpectedUrls(), config.getFalsePositiveRate()));
+		else if (priority != null) 
+			this.frontier = new CrawlFrontier(priority, urlIds);
+		else if (urlIds != null) 
+			this.frontier = new CrawlFrontier(FrontierEntry.SHALLOW_FIRST, urlIds);
+		else 
+			this.frontier = new CrawlFrontier(FrontierEntry.SHALLOW_FIRST, new FingerprintSeenSet());
+		this.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getTimeBudgetMillis());
+		this.outOfTime = false;
+		this.pagesRemaining = new AtomicInteger(config.getMaxPages() - 1);
+		this.checkpoint = journal;
+		this.recrawlIndex = (config.getRecrawlIndexFile() == null) ? null : new RecrawlIndex(config.getRecrawlIndexFile());
+		int adaptiveMaxPerHost = config.getAdaptiveMaxPerHost();
+		this.hostScheduler = (adaptiveMaxPerHost == 0) ? null : new AdaptiveHostScheduler(1, adaptiveMaxPerHost);
+		this.robots = (adaptiveMaxPerHost == 0) ? null : new RobotsTxt(config.getRobotsAgent());
+		this.linkRecorder = config.isRecordLinkGraph() ? new LinkGraph.Recorder() : null;
+		this.linkGraph = null;
+		this.nearDuplicates = config.createNearDuplicateDetector();
+		String resultSinkPath = config.getResultSinkPath();
+		if (resultSinkPath == null) this.resultSink = null;
+		else this.resultSink = resuming ? CrawlResultSink.open(resultSinkPath) : CrawlResultSink.create(resultSinkPath);
+	}
+	
+	private CrawlResults crawl(String seed, CrawlCheckpoint journal) {
+		startCrawl(seed, journal, false);
+		PageFetcher fetcher = createFetcher();
 		try {
-			this.primaryDomainToCrawl = createPrimaryDomainRegex(seed);
-			HtmlPage page = webClient.getPage(seed);
-			if (page.getWebResponse().getStatusCode() != STATUS_OK) 
-				brokenUrlsAndCodes.add(mapValues(seed, statusCodeAsString(page)));
-			else {
-				LinkedHashSet<String> urlsToCheck = getRelevantUrls(page, new LinkedHashSet<String>());
-				crawl(urlsToCheck);
-			}
-		} catch (MalformedURLException e) {
-			throw new PublicException(e);
+			frontier.markSeen(seed);
+			if (checkpoint != null) checkpoint.seen(seed);
+			CrawledPage page = fetch(fetcher, seed, 0);
+			if (page.isBroken()) 
+				addBroken(seed, page.getStatusCodeAsString());
+			else if (!isNearDuplicate(page)) 
+				verifyExternal(queueRelevantUrls(page, 0), 1);
+			if (checkpoint != null) checkpoint.done(seed);
+			runWorkers();
+			finishLinkGraph(seed);
+			if (recrawlIndex != null) recrawlIndex.save();
 		} catch (FailingHttpStatusCodeException e) {
 			throw new PublicException(e);
 		} catch (IOException e) {
 			throw new PublicException(e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new FrameworkException(e);
+		} finally {
+			fetcher.close();
+			if (checkpoint != null) checkpoint.close();
+			if (resultSink != null) resultSink.close();
 		}
 		return new CrawlResults(this);
 	}
-
-	private void crawl(LinkedHashSet<String> urlsToCheck) {
-		// Helper function for the crawler
-		// Basic flow:
-		// 1. Grab first url in list
-		// 2. Open it
-		// 3. log if valid
-		// 4. Back to 1 until done.
-		System.out.println(maxDepth);
-		if (maxDepth-- == 0)
+	
+	private void runWorkers() {
+		int workers = config.getWorkers();
+		ExecutorService pool = (workerPool == null) ? Executors.newFixedThreadPool(workers) : workerPool;
+		List<Future<?>> running = new ArrayList<Future<?>>();
+		try {
+			for (int i = 0; i < workers; i++) running.add(pool.submit(new Worker()));
+			for (Future<?> worker : running) awaitWorker(worker);
+		} catch (InterruptedException e) {
+			frontier.close();
+			Thread.currentThread().interrupt();
+			throw new FrameworkException(e);
+		} catch (ExecutionException e) {
+			frontier.close();
+			throw new FrameworkException(e.getCause());
+		} finally {
+			if (pool != workerPool) pool.shutdownNow();
+			else for (Future<?> worker : running) worker.cancel(true);
+		}
+	}
+	
+	private void awaitWorker(Future<?> worker) throws InterruptedException, ExecutionException {
+		if (config.getTimeBudgetMillis() == 0) {
+			worker.get();
 			return;
-		if (urlsToCheck.size() == 0)
+		}
+		try {
+			worker.get(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
 			return;
-		String currentUrl = this.popFirst(urlsToCheck);
-		System.out.println("Checking: " + currentUrl);
+		} catch (TimeoutException e) {
+			stopForDeadline();
+		}
 		try {
-			HtmlPage page = webClient.getPage(currentUrl);
-			visitedUrls.add(currentUrl);
-			if (isBadStatusCode(page)) 
-				brokenUrlsAndCodes.add(mapValues(currentUrl, statusCodeAsString(page)));
-			urlsToCheck.addAll(getRelevantUrls(page, urlsToCheck));
-			crawl(urlsToCheck);
+			worker.get(deadlineNanos + TimeUnit.MILLISECONDS.toNanos(DEADLINE_GRACE_MILLIS) - System.nanoTime(), TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+			// still mid-page after the grace period; cancelled with the rest below 
+		}
+	}
+	
+	private boolean isPastDeadline() {
+		if (config.getTimeBudgetMillis() == 0 || System.nanoTime() - deadlineNanos < 0) return false;
+		stopForDeadline();
+		return true;
+	}
+	
+	private void stopForDeadline() {
+		outOfTime = true;
+		frontier.close();
+	}
+	
+	// Each worker owns a PageFetcher for its whole life and keeps taking urls off the 
+	// shared frontier until it is drained (or the page budget runs out). 
+	//
+	private class Worker implements Runnable {
+		
+		public void run() {
+			PageFetcher fetcher = createFetcher();
+			try {
+				FrontierEntry entry;
+				while ((entry = frontier.take()) != null) {
+					try {
+						if (isPastDeadline() || pagesRemaining.getAndDecrement() <= 0) frontier.close();
+						else crawlPage(fetcher, entry);
+					} finally {
+						frontier.done();
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				fetcher.close();
+			}
+		}
+	}
+
+	private void crawlPage(PageFetcher fetcher, FrontierEntry entry) throws InterruptedException {
+		// Basic flow:
+		// 1. Open the url
+		// 2. log if valid
+		// 3. queue up any new urls it links to, one level deeper
+		String currentUrl = entry.getUrl();
+		try {
+			CrawledPage page = fetch(fetcher, currentUrl, entry.getDepth());
+			addVisited(currentUrl);
+			if (page.isBroken()) 
+				addBroken(currentUrl, page.getStatusCodeAsString());
+			if (page.isBroken() || !isNearDuplicate(page)) 
+				verifyExternal(queueRelevantUrls(page, entry.getDepth()), entry.getDepth() + 1);
+		} catch (InterruptedException e) {
+			throw e;
 		} catch (Exception e) {
-			brokenUrlsAndCodes.add(mapValues(currentUrl, e.getMessage()));
-			crawl(urlsToCheck);
+			addBroken(currentUrl, e.getMessage());
 		}
+		if (checkpoint != null) checkpoint.done(currentUrl);
+	}
+	
+	private void addVisited(String url) {
+		if (config.isKeepResultsInMemory()) visitedUrls.add(url);
+		if (checkpoint != null) checkpoint.visited(url);
 	}
 	
-	private String popFirst(LinkedHashSet<String> urlSet) {
-		String head = urlSet.iterator().next();
-		urlSet.remove(head);
-		return head;
+	private void addBroken(String url, String code) {
+		if (config.isKeepResultsInMemory()) brokenUrlsAndCodes.add(mapValues(url, code));
+		if (recrawlIndex != null) recrawlIndex.recordBroken(url);
+		if (checkpoint != null) checkpoint.broken(url, code);
+	}
+	
+	private CrawledPage fetch(PageFetcher fetcher, String url, int depth) throws IOException, InterruptedException {
+		PageRecord previous = (recrawlIndex == null) ? null : recrawlIndex.getPrevious(url);
+		acquireHost(url);
+		long started = System.nanoTime();
+		CrawledPage page = null;
+		try {
+			page = HeadFetcher.isNonHtml(url) ? heads.fetch(url, previous) : fetcher.fetch(url, previous);
+		} catch (IOException e) {
+			if (resultSink != null) resultSink.record(url, 0, elapsedMillis(started), depth, String.valueOf(e.getMessage()));
+			throw e;
+		} catch (RuntimeException e) {
+			if (resultSink != null) resultSink.record(url, 0, elapsedMillis(started), depth, String.valueOf(e.getMessage()));
+			throw e;
+		} finally {
+			if (hostScheduler != null) hostScheduler.release(url, (page == null) ? 0 : page.getStatusCode(), System.nanoTime() - started);
+		}
+		if (resultSink != null) resultSink.record(url, page.getStatusCode(), elapsedMillis(started), depth, errorOf(page));
+		if (recrawlIndex != null && !page.isBroken()) recrawlIndex.record(url, page.toRecord());
+		return page;
+	}
+	
+	private void acquireHost(String url) throws InterruptedException {
+		if (hostScheduler == null) {
+			politeness.acquire(url);
+			return;
+		}
+		hostScheduler.setMinInterval(HostRateLimiter.hostOf(url), robots.crawlDelayMillis(url));
+		hostScheduler.acquire(url);
 	}
 	
-	private boolean isBadStatusCode(HtmlPage page) {
-		int status = page.getWebResponse().getStatusCode();
-		String responseData = page.getWebResponse().getContentAsString().toLowerCase();
-		return (
-			status != STATUS_OK 
-			|| responseData.matches("^404 error")
-			|| responseData.matches("^application error")
-		); 
+	private static long elapsedMillis(long startedNanos) {
+		return (System.nanoTime() - startedNanos) / 1000000;
 	}
 	
-	private String statusCodeAsString(HtmlPage page) {
-		return Integer.toString(page.getWebResponse().getStatusCode());
+	private static String errorOf(CrawledPage page) {
+		if (!page.isBroken()) return null;
+		// error is hard coded into the HTML 
+		if (page.getStatusCode() == 200) return "App Error";
+		return "HTTP " + page.getStatusCode();
+	}
+
+	// A near duplicate links to what its original already did, so there is nothing new to queue. 
+	private boolean isNearDuplicate(CrawledPage page) {
+		if (nearDuplicates == null || !page.hasSimHash()) return false;
+		return nearDuplicates.check(page.getUrl(), page.getSimHash());
 	}
 
-	private LinkedHashSet<String> getRelevantUrls(HtmlPage page, LinkedHashSet<String> urlsToVisit)  {
+	private List<String> queueRelevantUrls(CrawledPage page, int pageDepth)  {
 		// Prevents the crawler from looping off into infinity by filtering out any urls that have 
 		// either been checked previously, aren't relevant to vpdev (e.g. yahoo.com), or are radius,
 		// sort links, or Grocery Coupons (which are too numerous to cover and/or covered by Selenium tests)
-		try {
-			String url;
-			for (HtmlAnchor anchor : page.getAnchors()) {
-				url = page.getFullyQualifiedUrl(anchor.getHrefAttribute()).toString();
-				if (isValidAnchorType(url, urlsToVisit)) urlsToVisit.add(url);
+		// Returns the new off-site links to verify, when that is on. 
+		List<String> external = new ArrayList<String>();
+		if (pageDepth >= config.getMaxDepth()) return external;
+		int[] linked = (linkRecorder == null) ? null : new int[page.getLinks().size()];
+		int linkCount = 0;
+		for (String link : page.getLinks()) {
+			String url = canonical(link);
+			if (nearDuplicates != null && nearDuplicates.isPruned(url)) continue;
+			if (urlFilter.accepts(url)) {
+				if (frontier.offer(url, pageDepth + 1, wasBroken(url)) && checkpoint != null) checkpoint.queued(url, pageDepth + 1);
+			} else if (config.isVerifyExternalLinks() && urlFilter.acceptsExternal(url)) {
+				if (frontier.markSeen(url)) {
+					if (checkpoint != null) checkpoint.seen(url);
+					external.add(url);
+				}
+			} else {
+				continue;
 			}
-		} catch (Exception e) {
-			e.printStackTrace();
+			int id = (linked == null) ? -1 : urlIds.idOf(url);
+			if (id >= 0) linked[linkCount++] = id;
 		}
-		return urlsToVisit;
+		int from = (linked == null) ? -1 : urlIds.idOf(page.getUrl());
+		if (from >= 0) linkRecorder.record(from, linked, linkCount);
+		return external;
 	}
 	
-	private boolean isValidAnchorType(String url, LinkedHashSet<String> urlsToVisit) {
-		return (
-//				url.contains("savings?cid")
-//				&& url.contains("vpdev")
-				url.matches(this.primaryDomainToCrawl)
-				&& !visitedUrls.contains(url) 
-				&& !urlsToVisit.contains(url) 
-				&& url.length() > 6
-				&& !inBlackList(url));
+	private boolean wasBroken(String url) {
+		return recrawlIndex != null && recrawlIndex.wasBroken(url);
 	}
 	
-	private boolean inBlackList(String url) {
-		boolean isPresent = false; 
-		for (String criterion : blackList) 
-			if (url.contains(criterion)) isPresent = true;
-		return isPresent;
+	private void finishLinkGraph(String seed) {
+		if (linkRecorder == null) return;
+		this.linkGraph = LinkGraph.build(urlIds, urlIds.idOf(seed), linkRecorder);
+		if (config.getLinkGraphFile() != null) linkGraph.save(config.getLinkGraphFile());
+	}
+	
+	private String canonical(String url) {
+		UrlCanonicalizer canonicalizer = config.getUrlCanonicalizer();
+		return (canonicalizer == null) ? url : canonicalizer.canonicalize(url);
+	}
+	
+	private void verifyExternal(List<String> urls, int depth) throws InterruptedException {
+		for (String url : urls) {
+			try {
+				CrawledPage page = fetch(heads, url, depth);
+				addVisited(url);
+				if (page.isBroken()) addBroken(url, page.getStatusCodeAsString());
+			} catch (IOException e) {
+				addBroken(url, e.getMessage());
+			} catch (RuntimeException e) {
+				addBroken(url, e.getMessage());
+			}
+			if (checkpoint != null) checkpoint.done(url);
+		}
 	}
 
 	@SuppressWarnings("serial")
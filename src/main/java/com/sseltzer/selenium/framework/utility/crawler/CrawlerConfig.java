@@ -0,0 +1,489 @@
+package com.sseltzer.selenium.framework.utility.crawler;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.sseltzer.selenium.framework.utility.crawler.Crawler.FetchMode;
+import com.sseltzer.selenium.framework.utility.crawler.filter.UrlCanonicalizer;
+import com.sseltzer.selenium.framework.utility.crawler.filter.UrlFilterEngine;
+
+/**
+ *
+ *
+ * CrawlerConfig.java 
+ *
+ * ##About: 
+ *
+ * Everything a Crawler can be told before it starts, gathered in one immutable object. Each 
+ * Builder method checks its own arguments, and `build` checks the options against each other, 
+ * so a combination that cannot work (a link graph over a Bloom filter, say) fails where the 
+ * config is written rather than halfway into a crawl. The options, by concern: 
+ *
+ * * scope: `blackList`, `urlRules`, `maxDepth`, `maxPages`, `verifyExternalLinks`, `urlCanonicalizer` 
+ * * speed: `workers`, `fetchMode`, `politeness` or `adaptivePoliteness` 
+ * * memory: `probabilisticSeenSet`, `keepResultsInMemory` 
+ * * durability: `checkpointDir`, `checkpointInterval`, `recrawlIndex`, `resultSink` 
+ * * order and time: `timeBudget`, `crawlPriority` 
+ * * analysis: `recordLinkGraph`, `linkGraphFile`, `nearDuplicatePruning` 
+ *
+ * A config can be shared by any number of Crawlers; each crawl builds its own state from it. 
+ *
+ * ##Usage: 
+ *
+ *     CrawlerConfig config = new CrawlerConfig.Builder() 
+ *         .maxDepth(3) 
+ *         .workers(8) 
+ *         .timeBudget(10 * 60 * 1000) 
+ *         .recrawlIndex("target/crawl/index.bin") 
+ *         .build(); 
+ *     CrawlResults results = new Crawler(config).crawl("http://www.valpak.com/"); 
+ *
+ */
+public final class CrawlerConfig {
+	
+	/**
+	 * Every option at its default. 
+	 */
+	public static final CrawlerConfig DEFAULT = new Builder().build();
+	
+	private final List<String> blackList;
+	private final UrlFilterEngine urlRules;
+	private final UrlCanonicalizer canonicalizer;
+	private final int maxDepth;
+	private final int maxPages;
+	private final boolean verifyExternalLinks;
+	private final int workers;
+	private final FetchMode fetchMode;
+	private final double requestsPerSecondPerHost;
+	private final int burst;
+	private final int adaptiveMaxPerHost;
+	private final String robotsAgent;
+	private final long expectedUrls;
+	private final double falsePositiveRate;
+	private final boolean keepResultsInMemory;
+	private final File checkpointDir;
+	private final long checkpointIntervalMillis;
+	private final File recrawlIndexFile;
+	private final String resultSinkPath;
+	private final long timeBudgetMillis;
+	private final CrawlPriority crawlPriority;
+	private final boolean recordLinkGraph;
+	private final File linkGraphFile;
+	private final boolean pruneNearDuplicates;
+	private final int duplicateDistance;
+	private final int duplicateMinSamples;
+	private final double duplicatePruneRatio;
+	
+	private CrawlerConfig(Builder builder) {
+		this.blackList = Collections.unmodifiableList(new ArrayList<String>(builder.blackList));
+		this.urlRules = builder.urlRules;
+		this.canonicalizer = builder.canonicalizer;
+		this.maxDepth = builder.maxDepth;
+		this.maxPages = builder.maxPages;
+		this.verifyExternalLinks = builder.verifyExternalLinks;
+		this.workers = builder.workers;
+		this.fetchMode = builder.fetchMode;
+		this.requestsPerSecondPerHost = builder.requestsPerSecondPerHost;
+		this.burst = builder.burst;
+		this.adaptiveMaxPerHost = builder.adaptiveMaxPerHost;
+		this.robotsAgent = builder.robotsAgent;
+		this.expectedUrls = builder.expectedUrls;
+		this.falsePositiveRate = builder.falsePositiveRate;
+		this.keepResultsInMemory = builder.keepResultsInMemory;
+		this.checkpointDir = builder.checkpointDir;
+		this.checkpointIntervalMillis = builder.checkpointIntervalMillis;
+		this.recrawlIndexFile = builder.recrawlIndexFile;
+		this.resultSinkPath = builder.resultSinkPath;
+		this.timeBudgetMillis = builder.timeBudgetMillis;
+		this.crawlPriority = builder.crawlPriority;
+		this.recordLinkGraph = builder.recordLinkGraph;
+		this.linkGraphFile = builder.linkGraphFile;
+		this.pruneNearDuplicates = builder.pruneNearDuplicates;
+		this.duplicateDistance = builder.duplicateDistance;
+		this.duplicateMinSamples = builder.duplicateMinSamples;
+		this.duplicatePruneRatio = builder.duplicatePruneRatio;
+	}
+	
+	public List<String> getBlackList() {
+		return blackList;
+	}
+	
+	public UrlFilterEngine getUrlRules() {
+		return urlRules;
+	}
+	
+	public UrlCanonicalizer getUrlCanonicalizer() {
+		return canonicalizer;
+	}
+	
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+	
+	public int getMaxPages() {
+		return maxPages;
+	}
+	
+	public boolean isVerifyExternalLinks() {
+		return verifyExternalLinks;
+	}
+	
+	public int getWorkers() {
+		return workers;
+	}
+	
+	public FetchMode getFetchMode() {
+		return fetchMode;
+	}
+	
+	public double getRequestsPerSecondPerHost() {
+		return requestsPerSecondPerHost;
+	}
+	
+	public int getBurst() {
+		return burst;
+	}
+	
+	/**
+	 * The most requests adaptive politeness lets any one host have at once, or 0 when the fixed 
+	 * per-host rate is used. 
+	 */
+	public int getAdaptiveMaxPerHost() {
+		return adaptiveMaxPerHost;
+	}
+	
+	public String getRobotsAgent() {
+		return robotsAgent;
+	}
+	
+	/**
+	 * Whether seen urls are kept in a Bloom filter (see BloomSeenSet) rather than exactly. 
+	 */
+	public boolean isProbabilisticSeenSet() {
+		return expectedUrls > 0;
+	}
+	
+	public long getExpectedUrls() {
+		return expectedUrls;
+	}
+	
+	public double getFalsePositiveRate() {
+		return falsePositiveRate;
+	}
+	
+	public boolean isKeepResultsInMemory() {
+		return keepResultsInMemory;
+	}
+	
+	public File getCheckpointDir() {
+		return checkpointDir;
+	}
+	
+	public long getCheckpointIntervalMillis() {
+		return checkpointIntervalMillis;
+	}
+	
+	public File getRecrawlIndexFile() {
+		return recrawlIndexFile;
+	}
+	
+	public String getResultSinkPath() {
+		return resultSinkPath;
+	}
+	
+	public long getTimeBudgetMillis() {
+		return timeBudgetMillis;
+	}
+	
+	/**
+	 * The order the frontier is taken in: the CrawlPriority given, the default one when there is 
+	 * a time budget (and the exact seen set), or null for breadth first. 
+	 */
+	public CrawlPriority getCrawlPriority() {
+		if (crawlPriority == null && timeBudgetMillis > 0 && !isProbabilisticSeenSet()) return new CrawlPriority();
+		return crawlPriority;
+	}
+	
+	public boolean isRecordLinkGraph() {
+		return recordLinkGraph;
+	}
+	
+	public File getLinkGraphFile() {
+		return linkGraphFile;
+	}
+	
+	public boolean isNearDuplicatePruning() {
+		return pruneNearDuplicates;
+	}
+	
+	/**
+	 * A new NearDuplicateDetector with these thresholds, or null when pruning is off. 
+	 */
+	public NearDuplicateDetector createNearDuplicateDetector() {
+		return pruneNearDuplicates ? new NearDuplicateDetector(duplicateDistance, duplicateMinSamples, duplicatePruneRatio) : null;
+	}
+	
+	/**
+	 * Whether a crawl needs an int id per url (see UrlInterner): for the link graph, and to count 
+	 * inbound links for a CrawlPriority. Otherwise seen urls are only kept as fingerprints. 
+	 */
+	public boolean needsUrlIds() {
+		return recordLinkGraph || getCrawlPriority() != null;
+	}
+	
+	// Collects options with the defaults below; `build` checks how they combine. 
+	//
+	public static class Builder {
+		private static final double DEFAULT_REQUESTS_PER_SECOND = 10;
+		private static final int DEFAULT_BURST = 10;
+		private static final long DEFAULT_CHECKPOINT_INTERVAL_MILLIS = 10000;
+	
+		private List<String> blackList = Collections.<String> emptyList();
+		private UrlFilterEngine urlRules;
+		private UrlCanonicalizer canonicalizer = UrlCanonicalizer.DEFAULT;
+		private int maxDepth = Integer.MAX_VALUE;
+		private int maxPages = Integer.MAX_VALUE;
+		private boolean verifyExternalLinks;
+		private int workers = 1;
+		private FetchMode fetchMode = FetchMode.STREAMING;
+		private double requestsPerSecondPerHost = DEFAULT_REQUESTS_PER_SECOND;
+		private int burst = DEFAULT_BURST;
+		private int adaptiveMaxPerHost;
+		private String robotsAgent;
+		private long expectedUrls;
+		private double falsePositiveRate;
+		private boolean keepResultsInMemory = true;
+		private File checkpointDir;
+		private long checkpointIntervalMillis = DEFAULT_CHECKPOINT_INTERVAL_MILLIS;
+		private File recrawlIndexFile;
+		private String resultSinkPath;
+		private long timeBudgetMillis;
+		private CrawlPriority crawlPriority;
+		private boolean recordLinkGraph;
+		private File linkGraphFile;
+		private boolean pruneNearDuplicates;
+		private int duplicateDistance = 3;
+		private int duplicateMinSamples = 5;
+		private double duplicatePruneRatio = 0.8;
+	
+		/**
+		 * Substrings of urls that are never crawled. 
+		 */
+		public Builder blackList(List<String> blackList) {
+			if (blackList == null) throw new IllegalArgumentException("blackList cannot be null");
+			this.blackList = blackList;
+			return this;
+		}
+	
+		/**
+		 * Narrows the crawl with extra include/exclude rules, on top of the seed host and blacklist. 
+		 */
+		public Builder urlRules(UrlFilterEngine urlRules) {
+			this.urlRules = urlRules;
+			return this;
+		}
+	
+		/**
+		 * The rules links are canonicalized by before they are queued; UrlCanonicalizer.DEFAULT 
+		 * unless set. Null crawls urls exactly as they are linked. 
+		 */
+		public Builder urlCanonicalizer(UrlCanonicalizer canonicalizer) {
+			this.canonicalizer = canonicalizer;
+			return this;
+		}
+	
+		/**
+		 * Stops links from being followed past this depth (the seed is depth 0). 
+		 */
+		public Builder maxDepth(int maxDepth) {
+			if (maxDepth < 0) throw new IllegalArgumentException("maxDepth cannot be negative");
+			this.maxDepth = maxDepth;
+			return this;
+		}
+	
+		/**
+		 * Caps the number of pages fetched by a crawl, the seed included. 
+		 */
+		public Builder maxPages(int maxPages) {
+			if (maxPages < 1) throw new IllegalArgumentException("maxPages must be at least 1");
+			this.maxPages = maxPages;
+			return this;
+		}
+	
+		/**
+		 * Also checks links that leave the site (and miss the blacklist), each once, with a HEAD. 
+		 */
+		public Builder verifyExternalLinks() {
+			this.verifyExternalLinks = true;
+			return this;
+		}
+	
+		/**
+		 * How many pages are fetched at once. 
+		 */
+		public Builder workers(int workers) {
+			if (workers < 1) throw new IllegalArgumentException("workers must be at least 1");
+			this.workers = workers;
+			return this;
+		}
+	
+		public Builder fetchMode(FetchMode fetchMode) {
+			if (fetchMode == null) throw new IllegalArgumentException("fetchMode cannot be null");
+			this.fetchMode = fetchMode;
+			return this;
+		}
+	
+		/**
+		 * Limits how fast any single host is hit, across all workers. Replaces adaptive politeness. 
+		 */
+		public Builder politeness(double requestsPerSecondPerHost, int burst) {
+			if (requestsPerSecondPerHost <= 0) throw new IllegalArgumentException("requestsPerSecondPerHost must be positive");
+			if (burst < 1) throw new IllegalArgumentException("burst must be at least 1");
+			this.requestsPerSecondPerHost = requestsPerSecondPerHost;
+			this.burst = burst;
+			this.adaptiveMaxPerHost = 0;
+			return this;
+		}
+	
+		/**
+		 * Replaces the fixed per-host rate with adaptive per-host concurrency (see 
+		 * AdaptiveHostScheduler), never above maxPerHost, honoring robots.txt Crawl-delay for 
+		 * robotsAgent (or just the `*` group when null). 
+		 */
+		public Builder adaptivePoliteness(int maxPerHost, String robotsAgent) {
+			if (maxPerHost < 1) throw new IllegalArgumentException("maxPerHost must be at least 1");
+			this.adaptiveMaxPerHost = maxPerHost;
+			this.robotsAgent = robotsAgent;
+			return this;
+		}
+	
+		/**
+		 * Remembers seen urls in a Bloom filter sized for expectedUrls at the given false positive 
+		 * rate, rather than exactly. Memory is then fixed up front; a false positive means a page is 
+		 * skipped. 
+		 */
+		public Builder probabilisticSeenSet(long expectedUrls, double falsePositiveRate) {
+			if (expectedUrls < 1) throw new IllegalArgumentException("expectedUrls must be at least 1");
+			if (falsePositiveRate <= 0 || falsePositiveRate >= 1) throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+			this.expectedUrls = expectedUrls;
+			this.falsePositiveRate = falsePositiveRate;
+			return this;
+		}
+	
+		/**
+		 * Whether visited and broken urls are also kept in lists for CrawlResults (the default). 
+		 * Turning it off needs a result sink, or nothing would be left of the crawl. 
+		 */
+		public Builder keepResultsInMemory(boolean keepResultsInMemory) {
+			this.keepResultsInMemory = keepResultsInMemory;
+			return this;
+		}
+	
+		/**
+		 * Journals every crawl to this directory so it can be picked up again with `resume`. Any 
+		 * checkpoint already in the directory is replaced when a new crawl starts. 
+		 */
+		public Builder checkpointDir(String checkpointDir) {
+			this.checkpointDir = (checkpointDir == null) ? null : new File(checkpointDir);
+			return this;
+		}
+	
+		/**
+		 * How often journaled events are forced to disk; at most this much work is lost in a crash. 
+		 */
+		public Builder checkpointInterval(long intervalMillis) {
+			if (intervalMillis < 0) throw new IllegalArgumentException("intervalMillis cannot be negative");
+			this.checkpointIntervalMillis = intervalMillis;
+			return this;
+		}
+	
+		/**
+		 * Keeps a RecrawlIndex at this path, so the next crawl only pays for what changed. 
+		 */
+		public Builder recrawlIndex(String path) {
+			this.recrawlIndexFile = (path == null) ? null : new File(path);
+			return this;
+		}
+	
+		/**
+		 * Streams each fetched url to this file (see CrawlResultSink) while the crawl runs. A new 
+		 * crawl replaces the file; `resume` appends to it. 
+		 */
+		public Builder resultSink(String path) {
+			this.resultSinkPath = path;
+			return this;
+		}
+	
+		/**
+		 * Bounds every crawl (and every resume) to this much wall-clock time. No page is started 
+		 * after the deadline; pages still in flight get up to 10 seconds to finish and are then 
+		 * abandoned, and everything is written out as usual. Unless a crawlPriority is given the 
+		 * default CrawlPriority orders the frontier (breadth first with a probabilistic seen set). 
+		 */
+		public Builder timeBudget(long budgetMillis) {
+			if (budgetMillis < 0) throw new IllegalArgumentException("budgetMillis cannot be negative");
+			this.timeBudgetMillis = budgetMillis;
+			return this;
+		}
+	
+		/**
+		 * Orders the frontier by importance rather than breadth first. Pages broken on the previous 
+		 * crawl are only known with a recrawlIndex. Needs the exact seen set. 
+		 */
+		public Builder crawlPriority(CrawlPriority crawlPriority) {
+			this.crawlPriority = crawlPriority;
+			return this;
+		}
+	
+		/**
+		 * Records who links to whom (see LinkGraph, Crawler.getLinkGraph). Needs the exact seen set. 
+		 */
+		public Builder recordLinkGraph() {
+			this.recordLinkGraph = true;
+			return this;
+		}
+	
+		/**
+		 * Records the link graph and saves it to this file after every crawl (see LinkGraph.load). 
+		 */
+		public Builder linkGraphFile(String path) {
+			this.linkGraphFile = (path == null) ? null : new File(path);
+			if (path != null) this.recordLinkGraph = true;
+			return this;
+		}
+	
+		/**
+		 * Skips the links of pages within 3 bits (SimHash) of a page already crawled, and stops 
+		 * queueing url patterns once 80% of at least 5 of their pages were such duplicates. 
+		 */
+		public Builder nearDuplicatePruning() {
+			this.pruneNearDuplicates = true;
+			return this;
+		}
+	
+		/**
+		 * Near-duplicate pruning with other thresholds (see NearDuplicateDetector). 
+		 */
+		public Builder nearDuplicatePruning(int maxDistance, int minSamples, double pruneRatio) {
+			new NearDuplicateDetector(maxDistance, minSamples, pruneRatio); // validates
+			this.pruneNearDuplicates = true;
+			this.duplicateDistance = maxDistance;
+			this.duplicateMinSamples = minSamples;
+			this.duplicatePruneRatio = pruneRatio;
+			return this;
+		}
+	
+		public CrawlerConfig build() {
+			boolean probabilistic = expectedUrls > 0;
+			if (recordLinkGraph && probabilistic)
+				throw new IllegalArgumentException("The link graph needs the exact seen set, not a probabilistic one");
+			if (crawlPriority != null && probabilistic)
+				throw new IllegalArgumentException("A CrawlPriority needs the exact seen set, not a probabilistic one");
+			if (!keepResultsInMemory && resultSinkPath == null)
+				throw new IllegalArgumentException("Results kept out of memory need a result sink");
+			return new CrawlerConfig(this);
+		}
+	}
+}
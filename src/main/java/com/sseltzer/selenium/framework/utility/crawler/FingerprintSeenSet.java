@@ -0,0 +1,78 @@
+package com.sseltzer.selenium.framework.utility.crawler;
+
+/**
+ *
+ *
+ * FingerprintSeenSet.java
+ * 
+ * Exact (up to fingerprint collisions, see UrlFingerprint) seen set: 64-bit fingerprints in a 
+ * long[] with open addressing and linear probing. That is 8 bytes a slot and no objects per url, 
+ * against roughly 100+ bytes per url for a HashSet of Strings. The table doubles when it is 
+ * half full, so lookups stay O(1). 
+ *
+ */
+public class FingerprintSeenSet implements UrlSeenSet {
+	
+	// 0 marks an empty slot, so a fingerprint that happens to be 0 is stored as this instead 
+	private static final long ZERO_STANDIN = 1;
+	
+	private long[] slots;
+	private int mask;
+	private long size = 0;
+	
+	public FingerprintSeenSet() {
+		this(1024);
+	}
+	
+	public FingerprintSeenSet(int expectedUrls) {
+		int capacity = Integer.highestOneBit(Math.max(16, expectedUrls * 2 - 1)) << 1;
+		slots = new long[capacity];
+		mask = capacity - 1;
+	}
+
+	public boolean add(String url) {
+		if (!insert(fingerprint(url))) return false;
+		if (++size * 2 > slots.length) grow();
+		return true;
+	}
+
+	public boolean contains(String url) {
+		long fingerprint = fingerprint(url);
+		for (int i = index(fingerprint); slots[i] != 0; i = (i + 1) & mask) {
+			if (slots[i] == fingerprint) return true;
+		}
+		return false;
+	}
+
+	public long size() {
+		return size;
+	}
+	
+	private boolean insert(long fingerprint) {
+		int i = index(fingerprint);
+		while (slots[i] != 0) {
+			if (slots[i] == fingerprint) return false;
+			i = (i + 1) & mask;
+		}
+		slots[i] = fingerprint;
+		return true;
+	}
+	
+	private void grow() {
+		long[] old = slots;
+		slots = new long[old.length * 2];
+		mask = slots.length - 1;
+		for (long fingerprint : old) {
+			if (fingerprint != 0) insert(fingerprint);
+		}
+	}
+	
+	private int index(long fingerprint) {
+		return (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+	}
+	
+	private static long fingerprint(String url) {
+		long fingerprint = UrlFingerprint.of(url);
+		return (fingerprint == 0) ? ZERO_STANDIN : fingerprint;
+	}
+}
@@ -0,0 +1,84 @@
+package com.sseltzer.selenium.framework.utility.crawler;
+
+import java.util.Comparator;
+
+/**
+ *
+ *
+ * FrontierEntry.java
+ * 
+ * A url waiting in the CrawlFrontier, with its link depth (the seed is 0, pages it links to are 
+ * 1, and so on) and the order it was queued in. When the frontier interns its urls the entry also 
+ * carries the url's id (see UrlInterner), otherwise the id is -1, and when the frontier is 
+ * ordered by importance, the url's CrawlPriority score. 
+ *
+ */
+public class FrontierEntry {
+	
+	/**
+	 * Breadth first: shallower pages first, then first come first served. 
+	 */
+	public static final Comparator<FrontierEntry> SHALLOW_FIRST = new Comparator<FrontierEntry>() {
+		public int compare(FrontierEntry a, FrontierEntry b) {
+			if (a.depth != b.depth) return (a.depth < b.depth) ? -1 : 1;
+			return Long.compare(a.sequence, b.sequence);
+		}
+	};
+	
+	/**
+	 * Highest score first, then as SHALLOW_FIRST. 
+	 */
+	public static final Comparator<FrontierEntry> MOST_IMPORTANT_FIRST = new Comparator<FrontierEntry>() {
+		public int compare(FrontierEntry a, FrontierEntry b) {
+			if (a.score != b.score) return (a.score > b.score) ? -1 : 1;
+			return SHALLOW_FIRST.compare(a, b);
+		}
+	};
+	
+	private final String url;
+	private final int id;
+	private final int depth;
+	private final long sequence;
+	private final int score;
+	
+	public FrontierEntry(String url, int depth, long sequence) {
+		this(url, -1, depth, sequence);
+	}
+	
+	public FrontierEntry(String url, int id, int depth, long sequence) {
+		this(url, id, depth, sequence, 0);
+	}
+	
+	public FrontierEntry(String url, int id, int depth, long sequence, int score) {
+		this.url = url;
+		this.id = id;
+		this.depth = depth;
+		this.sequence = sequence;
+		this.score = score;
+	}
+	
+	public String getUrl() {
+		return url;
+	}
+	
+	public int getId() {
+		return id;
+	}
+	
+	public int getDepth() {
+		return depth;
+	}
+	
+	public long getSequence() {
+		return sequence;
+	}
+	
+	public int getScore() {
+		return score;
+	}
+	
+	@Override
+	public String toString() {
+		return url + " (depth " + depth + ")";
+	}
+}
@@ -0,0 +1,62 @@
+package com.sseltzer.selenium.framework.utility.crawler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.sseltzer.selenium.framework.utility.crawler.filter.UrlParts;
+
+import com.sseltzer.selenium.framework.verification.support.HttpResponseObject;
+
+/**
+ *
+ *
+ * HeadFetcher.java
+ * 
+ * PageFetcher that only verifies a url: a HEAD, or a one byte ranged GET where HEAD is refused, 
+ * through LoaderTaskThread and HttpResponseObject. No body is downloaded and no links come back. 
+ * A 206 answer to the ranged GET is reported as 200. Holds no state, so one can be shared by 
+ * every worker. 
+ * 
+ * The Crawler uses it for off-site links and for urls whose extension (`isNonHtml`) says they 
+ * are documents, images or other assets, whichever fetch mode it is in. 
+ *
+ */
+public class HeadFetcher implements PageFetcher {
+	
+	private static final int STATUS_OK = 200;
+	private static final Set<String> NON_HTML_EXTENSIONS = new HashSet<String>(Arrays.asList(
+		"pdf", "doc", "docx", "xls", "xlsx", "ppt", "pptx", "zip", "gz", "csv", "txt",
+		"jpg", "jpeg", "png", "gif", "svg", "webp", "ico", "bmp",
+		"mp3", "mp4", "mov", "avi", "webm", "css", "js", "woff", "woff2", "ttf", "eot"
+	));
+
+	public CrawledPage fetch(String url, PageRecord previous) throws IOException {
+		HttpResponseObject response;
+		try {
+			response = HttpResponseObject.verify(url);
+		} catch (RuntimeException e) {
+			// LoaderTaskThread wraps connection failures; report the underlying one 
+			Throwable cause = (e.getCause() == null) ? e : e.getCause();
+			throw new IOException(cause.getMessage(), cause);
+		}
+		if (response.getStatusCode() == null) throw new IOException("No response from " + url);
+		int status = response.isOk() ? STATUS_OK : response.getStatusCode();
+		return new CrawledPage(url, status, false, null, null, 0, new ArrayList<String>());
+	}
+
+	/**
+	 * True when the url's extension is a known non-HTML type. 
+	 */
+	public static boolean isNonHtml(String url) {
+		String path = UrlParts.of(url).getPath();
+		int dot = path.lastIndexOf('.');
+		if (dot < 0 || dot < path.lastIndexOf('/')) return false;
+		return NON_HTML_EXTENSIONS.contains(path.substring(dot + 1).toLowerCase());
+	}
+	
+	public void close() {
+	}
+}
@@ -0,0 +1,106 @@
+package com.sseltzer.selenium.framework.utility.crawler;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+
+import com.gargoylesoftware.htmlunit.BrowserVersion;
+import com.gargoylesoftware.htmlunit.Page;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.WebClientOptions;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.html.HtmlAnchor;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+
+/**
+ *
+ *
+ * HtmlUnitFetcher.java
+ * 
+ * PageFetcher on an HtmlUnit WebClient, with everything but HTML parsing switched off. Pages 
+ * that are not HTML (PDFs, images) are reported with their status and no links. This is the 
+ * slower, full DOM path; see StreamingFetcher for the default. 
+ *
+ */
+public class HtmlUnitFetcher implements PageFetcher {
+	
+	private final WebClient webClient;
+	
+	public HtmlUnitFetcher() {
+		this.webClient = createWebClient();
+	}
+	
+	//TODO Resolve Deprecation
+	@SuppressWarnings("deprecation")
+	private static WebClient createWebClient() {
+		WebClient webClient = new WebClient(BrowserVersion.FIREFOX_45);
+		configureOptions(webClient);
+		return webClient;
+	}
+
+	private static void configureOptions(WebClient webClient) {
+		// Turn off all of the WebClient features we don't need (for speed)
+		WebClientOptions options = webClient.getOptions();
+		options.setThrowExceptionOnFailingStatusCode(false);
+		options.setThrowExceptionOnScriptError(false);
+		options.setJavaScriptEnabled(false);
+		options.setAppletEnabled(false);
+		options.setCssEnabled(false);
+		java.util.logging.Logger.getLogger("com.gargoylesoftware").setLevel(Level.OFF);
+	}
+
+	public CrawledPage fetch(String url, PageRecord previous) throws IOException {
+		WebRequest request = new WebRequest(new URL(url));
+		if (previous != null && previous.getETag() != null) request.setAdditionalHeader("If-None-Match", previous.getETag());
+		if (previous != null && previous.getLastModified() != null) request.setAdditionalHeader("If-Modified-Since", previous.getLastModified());
+		Page page = webClient.getPage(request);
+		WebResponse response = page.getWebResponse();
+		String etag = response.getResponseHeaderValue("ETag");
+		String lastModified = response.getResponseHeaderValue("Last-Modified");
+		if (previous != null && response.getStatusCode() == 304) return CrawledPage.notModified(url, previous, etag, lastModified);
+		
+		String content = response.getContentAsString();
+		long contentHash = (content == null) ? 0 : UrlFingerprint.of(content);
+		List<String> links;
+		if (previous != null && previous.getContentHash() == contentHash) links = previous.getOutlinks();
+		else if (page instanceof HtmlPage) links = extractLinks((HtmlPage) page);
+		else links = new ArrayList<String>();
+		if (!(page instanceof HtmlPage) || content == null) 
+			return new CrawledPage(url, response.getStatusCode(), isErrorPage(content), etag, lastModified, contentHash, links);
+		return new CrawledPage(url, response.getStatusCode(), isErrorPage(content), etag, lastModified, contentHash, links, textSimHash(url, content));
+	}
+	
+	// The same text SimHash the streaming fetcher takes, so the two modes agree on what is a duplicate. 
+	private static long textSimHash(String url, String content) throws IOException {
+		return new LinkExtractor(new URL(url)).extract(new StringReader(content)).getSimHash();
+	}
+	
+	private static boolean isErrorPage(String content) {
+		if (content == null) return false;
+		return (
+			content.equalsIgnoreCase("404 error")
+			|| content.equalsIgnoreCase("application error")
+		); 
+	}
+	
+	private static List<String> extractLinks(HtmlPage page) {
+		List<String> links = new ArrayList<String>();
+		for (HtmlAnchor anchor : page.getAnchors()) {
+			try {
+				links.add(page.getFullyQualifiedUrl(anchor.getHrefAttribute()).toString());
+			} catch (MalformedURLException e) {
+				// an href we cannot resolve is not a link we can follow 
+			}
+		}
+		return links;
+	}
+
+	public void close() {
+		webClient.close();
+	}
+}
@@ -0,0 +1,276 @@
+package com.sseltzer.selenium.framework.utility.crawler;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ *
+ * LinkExtractor.java
+ * 
+ * ##About:
+ * 
+ * Pulls the hrefs of `<a>` tags out of an HTML body as it is read, without building a DOM. The 
+ * body is scanned once through a fixed buffer; only tag names, the attributes of `<a>` and 
+ * `<base>`, and the resulting urls are ever materialized. Comments and the bodies of `<script>` 
+ * and `<style>` are skipped, matching what HtmlUnit (with JavaScript off) reports as anchors. 
+ * Hrefs are resolved against the page url, or the first `<base href>`, and the common character 
+ * references (`&amp;`, `&#38;`, `&#x26;` ...) are decoded first. 
+ * 
+ * While scanning it also fingerprints the body (see UrlFingerprint), takes a SimHash of the text 
+ * between tags for near-duplicate detection, and notes whether the whole body is one of the 
+ * application's plain-text error pages, so nothing else needs the text. 
+ * 
+ * An extractor is good for one body. 
+ *
+ */
+public class LinkExtractor {
+	
+	private static final int BUFFER_SIZE = 8192;
+	private static final int MAX_NAME = 16;
+	private static final String[] ERROR_PAGES = { "404 error", "application error" };
+	private static final int MAX_ERROR_PAGE = 17;
+	
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private final char[] head = new char[MAX_ERROR_PAGE];
+	private final StringBuilder name = new StringBuilder(MAX_NAME);
+	private final StringBuilder value = new StringBuilder();
+	private final List<String> links = new ArrayList<String>();
+	private final SimHash text = new SimHash();
+	private Reader reader;
+	private int position;
+	private int limit;
+	private int c;
+	private long hash = UrlFingerprint.begin();
+	private long length;
+	private URL base;
+	private boolean baseSet;
+	
+	public LinkExtractor(URL pageUrl) {
+		this.base = pageUrl;
+	}
+	
+	public LinkExtractor extract(Reader reader) throws IOException {
+		this.reader = reader;
+		advance();
+		while (c != -1) {
+			if (c == '<') {
+				advance();
+				tag();
+			} else {
+				text.accept((char) c);
+				advance();
+			}
+		}
+		return this;
+	}
+	
+	public List<String> getLinks() {
+		return links;
+	}
+	
+	public long getContentHash() {
+		return UrlFingerprint.finish(hash);
+	}
+	
+	public long getSimHash() {
+		return text.value();
+	}
+	
+	/**
+	 * True when the body, ignoring case, is exactly one of the application's error pages. 
+	 */
+	public boolean isErrorPage() {
+		if (length > MAX_ERROR_PAGE) return false;
+		String body = new String(head, 0, (int) length);
+		for (String errorPage : ERROR_PAGES) {
+			if (body.equalsIgnoreCase(errorPage)) return true;
+		}
+		return false;
+	}
+	
+	private void advance() throws IOException {
+		if (position == limit) {
+			limit = reader.read(buffer, 0, BUFFER_SIZE);
+			position = 0;
+			if (limit <= 0) {
+				limit = 0;
+				c = -1;
+				return;
+			}
+		}
+		char next = buffer[position++];
+		hash = UrlFingerprint.update(hash, next);
+		if (length < MAX_ERROR_PAGE) head[(int) length] = next;
+		length++;
+		c = next;
+	}
+	
+	private void tag() throws IOException {
+		if (c == '!') {
+			advance();
+			if (c == '-') {
+				advance();
+				if (c == '-') {
+					advance();
+					skipComment();
+					return;
+				}
+			}
+			skipPast('>');
+		} else if (c == '/' || c == '?') {
+			skipPast('>');
+		} else if (isLetter(c)) {
+			readName();
+			String tag = name.toString();
+			boolean anchor = tag.equals("a");
+			boolean baseTag = tag.equals("base") && !baseSet;
+			String href = attributes(anchor || baseTag);
+			if (anchor && href != null) addLink(href);
+			if (baseTag && href != null) setBase(href);
+			if (tag.equals("script") || tag.equals("style")) skipRawText(tag);
+		}
+		// anything else after '<' is just text 
+	}
+	
+	private void readName() throws IOException {
+		name.setLength(0);
+		while (c != -1 && !isSpace(c) && c != '>' && c != '/' && c != '=') {
+			if (name.length() < MAX_NAME) name.append(Character.toLowerCase((char) c));
+			advance();
+		}
+	}
+	
+	// Walks the attributes up to and including the closing '>', returning the href when asked to. 
+	private String attributes(boolean wantHref) throws IOException {
+		String href = null;
+		while (true) {
+			while (isSpace(c) || c == '/') advance();
+			if (c == -1) return null; // a tag cut off by the end of the body is dropped, as browsers do
+			if (c == '>') {
+				advance();
+				return href;
+			}
+			readName();
+			boolean isHref = wantHref && href == null && name.toString().equals("href");
+			while (isSpace(c)) advance();
+			if (c != '=') continue;
+			advance();
+			while (isSpace(c)) advance();
+			value.setLength(0);
+			if (c == '"' || c == '\'') {
+				int quote = c;
+				advance();
+				while (c != -1 && c != quote) {
+					if (isHref) value.append((char) c);
+					advance();
+				}
+				advance();
+			} else {
+				while (c != -1 && !isSpace(c) && c != '>') {
+					if (isHref) value.append((char) c);
+					advance();
+				}
+			}
+			if (isHref) href = decode(value);
+		}
+	}
+	
+	private void skipComment() throws IOException {
+		int dashes = 0;
+		while (c != -1) {
+			if (c == '>' && dashes >= 2) {
+				advance();
+				return;
+			}
+			dashes = (c == '-') ? dashes + 1 : 0;
+			advance();
+		}
+	}
+	
+	private void skipPast(char end) throws IOException {
+		while (c != -1 && c != end) advance();
+		advance();
+	}
+	
+	// Script and style bodies are text, not markup, up to their own closing tag. 
+	private void skipRawText(String tag) throws IOException {
+		while (c != -1) {
+			if (c != '<') {
+				advance();
+				continue;
+			}
+			advance();
+			if (c != '/') continue;
+			advance();
+			readName();
+			if (name.toString().equals(tag)) {
+				skipPast('>');
+				return;
+			}
+		}
+	}
+	
+	private void addLink(String href) {
+		try {
+			links.add(new URL(base, href.trim()).toString());
+		} catch (MalformedURLException e) {
+			// an href we cannot resolve is not a link we can follow 
+		}
+	}
+	
+	private void setBase(String href) {
+		baseSet = true;
+		try {
+			base = new URL(base, href.trim());
+		} catch (MalformedURLException e) {
+		}
+	}
+	
+	private static String decode(StringBuilder raw) {
+		if (raw.indexOf("&") < 0) return raw.toString();
+		StringBuilder decoded = new StringBuilder(raw.length());
+		for (int i = 0; i < raw.length(); i++) {
+			char ch = raw.charAt(i);
+			int semicolon = (ch == '&') ? raw.indexOf(";", i) : -1;
+			String replacement = (semicolon > i && semicolon - i <= 8) ? entity(raw.substring(i + 1, semicolon)) : null;
+			if (replacement == null) {
+				decoded.append(ch);
+			} else {
+				decoded.append(replacement);
+				i = semicolon;
+			}
+		}
+		return decoded.toString();
+	}
+	
+	private static String entity(String name) {
+		if (name.equals("amp")) return "&";
+		if (name.equals("quot")) return "\"";
+		if (name.equals("apos")) return "'";
+		if (name.equals("lt")) return "<";
+		if (name.equals("gt")) return ">";
+		if (name.startsWith("#")) {
+			try {
+				boolean hex = name.startsWith("#x") || name.startsWith("#X");
+				int codePoint = hex ? Integer.parseInt(name.substring(2), 16) : Integer.parseInt(name.substring(1));
+				return new String(Character.toChars(codePoint));
+			} catch (IllegalArgumentException e) {
+				return null;
+			}
+		}
+		return null;
+	}
+	
+	private static boolean isLetter(int c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+	
+	private static boolean isSpace(int c) {
+		return c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f';
+	}
+}
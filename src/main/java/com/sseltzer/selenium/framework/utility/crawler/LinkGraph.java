@@ -0,0 +1,438 @@
+package com.sseltzer.selenium.framework.utility.crawler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sseltzer.selenium.framework.error.exceptions.FrameworkException;
+
+/**
+ *
+ *
+ * LinkGraph.java 
+ * 
+ * ##About: 
+ * 
+ * Who links to whom in a finished crawl, over the url ids of its UrlInterner. The Crawler feeds 
+ * a Recorder as pages come in; `build` turns that into compressed sparse rows: for every page, 
+ * the distinct pages it links to, sorted, as varint deltas in one byte[], located by an offset 
+ * per page. Sorted neighbours are mostly close in id (they were queued together), so an edge 
+ * averages one or two bytes: millions of edges take a few MB, in memory and on disk alike. 
+ * 
+ * On top of it: 
+ * 
+ * * `getReferrers`: the pages linking to a url, i.e. where a broken link has to be fixed 
+ * * `getOrphans`: pages nothing else links to, besides the root 
+ * * `getDepthDistribution`: how many pages are how many clicks from the root 
+ * * `getMostLinked`: the pages with the most referrers 
+ * 
+ * The reverse (inbound) rows are built the first time they are needed. A graph is immutable; the 
+ * file written by `save` (version, root, urls, offsets, edges) is read back with `load`. Urls are 
+ * stored as length-prefixed UTF-8; version 1 files, with writeUTF urls, still load. 
+ * 
+ * ##Usage: 
+ * 
+ *     LinkGraph graph = crawler.getLinkGraph(); 
+ *     for (String referrer : graph.getReferrers(brokenUrl)) ... 
+ *     graph.save(new File("crawl.graph")); 
+ * 
+ */
+public class LinkGraph {
+	
+	private static final int FORMAT_VERSION = 2;
+	private static final int FORMAT_VERSION_UTF = 1;
+	
+	private final String[] urls;
+	private final int root;
+	private final int[] offsets;
+	private final byte[] edges;
+	private final int edgeCount;
+	private int[] inOffsets;
+	private int[] inSources;
+	private int[] depths;
+	
+	private LinkGraph(String[] urls, int root, int[] offsets, byte[] edges, int edgeCount) {
+		this.urls = urls;
+		this.root = root;
+		this.offsets = offsets;
+		this.edges = edges;
+		this.edgeCount = edgeCount;
+	}
+	
+	/**
+	 * The graph of everything recorded, over every url interned so far. Root is the id depths are 
+	 * measured from (the seed), or -1. 
+	 */
+	public static LinkGraph build(UrlInterner ids, int root, Recorder recorder) {
+		int nodes = (int) ids.size();
+		String[] urls = new String[nodes];
+		for (int id = 0; id < nodes; id++) urls[id] = ids.urlOf(id);
+		int[] log = recorder.snapshot();
+		
+		// count sort the recorded rows into plain CSR, then sort, dedupe and encode each row 
+		int[] counts = new int[nodes + 1];
+		for (int i = 0; i < log.length; i += 2 + log[i + 1]) counts[log[i] + 1] += log[i + 1];
+		for (int id = 0; id < nodes; id++) counts[id + 1] += counts[id];
+		int[] targets = new int[counts[nodes]];
+		int[] fill = Arrays.copyOf(counts, nodes);
+		for (int i = 0; i < log.length; i += 2 + log[i + 1]) {
+			int from = log[i];
+			for (int j = 0; j < log[i + 1]; j++) targets[fill[from]++] = log[i + 2 + j];
+		}
+		
+		int[] offsets = new int[nodes + 1];
+		ByteSink encoded = new ByteSink(targets.length * 2);
+		int edgeCount = 0;
+		for (int id = 0; id < nodes; id++) {
+			Arrays.sort(targets, counts[id], counts[id + 1]);
+			int previous = -1;
+			for (int i = counts[id]; i < counts[id + 1]; i++) {
+				int to = targets[i];
+				if (to == previous || to == id || to >= nodes) continue;
+				encoded.writeVarint(to - previous - 1);
+				previous = to;
+				edgeCount++;
+			}
+			offsets[id + 1] = encoded.size();
+		}
+		return new LinkGraph(urls, root, offsets, encoded.toArray(), edgeCount);
+	}
+	
+	public int nodeCount() {
+		return urls.length;
+	}
+	
+	public int edgeCount() {
+		return edgeCount;
+	}
+	
+	/**
+	 * Bytes the encoded edges take. 
+	 */
+	public int edgeBytes() {
+		return edges.length;
+	}
+	
+	public String getRoot() {
+		return (root < 0) ? null : urls[root];
+	}
+	
+	public String urlOf(int id) {
+		return urls[id];
+	}
+	
+	/**
+	 * The url's id, or -1 if it is not in the graph. A linear scan; use the crawl's UrlInterner 
+	 * when there is one. 
+	 */
+	public int idOf(String url) {
+		for (int id = 0; id < urls.length; id++) {
+			if (urls[id].equals(url)) return id;
+		}
+		return -1;
+	}
+	
+	public int[] getOutlinks(int id) {
+		int[] row = new int[rowLength(id)];
+		int target = -1;
+		int position = offsets[id];
+		for (int i = 0; i < row.length; i++) {
+			int value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = edges[position++];
+				value |= (b & 0x7f) << shift;
+				shift += 7;
+			} while (b < 0);
+			target += value + 1;
+			row[i] = target;
+		}
+		return row;
+	}
+	
+	public synchronized int[] getReferrers(int id) {
+		buildInbound();
+		return Arrays.copyOfRange(inSources, inOffsets[id], inOffsets[id + 1]);
+	}
+	
+	public List<String> getReferrers(String url) {
+		int id = idOf(url);
+		if (id < 0) return Collections.<String> emptyList();
+		return toUrls(getReferrers(id));
+	}
+	
+	public synchronized int getInDegree(int id) {
+		buildInbound();
+		return inOffsets[id + 1] - inOffsets[id];
+	}
+	
+	/**
+	 * Pages no other page links to, other than the root. 
+	 */
+	public synchronized List<String> getOrphans() {
+		buildInbound();
+		List<String> orphans = new ArrayList<String>();
+		for (int id = 0; id < urls.length; id++) {
+			if (id != root && inOffsets[id + 1] == inOffsets[id]) orphans.add(urls[id]);
+		}
+		return orphans;
+	}
+	
+	/**
+	 * Of the urls expected to be on the site (a sitemap, a previous crawl), those no crawled page 
+	 * links to. 
+	 */
+	public List<String> getOrphans(Collection<String> expected) {
+		Map<String, Integer> ids = new HashMap<String, Integer>(urls.length * 2);
+		for (int id = 0; id < urls.length; id++) ids.put(urls[id], id);
+		List<String> orphans = new ArrayList<String>();
+		for (String url : expected) {
+			Integer id = ids.get(url);
+			if (id == null || (id != root && getInDegree(id) == 0)) orphans.add(url);
+		}
+		return orphans;
+	}
+	
+	/**
+	 * Clicks from the root to the page over the recorded links, or -1 if it cannot be reached. 
+	 */
+	public synchronized int getDepth(int id) {
+		computeDepths();
+		return depths[id];
+	}
+	
+	/**
+	 * Element d is the number of pages d clicks from the root; pages the root does not reach are 
+	 * not counted. 
+	 */
+	public synchronized int[] getDepthDistribution() {
+		computeDepths();
+		int deepest = -1;
+		for (int depth : depths) deepest = Math.max(deepest, depth);
+		int[] distribution = new int[deepest + 1];
+		for (int depth : depths) {
+			if (depth >= 0) distribution[depth]++;
+		}
+		return distribution;
+	}
+	
+	/**
+	 * Up to limit urls, the most referred to first (ties by id, i.e. by discovery). 
+	 */
+	public synchronized List<String> getMostLinked(int limit) {
+		buildInbound();
+		Integer[] ids = new Integer[urls.length];
+		for (int id = 0; id < ids.length; id++) ids[id] = id;
+		Arrays.sort(ids, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				int byDegree = Integer.compare(getInDegree(b), getInDegree(a));
+				return (byDegree != 0) ? byDegree : Integer.compare(a, b);
+			}
+		});
+		List<String> mostLinked = new ArrayList<String>();
+		for (int i = 0; i < Math.min(limit, ids.length); i++) mostLinked.add(urls[ids[i]]);
+		return mostLinked;
+	}
+	
+	public void save(File file) {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.isDirectory() && !parent.mkdirs())
+			throw new FrameworkException("Could not create " + parent);
+		File temp = new File(file.getPath() + ".tmp");
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 65536));
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(urls.length);
+			out.writeInt(root);
+			out.writeInt(edgeCount);
+			for (String url : urls) writeString(out, url);
+			for (int offset : offsets) out.writeInt(offset);
+			out.write(edges);
+			out.close();
+			out = null;
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			temp.delete();
+			throw new FrameworkException("Could not write link graph " + file, e);
+		} finally {
+			close(out);
+		}
+	}
+	
+	public static LinkGraph load(File file) {
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536));
+			int version = in.readInt();
+			if (version != FORMAT_VERSION && version != FORMAT_VERSION_UTF) throw new FrameworkException("Unsupported link graph version " + version + " in " + file);
+			int nodes = in.readInt();
+			int root = in.readInt();
+			int edgeCount = in.readInt();
+			String[] urls = new String[nodes];
+			for (int id = 0; id < nodes; id++) urls[id] = readString(in, version == FORMAT_VERSION);
+			int[] offsets = new int[nodes + 1];
+			for (int id = 0; id <= nodes; id++) offsets[id] = in.readInt();
+			byte[] edges = new byte[offsets[nodes]];
+			in.readFully(edges);
+			return new LinkGraph(urls, root, offsets, edges, edgeCount);
+		} catch (IOException e) {
+			throw new FrameworkException("Could not read link graph " + file, e);
+		} finally {
+			close(in);
+		}
+	}
+	
+	// past 64KB of modified UTF-8 writeUTF throws, and one such url would lose the whole graph 
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+	
+	private static String readString(DataInputStream in, boolean prefixed) throws IOException {
+		if (!prefixed) return in.readUTF();
+		int length = in.readInt();
+		if (length < 0) throw new IOException("Corrupt link graph");
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	private int rowLength(int id) {
+		int length = 0;
+		for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+			if (edges[i] >= 0) length++;
+		}
+		return length;
+	}
+	
+	private List<String> toUrls(int[] ids) {
+		List<String> list = new ArrayList<String>(ids.length);
+		for (int id : ids) list.add(urls[id]);
+		return list;
+	}
+	
+	private void buildInbound() {
+		if (inOffsets != null) return;
+		int[] offsetsIn = new int[urls.length + 1];
+		for (int id = 0; id < urls.length; id++) {
+			for (int to : getOutlinks(id)) offsetsIn[to + 1]++;
+		}
+		for (int id = 0; id < urls.length; id++) offsetsIn[id + 1] += offsetsIn[id];
+		int[] sources = new int[edgeCount];
+		int[] fill = Arrays.copyOf(offsetsIn, urls.length);
+		// sources come out sorted, since rows are walked in id order 
+		for (int id = 0; id < urls.length; id++) {
+			for (int to : getOutlinks(id)) sources[fill[to]++] = id;
+		}
+		this.inSources = sources;
+		this.inOffsets = offsetsIn;
+	}
+	
+	private void computeDepths() {
+		if (depths != null) return;
+		int[] found = new int[urls.length];
+		Arrays.fill(found, -1);
+		if (root >= 0 && root < urls.length) {
+			int[] queue = new int[urls.length];
+			int head = 0;
+			int tail = 0;
+			found[root] = 0;
+			queue[tail++] = root;
+			while (head < tail) {
+				int id = queue[head++];
+				for (int to : getOutlinks(id)) {
+					if (found[to] >= 0) continue;
+					found[to] = found[id] + 1;
+					queue[tail++] = to;
+				}
+			}
+		}
+		this.depths = found;
+	}
+	
+	private static void close(Closeable closeable) {
+		try {
+			if (closeable != null) closeable.close();
+		} catch (IOException e) {
+		}
+	}
+	
+	// Collects edges while the crawl runs, one page's outlinks at a time: the page's id, the 
+	// number of links, then their ids, appended to a single int[] (4 bytes an edge). Thread safe. 
+	//
+	public static class Recorder {
+		private int[] log = new int[1024];
+		private int size;
+		
+		public synchronized void record(int from, int[] to, int count) {
+			if (count == 0) return;
+			ensure(size + 2 + count);
+			log[size++] = from;
+			log[size++] = count;
+			System.arraycopy(to, 0, log, size, count);
+			size += count;
+		}
+		
+		public synchronized int edgeCount() {
+			int edges = 0;
+			for (int i = 0; i < size; i += 2 + log[i + 1]) edges += log[i + 1];
+			return edges;
+		}
+		
+		private synchronized int[] snapshot() {
+			return Arrays.copyOf(log, size);
+		}
+		
+		private void ensure(int capacity) {
+			if (capacity > log.length) log = Arrays.copyOf(log, Math.max(capacity, log.length * 2));
+		}
+	}
+	
+	// A growable byte[] for the encoded rows. 
+	//
+	private static class ByteSink {
+		private byte[] bytes;
+		private int size;
+		
+		private ByteSink(int capacity) {
+			this.bytes = new byte[Math.max(16, capacity)];
+		}
+		
+		private void writeVarint(int value) {
+			if (size + 5 > bytes.length) bytes = Arrays.copyOf(bytes, bytes.length * 2);
+			while ((value & ~0x7f) != 0) {
+				bytes[size++] = (byte) ((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			bytes[size++] = (byte) value;
+		}
+		
+		private int size() {
+			return size;
+		}
+		
+		private byte[] toArray() {
+			return Arrays.copyOf(bytes, size);
+		}
+	}
+}
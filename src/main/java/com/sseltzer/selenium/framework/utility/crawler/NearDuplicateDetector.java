@@ -0,0 +1,176 @@
+package com.sseltzer.selenium.framework.utility.crawler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import com.sseltzer.selenium.framework.utility.crawler.filter.UrlParts;
+
+/**
+ *
+ *
+ * NearDuplicateDetector.java
+ * 
+ * ##About:
+ * 
+ * Spots pages whose text (SimHash) is within `maxDistance` bits of a page already crawled, and 
+ * learns which url patterns keep producing them, so the Crawler can stop following those links 
+ * instead of relying on a hand-kept blacklist of `sort=`, `radius=` and friends. 
+ * 
+ * A url's pattern is its host and path with digit runs folded to `#`, plus the sorted names (not 
+ * values) of its query parameters: `/coupons/search?sort=distance&page=3` and 
+ * `/coupons/search?page=4&sort=name` share `host/coupons/search?page&sort`. Once a pattern has 
+ * produced `minSamples` pages and at least `pruneRatio` of them were near duplicates, it is 
+ * pruned: `isPruned` is true for any url of that pattern from then on. 
+ * 
+ * Lookups are sublinear: the 64 bits are split into four 16-bit bands, and two fingerprints 
+ * within 3 bits of each other must agree exactly on at least one band (pigeonhole), so only the 
+ * pages sharing a band are compared. Distances above 3 fall back to a full scan. 
+ * 
+ * Thread safe. 
+ *
+ */
+public class NearDuplicateDetector {
+	
+	private static final int BANDS = 4;
+	private static final int BAND_BITS = 16;
+	private static final int BAND_MASK = 0xffff;
+	
+	private final int maxDistance;
+	private final int minSamples;
+	private final double pruneRatio;
+	
+	private final List<Map<Integer, List<Long>>> bands = new ArrayList<Map<Integer, List<Long>>>();
+	private final List<Long> all = new ArrayList<Long>();
+	private final Map<String, int[]> patterns = new HashMap<String, int[]>();
+	private int duplicates;
+	private int pruned;
+	
+	public NearDuplicateDetector() {
+		this(3, 5, 0.8);
+	}
+	
+	public NearDuplicateDetector(int maxDistance, int minSamples, double pruneRatio) {
+		if (maxDistance < 0 || maxDistance > 64) throw new IllegalArgumentException("maxDistance must be between 0 and 64");
+		if (minSamples < 1) throw new IllegalArgumentException("minSamples must be at least 1");
+		if (pruneRatio <= 0 || pruneRatio > 1) throw new IllegalArgumentException("pruneRatio must be above 0 and at most 1");
+		this.maxDistance = maxDistance;
+		this.minSamples = minSamples;
+		this.pruneRatio = pruneRatio;
+		for (int i = 0; i < BANDS; i++) bands.add(new HashMap<Integer, List<Long>>());
+	}
+	
+	/**
+	 * Records the page and returns whether it is a near duplicate of one recorded before. 
+	 */
+	public synchronized boolean check(String url, long simHash) {
+		boolean duplicate = hasNeighbor(simHash);
+		if (duplicate) duplicates++;
+		else index(simHash);
+		
+		String pattern = patternOf(url);
+		int[] counts = patterns.get(pattern);
+		if (counts == null) {
+			counts = new int[3];
+			patterns.put(pattern, counts);
+		}
+		// pages, duplicates, pruned flag 
+		counts[0]++;
+		if (duplicate) counts[1]++;
+		if (counts[2] == 0 && counts[0] >= minSamples && counts[1] >= pruneRatio * counts[0]) {
+			counts[2] = 1;
+			pruned++;
+		}
+		return duplicate;
+	}
+	
+	public synchronized boolean isPruned(String url) {
+		int[] counts = patterns.get(patternOf(url));
+		return counts != null && counts[2] == 1;
+	}
+	
+	public synchronized int getDuplicateCount() {
+		return duplicates;
+	}
+	
+	public synchronized int getPrunedPatternCount() {
+		return pruned;
+	}
+	
+	public synchronized List<String> getPrunedPatterns() {
+		List<String> prunedPatterns = new ArrayList<String>();
+		for (Map.Entry<String, int[]> pattern : patterns.entrySet()) {
+			if (pattern.getValue()[2] == 1) prunedPatterns.add(pattern.getKey());
+		}
+		return prunedPatterns;
+	}
+	
+	public static String patternOf(String url) {
+		UrlParts parts = UrlParts.of(url);
+		StringBuilder pattern = new StringBuilder(parts.getHost());
+		String path = parts.getPath();
+		for (int i = 0; i < path.length(); i++) {
+			char c = path.charAt(i);
+			if (c >= '0' && c <= '9') {
+				pattern.append('#');
+				while (i + 1 < path.length() && path.charAt(i + 1) >= '0' && path.charAt(i + 1) <= '9') i++;
+			} else {
+				pattern.append(c);
+			}
+		}
+		String query = parts.getQuery();
+		if (query.isEmpty()) return pattern.toString();
+		TreeSet<String> names = new TreeSet<String>();
+		for (String parameter : query.split("&")) {
+			int equals = parameter.indexOf('=');
+			names.add((equals < 0) ? parameter : parameter.substring(0, equals));
+		}
+		pattern.append('?');
+		boolean first = true;
+		for (String name : names) {
+			if (!first) pattern.append('&');
+			pattern.append(name);
+			first = false;
+		}
+		return pattern.toString();
+	}
+	
+	private boolean hasNeighbor(long simHash) {
+		if (maxDistance >= BANDS) {
+			for (long other : all) {
+				if (SimHash.distance(simHash, other) <= maxDistance) return true;
+			}
+			return false;
+		}
+		for (int band = 0; band < BANDS; band++) {
+			List<Long> candidates = bands.get(band).get(bandOf(simHash, band));
+			if (candidates == null) continue;
+			for (long other : candidates) {
+				if (SimHash.distance(simHash, other) <= maxDistance) return true;
+			}
+		}
+		return false;
+	}
+	
+	private void index(long simHash) {
+		if (maxDistance >= BANDS) {
+			all.add(simHash);
+			return;
+		}
+		for (int band = 0; band < BANDS; band++) {
+			Integer key = bandOf(simHash, band);
+			List<Long> members = bands.get(band).get(key);
+			if (members == null) {
+				members = new ArrayList<Long>();
+				bands.get(band).put(key, members);
+			}
+			members.add(simHash);
+		}
+	}
+	
+	private static int bandOf(long simHash, int band) {
+		return (int) (simHash >>> (band * BAND_BITS)) & BAND_MASK;
+	}
+}
@@ -0,0 +1,21 @@
+package com.sseltzer.selenium.framework.utility.crawler;
+
+import java.io.IOException;
+
+/**
+ *
+ *
+ * PageFetcher.java
+ * 
+ * Fetches a page for the Crawler and pulls its links out. Each crawl worker owns one, so 
+ * implementations need not be thread safe. When `previous` is given, implementations should 
+ * make the request conditional on its validators and may reuse its outlinks if the body turns 
+ * out to be unchanged. 
+ *
+ */
+public interface PageFetcher {
+	
+	public CrawledPage fetch(String url, PageRecord previous) throws IOException;
+	
+	public void close();
+}
@@ -0,0 +1,44 @@
+package com.sseltzer.selenium.framework.utility.crawler;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ *
+ *
+ * PageRecord.java
+ * 
+ * What an earlier crawl learned about a healthy page: its validators for a conditional GET, a 
+ * fingerprint of its body, and the links found on it. Kept in a RecrawlIndex. 
+ *
+ */
+public class PageRecord {
+	
+	private final String etag;
+	private final String lastModified;
+	private final long contentHash;
+	private final List<String> outlinks;
+	
+	public PageRecord(String etag, String lastModified, long contentHash, List<String> outlinks) {
+		this.etag = etag;
+		this.lastModified = lastModified;
+		this.contentHash = contentHash;
+		this.outlinks = Collections.unmodifiableList(outlinks);
+	}
+	
+	public String getETag() {
+		return etag;
+	}
+	
+	public String getLastModified() {
+		return lastModified;
+	}
+	
+	public long getContentHash() {
+		return contentHash;
+	}
+	
+	public List<String> getOutlinks() {
+		return outlinks;
+	}
+}
@@ -0,0 +1,213 @@
+package com.sseltzer.selenium.framework.utility.crawler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.sseltzer.selenium.framework.error.exceptions.FrameworkException;
+
+/**
+ *
+ *
+ * RecrawlIndex.java
+ * 
+ * ##About:
+ * 
+ * Per-url PageRecords carried from one crawl to the next, so a recrawl of a mostly static site 
+ * only pays for what changed. During a crawl the previous run's records drive conditional GETs 
+ * (a 304 reuses the stored outlinks without a body) and unchanged bodies skip link extraction. 
+ * The current run's records are collected as pages come in and replace the file on `save`. Only 
+ * healthy pages are recorded, so a page that was broken last time is always fetched in full. 
+ * Broken pages are only remembered by url (`wasBroken`), so the next crawl can check them first. 
+ * A resumed crawl `carryOver`s the previous records of pages it finished before the restart, so 
+ * `save` does not drop them. 
+ * 
+ * The file is a small binary format (version, then url, etag, last modified, hash and outlinks 
+ * per page, then the broken urls) written to a temp file and renamed into place. Strings are 
+ * length-prefixed UTF-8, so a url of any length fits. Version 1 and 2 files, whose strings are 
+ * writeUTF (and version 1 has no broken urls), are still read. 
+ *
+ */
+public class RecrawlIndex {
+	
+	private static final int FORMAT_VERSION = 3;
+	private static final int FORMAT_VERSION_UTF = 2;
+	private static final int FORMAT_VERSION_WITHOUT_BROKEN = 1;
+	
+	private final File file;
+	private final Map<String, PageRecord> previous;
+	private final Map<String, PageRecord> current = new ConcurrentHashMap<String, PageRecord>();
+	private final Set<String> previousBroken = new HashSet<String>();
+	private final Set<String> currentBroken = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	
+	public RecrawlIndex(String path) {
+		this(new File(path));
+	}
+	
+	public RecrawlIndex(File file) {
+		this.file = file;
+		this.previous = file.isFile() ? load(file, previousBroken) : new HashMap<String, PageRecord>();
+	}
+	
+	/**
+	 * The record left by the previous crawl, or null. 
+	 */
+	public PageRecord getPrevious(String url) {
+		return previous.get(url);
+	}
+	
+	public void record(String url, PageRecord record) {
+		current.put(url, record);
+		currentBroken.remove(url);
+	}
+	
+	/**
+	 * Whether the previous crawl found the url broken. 
+	 */
+	public boolean wasBroken(String url) {
+		return previousBroken.contains(url);
+	}
+	
+	/**
+	 * Keeps the previous crawl's record for a page this crawl finished without recording it (a 
+	 * resumed crawl, for the pages done before the restart). 
+	 */
+	public void carryOver(String url) {
+		PageRecord record = previous.get(url);
+		if (record != null && !current.containsKey(url)) current.put(url, record);
+	}
+	
+	public void recordBroken(String url) {
+		current.remove(url);
+		currentBroken.add(url);
+	}
+	
+	public File getFile() {
+		return file;
+	}
+	
+	public int previousSize() {
+		return previous.size();
+	}
+	
+	public int currentSize() {
+		return current.size();
+	}
+	
+	public void save() {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.isDirectory() && !parent.mkdirs()) 
+			throw new FrameworkException("Could not create " + parent);
+		File temp = new File(file.getPath() + ".tmp");
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(current.size());
+			for (Map.Entry<String, PageRecord> entry : current.entrySet()) write(out, entry.getKey(), entry.getValue());
+			List<String> broken = new ArrayList<String>(currentBroken);
+			out.writeInt(broken.size());
+			for (String url : broken) writeString(out, url);
+			out.close();
+			out = null;
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			temp.delete();
+			throw new FrameworkException("Could not write recrawl index " + file, e);
+		} finally {
+			close(out);
+		}
+	}
+	
+	private static Map<String, PageRecord> load(File file, Set<String> broken) {
+		Map<String, PageRecord> records = new HashMap<String, PageRecord>();
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			int version = in.readInt();
+			if (version != FORMAT_VERSION && version != FORMAT_VERSION_UTF && version != FORMAT_VERSION_WITHOUT_BROKEN) return records;
+			boolean prefixed = version == FORMAT_VERSION;
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String url = readString(in, prefixed);
+				String etag = emptyToNull(readString(in, prefixed));
+				String lastModified = emptyToNull(readString(in, prefixed));
+				long contentHash = in.readLong();
+				int linkCount = in.readInt();
+				List<String> outlinks = new ArrayList<String>(linkCount);
+				for (int j = 0; j < linkCount; j++) outlinks.add(readString(in, prefixed));
+				records.put(url, new PageRecord(etag, lastModified, contentHash, outlinks));
+			}
+			if (version != FORMAT_VERSION_WITHOUT_BROKEN) {
+				int brokenCount = in.readInt();
+				for (int i = 0; i < brokenCount; i++) broken.add(readString(in, prefixed));
+			}
+		} catch (EOFException e) {
+			// a truncated index still has its leading records; a full refetch covers the rest 
+		} catch (IOException e) {
+			throw new FrameworkException("Could not read recrawl index " + file, e);
+		} finally {
+			close(in);
+		}
+		return records;
+	}
+	
+	private static void write(DataOutputStream out, String url, PageRecord record) throws IOException {
+		writeString(out, url);
+		writeString(out, nullToEmpty(record.getETag()));
+		writeString(out, nullToEmpty(record.getLastModified()));
+		out.writeLong(record.getContentHash());
+		out.writeInt(record.getOutlinks().size());
+		for (String link : record.getOutlinks()) writeString(out, link);
+	}
+	
+	// writeUTF caps a string at 64KB of modified UTF-8 and throws past it (a long data: or 
+	// tracking url would fail the whole save) 
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+	
+	private static String readString(DataInputStream in, boolean prefixed) throws IOException {
+		if (!prefixed) return in.readUTF();
+		int length = in.readInt();
+		if (length < 0) throw new IOException("Corrupt recrawl index");
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	private static String nullToEmpty(String value) {
+		return (value == null) ? "" : value;
+	}
+	
+	private static String emptyToNull(String value) {
+		return value.isEmpty() ? null : value;
+	}
+	
+	private static void close(Closeable closeable) {
+		try {
+			if (closeable != null) closeable.close();
+		} catch (IOException e) {
+		}
+	}
+}
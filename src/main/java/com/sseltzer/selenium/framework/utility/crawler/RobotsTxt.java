@@ -0,0 +1,146 @@
+package com.sseltzer.selenium.framework.utility.crawler;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ *
+ *
+ * RobotsTxt.java
+ * 
+ * ##About:
+ * 
+ * The Crawl-delay each host asks for in its robots.txt. Every host's robots.txt is fetched once, 
+ * by whichever worker needs it first (the others wait for that fetch rather than repeating it), 
+ * and remembered for the life of the instance. A missing or unreadable robots.txt means no 
+ * delay. 
+ * 
+ * The delay is taken from the group naming `agentToken` if there is one (even if that group has 
+ * no Crawl-delay), otherwise from the `*` group. Only Crawl-delay is read; Allow and Disallow are left to the crawl's UrlFilter rules. 
+ *
+ */
+public class RobotsTxt {
+	
+	private static final Duration TIMEOUT = Duration.ofSeconds(10);
+	
+	private final String agentToken;
+	private final HttpClient client;
+	private final ConcurrentMap<String, FutureTask<Long>> delays = new ConcurrentHashMap<String, FutureTask<Long>>();
+	
+	public RobotsTxt(String agentToken) {
+		this.agentToken = (agentToken == null) ? null : agentToken.toLowerCase();
+		this.client = HttpClient.newBuilder()
+				.followRedirects(HttpClient.Redirect.NORMAL)
+				.connectTimeout(TIMEOUT)
+				.build();
+	}
+	
+	/**
+	 * The Crawl-delay, in milliseconds, for the host of this url; 0 when there is none. 
+	 */
+	public long crawlDelayMillis(String url) throws InterruptedException {
+		final String robotsUrl = robotsUrlOf(url);
+		if (robotsUrl == null) return 0;
+		FutureTask<Long> delay = delays.get(robotsUrl);
+		if (delay == null) {
+			FutureTask<Long> created = new FutureTask<Long>(new Callable<Long>() {
+				public Long call() {
+					return fetchCrawlDelay(robotsUrl);
+				}
+			});
+			delay = delays.putIfAbsent(robotsUrl, created);
+			if (delay == null) {
+				delay = created;
+				created.run();
+			}
+		}
+		try {
+			return delay.get();
+		} catch (ExecutionException e) {
+			return 0;
+		}
+	}
+	
+	private long fetchCrawlDelay(String robotsUrl) {
+		try {
+			HttpRequest request = HttpRequest.newBuilder(new URI(robotsUrl)).timeout(TIMEOUT).GET().build();
+			HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+			if (response.statusCode() != 200) return 0;
+			return parseCrawlDelay(response.body(), agentToken);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return 0;
+		} catch (Exception e) {
+			return 0;
+		}
+	}
+	
+	/**
+	 * Crawl-delay in milliseconds from a robots.txt body, for the group naming agentToken or else 
+	 * the `*` group; 0 when neither has one. 
+	 */
+	public static long parseCrawlDelay(String robots, String agentToken) {
+		String token = (agentToken == null) ? null : agentToken.toLowerCase();
+		long wildcard = 0;
+		long specific = -1;
+		boolean inWildcard = false;
+		boolean inSpecific = false;
+		boolean specificGroup = false;
+		boolean readingAgents = false;
+		for (String rawLine : robots.split("\r\n|\r|\n")) {
+			int comment = rawLine.indexOf('#');
+			String line = ((comment < 0) ? rawLine : rawLine.substring(0, comment)).trim();
+			int colon = line.indexOf(':');
+			if (colon < 0) continue;
+			String field = line.substring(0, colon).trim().toLowerCase();
+			String value = line.substring(colon + 1).trim();
+			if (field.equals("user-agent")) {
+				// consecutive User-agent lines share one group 
+				if (!readingAgents) inWildcard = inSpecific = false;
+				readingAgents = true;
+				String agent = value.toLowerCase();
+				if (agent.equals("*")) inWildcard = true;
+				else if (token != null && token.contains(agent)) inSpecific = specificGroup = true;
+				continue;
+			}
+			readingAgents = false;
+			if (!field.equals("crawl-delay")) continue;
+			long millis = toMillis(value);
+			if (millis < 0) continue;
+			if (inSpecific) specific = millis;
+			if (inWildcard) wildcard = millis;
+		}
+		// a group naming us replaces the * group entirely 
+		if (specificGroup) return Math.max(0, specific);
+		return wildcard;
+	}
+	
+	private static long toMillis(String seconds) {
+		try {
+			double value = Double.parseDouble(seconds);
+			return (value < 0) ? -1 : (long) (value * 1000);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+	
+	private static String robotsUrlOf(String url) {
+		try {
+			URL parsed = new URL(url);
+			if (!parsed.getProtocol().startsWith("http")) return null;
+			return new URL(parsed.getProtocol(), parsed.getHost(), parsed.getPort(), "/robots.txt").toString();
+		} catch (IOException e) {
+			return null;
+		}
+	}
+}
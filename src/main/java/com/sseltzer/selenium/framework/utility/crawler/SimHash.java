@@ -0,0 +1,90 @@
+package com.sseltzer.selenium.framework.utility.crawler;
+
+/**
+ *
+ *
+ * SimHash.java
+ * 
+ * ##About:
+ * 
+ * A 64-bit SimHash of a page's text: pages that read almost the same get fingerprints that differ 
+ * in only a few bits, so near duplicates (the same listing sorted differently, the same page with 
+ * a tracking parameter) are found by Hamming distance rather than exact equality. 
+ * 
+ * Text is fed a char at a time, so it can ride along with LinkExtractor's single pass. Words are 
+ * runs of letters and digits, lower cased; every run of three consecutive words (a shingle) is 
+ * hashed and votes on each of the 64 bits. A text of fewer than three words is shingled word by 
+ * word instead. 
+ *
+ */
+public class SimHash {
+	
+	private static final int BITS = 64;
+	private static final int SHINGLE = 3;
+	
+	private final int[] votes = new int[BITS];
+	private long word = UrlFingerprint.begin();
+	private boolean inWord;
+	private long previous;
+	private long beforePrevious;
+	private int words;
+	private boolean finished;
+	
+	public static long of(CharSequence text) {
+		SimHash hash = new SimHash();
+		for (int i = 0; i < text.length(); i++) hash.accept(text.charAt(i));
+		return hash.value();
+	}
+	
+	public static int distance(long a, long b) {
+		return Long.bitCount(a ^ b);
+	}
+	
+	public void accept(char c) {
+		if (Character.isLetterOrDigit(c)) {
+			word = UrlFingerprint.update(word, Character.toLowerCase(c));
+			inWord = true;
+		} else if (inWord) {
+			endWord();
+		}
+	}
+	
+	/**
+	 * The fingerprint of everything accepted so far. No more text may be accepted after this. 
+	 */
+	public long value() {
+		if (!finished) {
+			if (inWord) endWord();
+			if (words < SHINGLE) {
+				if (words > 1) vote(beforePrevious);
+				if (words > 0) vote(previous);
+			}
+			finished = true;
+		}
+		long value = 0;
+		for (int bit = 0; bit < BITS; bit++) {
+			if (votes[bit] > 0) value |= 1L << bit;
+		}
+		return value;
+	}
+	
+	public int wordCount() {
+		return words;
+	}
+	
+	private void endWord() {
+		long current = UrlFingerprint.finish(word);
+		words++;
+		if (words >= SHINGLE) vote(UrlFingerprint.finish(beforePrevious * 31 * 31 + previous * 31 + current));
+		beforePrevious = previous;
+		previous = current;
+		word = UrlFingerprint.begin();
+		inWord = false;
+	}
+	
+	private void vote(long feature) {
+		for (int bit = 0; bit < BITS; bit++) {
+			votes[bit] += (((feature >>> bit) & 1) == 1) ? 1 : -1;
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package com.sseltzer.selenium.framework.utility.crawler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ *
+ *
+ * StreamingFetcher.java
+ * 
+ * ##About:
+ * 
+ * PageFetcher that reads each HTML body once, straight off the socket, through a LinkExtractor: 
+ * no DOM, no full copy of the body, no lower-cased copy for the error page check. Bodies that 
+ * are not HTML are never read at all; only their status counts. (The Crawler does not even send 
+ * a GET for urls that look like documents or images; see HeadFetcher.) 
+ * 
+ * Redirects are followed and links resolved against where they end up, as HtmlUnit does. A body 
+ * in a charset this JVM cannot decode is handed to an HtmlUnitFetcher instead, created on first 
+ * use. 
+ *
+ */
+public class StreamingFetcher implements PageFetcher {
+	
+	private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 6.1; rv:45.0) Gecko/20100101 Firefox/45.0";
+	private static final Duration TIMEOUT = Duration.ofSeconds(60);
+	private static final int STATUS_NOT_MODIFIED = 304;
+	
+	private final HttpClient client;
+	private HtmlUnitFetcher fallback;
+	
+	public StreamingFetcher() {
+		this.client = HttpClient.newBuilder()
+				.followRedirects(HttpClient.Redirect.NORMAL)
+				.connectTimeout(TIMEOUT)
+				.build();
+	}
+
+	public CrawledPage fetch(String url, PageRecord previous) throws IOException {
+		HttpRequest.Builder request;
+		try {
+			request = HttpRequest.newBuilder(new URI(url)).timeout(TIMEOUT).GET()
+					.header("User-Agent", USER_AGENT)
+					.header("Accept-Encoding", "gzip");
+		} catch (URISyntaxException e) {
+			throw new IOException("Bad url " + url, e);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Bad url " + url, e);
+		}
+		if (previous != null && previous.getETag() != null) request.header("If-None-Match", previous.getETag());
+		if (previous != null && previous.getLastModified() != null) request.header("If-Modified-Since", previous.getLastModified());
+		HttpResponse<InputStream> response = send(request.build());
+		
+		InputStream body = response.body();
+		try {
+			String etag = response.headers().firstValue("ETag").orElse(null);
+			String lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+			if (previous != null && response.statusCode() == STATUS_NOT_MODIFIED) 
+				return CrawledPage.notModified(url, previous, etag, lastModified);
+			
+			String contentType = response.headers().firstValue("Content-Type").orElse("");
+			if (!isHtml(contentType)) 
+				return new CrawledPage(url, response.statusCode(), false, etag, lastModified, 0, new ArrayList<String>());
+			Charset charset = charsetOf(contentType);
+			if (charset == null) {
+				body.close();
+				return fallback().fetch(url, previous);
+			}
+			
+			if ("gzip".equalsIgnoreCase(response.headers().firstValue("Content-Encoding").orElse(""))) 
+				body = new GZIPInputStream(body);
+			LinkExtractor extractor = new LinkExtractor(response.uri().toURL())
+					.extract(new InputStreamReader(body, charset));
+			long contentHash = extractor.getContentHash();
+			List<String> links = (previous != null && previous.getContentHash() == contentHash) ? previous.getOutlinks() : extractor.getLinks();
+			return new CrawledPage(url, response.statusCode(), extractor.isErrorPage(), etag, lastModified, contentHash, links, extractor.getSimHash());
+		} finally {
+			body.close();
+		}
+	}
+	
+	private HttpResponse<InputStream> send(HttpRequest request) throws IOException {
+		try {
+			return client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted fetching " + request.uri());
+		}
+	}
+	
+	private static boolean isHtml(String contentType) {
+		String mimeType = contentType.split(";", 2)[0].trim();
+		// a missing content type is sniffed as HTML by browsers; do the same 
+		return mimeType.isEmpty() 
+				|| mimeType.equalsIgnoreCase("text/html") 
+				|| mimeType.equalsIgnoreCase("application/xhtml+xml");
+	}
+	
+	// The declared charset, UTF-8 when none is declared, or null when it cannot be decoded here. 
+	private static Charset charsetOf(String contentType) {
+		for (String parameter : contentType.split(";")) {
+			String[] pair = parameter.trim().split("=", 2);
+			if (pair.length < 2 || !pair[0].trim().equalsIgnoreCase("charset")) continue;
+			try {
+				return Charset.forName(pair[1].trim().replace("\"", ""));
+			} catch (IllegalCharsetNameException e) {
+				return null;
+			} catch (UnsupportedCharsetException e) {
+				return null;
+			}
+		}
+		return StandardCharsets.UTF_8;
+	}
+	
+	private HtmlUnitFetcher fallback() {
+		if (fallback == null) fallback = new HtmlUnitFetcher();
+		return fallback;
+	}
+
+	public void close() {
+		if (fallback != null) fallback.close();
+	}
+}
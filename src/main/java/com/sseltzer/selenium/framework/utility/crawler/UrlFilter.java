@@ -0,0 +1,86 @@
+package com.sseltzer.selenium.framework.utility.crawler;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.sseltzer.selenium.framework.error.exceptions.FrameworkException;
+import com.sseltzer.selenium.framework.utility.crawler.filter.UrlFilterEngine;
+import com.sseltzer.selenium.framework.utility.crawler.filter.UrlParts;
+
+/**
+ *
+ *
+ * UrlFilter.java
+ * 
+ * Decides which discovered urls are relevant to a crawl: they must be on the seed's host (or a 
+ * subdomain of it), must not hit the blacklist (defaults plus anything the caller supplies), must 
+ * not be trivially short, and must pass the caller's own UrlFilterEngine rules if there are any. 
+ * Whether a url has already been seen is the Crawler's business, not the filter's. 
+ * 
+ * `acceptsExternal` picks out the off-site links worth verifying (but not crawling): http(s) urls 
+ * off the seed's host that do not hit the blacklist. 
+ * 
+ * The seed scope and blacklist are compiled into a UrlFilterEngine too, so the blacklist is one 
+ * Aho-Corasick pass over the url however long it grows. 
+ *
+ */
+public class UrlFilter {
+	
+	private static final List<String> blackListDefaults = Arrays.asList(
+		"sort=", 
+		"radius=",	
+		"#respond",
+		"advertise",
+		"blog",
+		"plus.google",
+		"facebook",
+		"twitter"
+	);
+	
+	private final UrlFilterEngine site;
+	private final UrlFilterEngine blackList;
+	private final UrlFilterEngine rules;
+	
+	public UrlFilter(String seed, List<String> blackList) {
+		this(seed, blackList, null);
+	}
+	
+	public UrlFilter(String seed, List<String> blackList, UrlFilterEngine rules) {
+		this.site = new UrlFilterEngine.Builder().includeHost(primaryDomainToCrawl(seed)).build();
+		this.blackList = new UrlFilterEngine.Builder().excludeSubstrings(buildMasterBlacklist(blackList)).build();
+		this.rules = rules;
+	}
+	
+	public boolean accepts(String url) {
+		if (url.length() <= 6) return false;
+		UrlParts parts = UrlParts.of(url);
+		return site.accepts(parts) && blackList.accepts(parts) && (rules == null || rules.accepts(parts));
+	}
+	
+	public boolean acceptsExternal(String url) {
+		if (!url.startsWith("http://") && !url.startsWith("https://")) return false;
+		UrlParts parts = UrlParts.of(url);
+		return !parts.getHost().isEmpty() && !site.accepts(parts) && blackList.accepts(parts);
+	}
+	
+	private static List<String> buildMasterBlacklist(List<String> blackList) {
+		// combines the default blacklist with the user supplied blacklist 
+		Set<String> fullBlackList = new HashSet<String>(blackList);
+		fullBlackList.addAll(blackListDefaults);
+		return new ArrayList<String>(fullBlackList);
+	}
+	
+	private static String primaryDomainToCrawl(String url) {
+		// used to contrain the crawler to the seed url's host domain
+		try {
+			return new URL(url).getHost();
+		} catch (MalformedURLException e) {
+			throw new FrameworkException(e);
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package com.sseltzer.selenium.framework.utility.crawler;
+
+/**
+ *
+ *
+ * UrlFingerprint.java
+ * 
+ * 64-bit url fingerprints: FNV-1a over the url's chars, finished with the MurmurHash3 mixer so 
+ * that every output bit depends on every input bit. At a million urls the chance of any two 
+ * colliding is around one in thirty million. 
+ *
+ */
+public final class UrlFingerprint {
+	
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	
+	private UrlFingerprint() {
+	}
+	
+	public static long of(String url) {
+		long hash = FNV_OFFSET;
+		for (int i = 0; i < url.length(); i++) {
+			hash ^= url.charAt(i);
+			hash *= FNV_PRIME;
+		}
+		return mix(hash);
+	}
+	
+	/**
+	 * The same fingerprint built a char at a time, for text that is streamed rather than held: 
+	 * `finish(update(...update(begin(), c0)..., cN))` equals `of` over those chars. 
+	 */
+	public static long begin() {
+		return FNV_OFFSET;
+	}
+	
+	public static long update(long hash, char c) {
+		return (hash ^ c) * FNV_PRIME;
+	}
+	
+	public static long finish(long hash) {
+		return mix(hash);
+	}
+	
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
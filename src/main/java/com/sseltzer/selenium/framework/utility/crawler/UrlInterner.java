@@ -0,0 +1,118 @@
+package com.sseltzer.selenium.framework.utility.crawler;
+
+import java.util.Arrays;
+
+/**
+ *
+ *
+ * UrlInterner.java
+ * 
+ * ##About:
+ * 
+ * Gives every distinct (canonical) url of a crawl a compact int id, 0, 1, 2 ... in the order 
+ * they were first seen, and keeps exactly one String per url. The frontier, the seen set and the 
+ * results all hold that one instance (or its id) instead of each parsing and keeping their own 
+ * copy, and later passes (the link graph) can index arrays by id. 
+ * 
+ * It is also an exact UrlSeenSet: `add` interns and reports whether the url was new. The table 
+ * is an int[] of ids with open addressing and linear probing, doubled when half full, beside a 
+ * String[] indexed by id: about 12 bytes per url on top of the url itself. 
+ * 
+ * Thread safe. 
+ * 
+ * ##Usage: 
+ * 
+ *     UrlInterner urls = new UrlInterner();
+ *     int id = urls.intern(canonical);
+ *     String shared = urls.urlOf(id);
+ *
+ */
+public class UrlInterner implements UrlSeenSet {
+	
+	private int[] slots; // id + 1, 0 is empty 
+	private int mask;
+	private String[] urls;
+	private int size;
+	
+	public UrlInterner() {
+		this(1024);
+	}
+	
+	public UrlInterner(int expectedUrls) {
+		int capacity = Integer.highestOneBit(Math.max(16, expectedUrls * 2 - 1)) << 1;
+		slots = new int[capacity];
+		mask = capacity - 1;
+		urls = new String[Math.max(16, expectedUrls)];
+	}
+	
+	/**
+	 * The url's id, assigning the next one if it is new. 
+	 */
+	public synchronized int intern(String url) {
+		int id = put(url);
+		return (id < 0) ? -id - 1 : id;
+	}
+	
+	/**
+	 * Interns the url and returns its new id, or, when it was already interned, -(id + 1). 
+	 */
+	public synchronized int put(String url) {
+		int i = index(url);
+		while (slots[i] != 0) {
+			int id = slots[i] - 1;
+			if (urls[id].equals(url)) return -id - 1;
+			i = (i + 1) & mask;
+		}
+		int id = size++;
+		if (id == urls.length) urls = Arrays.copyOf(urls, urls.length * 2);
+		urls[id] = url;
+		slots[i] = id + 1;
+		if (size * 2 > slots.length) grow();
+		return id;
+	}
+	
+	/**
+	 * The url's id, or -1 if it has not been interned. 
+	 */
+	public synchronized int idOf(String url) {
+		for (int i = index(url); slots[i] != 0; i = (i + 1) & mask) {
+			int id = slots[i] - 1;
+			if (urls[id].equals(url)) return id;
+		}
+		return -1;
+	}
+	
+	public synchronized String urlOf(int id) {
+		if (id < 0 || id >= size) throw new IllegalArgumentException("No url has id " + id);
+		return urls[id];
+	}
+	
+	public synchronized boolean add(String url) {
+		return put(url) >= 0;
+	}
+	
+	public boolean contains(String url) {
+		return idOf(url) >= 0;
+	}
+	
+	public synchronized long size() {
+		return size;
+	}
+	
+	private int index(String url) {
+		int h = url.hashCode() * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+	
+	private void grow() {
+		int[] old = slots;
+		slots = new int[old.length * 2];
+		mask = slots.length - 1;
+		for (int entry : old) {
+			if (entry == 0) continue;
+			int i = index(urls[entry - 1]);
+			while (slots[i] != 0) i = (i + 1) & mask;
+			slots[i] = entry;
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package com.sseltzer.selenium.framework.utility.crawler;
+
+/**
+ *
+ *
+ * UrlSeenSet.java
+ * 
+ * Remembers which urls a crawl has already accepted. Implementations store fingerprints rather 
+ * than the urls themselves, so a crawl's memory does not grow with url length. Implementations 
+ * need not be thread safe; CrawlFrontier guards its set. 
+ *
+ */
+public interface UrlSeenSet {
+	
+	/**
+	 * Adds the url and returns true if it was not already present. 
+	 */
+	public boolean add(String url);
+	
+	public boolean contains(String url);
+	
+	/**
+	 * Number of distinct urls added (for a probabilistic set, the number of successful adds). 
+	 */
+	public long size();
+}
@@ -0,0 +1,128 @@
+package com.sseltzer.selenium.framework.utility.crawler.filter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ *
+ *
+ * AhoCorasick.java
+ * 
+ * ##About:
+ * 
+ * Finds whether any of a set of substrings occurs in a text in one pass over the text, however 
+ * many substrings there are. The patterns are compiled once into a deterministic automaton: a 
+ * flat `int[]` transition table over the characters that actually appear in the patterns (every 
+ * other character shares one column), so matching is a table lookup per character with no 
+ * backtracking and no allocation. Matching is case sensitive, like String.contains. 
+ * 
+ * Instances are immutable and safe to share between threads. 
+ *
+ */
+public final class AhoCorasick {
+	
+	private static final int ASCII = 128;
+	
+	private final int[] asciiColumn = new int[ASCII];
+	private final char[] otherChars;
+	private final int[] otherColumns;
+	private final int columns;
+	private final int[] next;
+	private final boolean[] accepting;
+	
+	public AhoCorasick(Collection<String> patterns) {
+		char[] alphabet = alphabetOf(patterns);
+		List<Character> others = new ArrayList<Character>();
+		for (int i = 0; i < alphabet.length; i++) {
+			if (alphabet[i] < ASCII) asciiColumn[alphabet[i]] = i + 1;
+			else others.add(alphabet[i]);
+		}
+		this.otherChars = new char[others.size()];
+		this.otherColumns = new int[others.size()];
+		for (int i = 0; i < others.size(); i++) {
+			otherChars[i] = others.get(i);
+			otherColumns[i] = Arrays.binarySearch(alphabet, others.get(i)) + 1;
+		}
+		// column 0 is every character that is in no pattern 
+		this.columns = alphabet.length + 1;
+		
+		int maxStates = 1;
+		for (String pattern : patterns) maxStates += pattern.length();
+		int[] table = new int[maxStates * columns];
+		boolean[] accept = new boolean[maxStates];
+		int states = 1;
+		// 1. the trie; 0 means "no edge yet" since no edge leads back to the root 
+		for (String pattern : patterns) {
+			int state = 0;
+			for (int i = 0; i < pattern.length(); i++) {
+				int cell = state * columns + columnOf(pattern.charAt(i));
+				if (table[cell] == 0) table[cell] = states++;
+				state = table[cell];
+			}
+			accept[state] = true;
+		}
+		// 2. breadth first, fill the missing edges from each state's failure state 
+		int[] fail = new int[states];
+		Deque<Integer> queue = new ArrayDeque<Integer>();
+		for (int column = 0; column < columns; column++) {
+			int child = table[column];
+			if (child != 0) queue.add(child);
+		}
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			accept[state] |= accept[fail[state]];
+			for (int column = 0; column < columns; column++) {
+				int cell = state * columns + column;
+				int child = table[cell];
+				int fallback = table[fail[state] * columns + column];
+				if (child == 0) {
+					table[cell] = fallback;
+				} else {
+					fail[child] = fallback;
+					queue.add(child);
+				}
+			}
+		}
+		this.next = Arrays.copyOf(table, states * columns);
+		this.accepting = Arrays.copyOf(accept, states);
+	}
+	
+	/**
+	 * True when any pattern occurs in the text. 
+	 */
+	public boolean matches(CharSequence text) {
+		if (accepting[0]) return true;
+		int state = 0;
+		for (int i = 0; i < text.length(); i++) {
+			state = next[state * columns + columnOf(text.charAt(i))];
+			if (accepting[state]) return true;
+		}
+		return false;
+	}
+	
+	public int stateCount() {
+		return accepting.length;
+	}
+	
+	private int columnOf(char c) {
+		if (c < ASCII) return asciiColumn[c];
+		int index = Arrays.binarySearch(otherChars, c);
+		return (index < 0) ? 0 : otherColumns[index];
+	}
+	
+	private static char[] alphabetOf(Collection<String> patterns) {
+		StringBuilder chars = new StringBuilder();
+		for (String pattern : patterns) chars.append(pattern);
+		char[] sorted = chars.toString().toCharArray();
+		Arrays.sort(sorted);
+		int distinct = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			if (i == 0 || sorted[i] != sorted[i - 1]) sorted[distinct++] = sorted[i];
+		}
+		return Arrays.copyOf(sorted, distinct);
+	}
+}
@@ -0,0 +1,230 @@
+package com.sseltzer.selenium.framework.utility.crawler.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ *
+ *
+ * UrlCanonicalizer.java
+ * 
+ * ##About:
+ * 
+ * Rewrites an absolute url into one canonical spelling, so that links which only differ in ways 
+ * the server ignores are crawled once. The rules that are always safe are on by default: 
+ * 
+ * * lower case scheme and host 
+ * * drop the fragment, the default port (80 for http, 443 for https) and an empty query 
+ * * an empty path becomes "/" 
+ * * resolve `.` and `..` path segments 
+ * * upper case percent escapes, and decode the escapes of unreserved characters (`%7E` is `~`) 
+ * * sort query parameters by name (parameters of the same name keep their order) 
+ * 
+ * The rest change which resource is named on some servers, so they are opt in: 
+ * 
+ * * `removeTrailingSlash`: `/coupons/` is `/coupons` (the root stays "/") 
+ * * `lowerCasePath`: for case insensitive servers 
+ * * `removeQueryParam`: drop tracking parameters; a name ending in `*` is a prefix (`utm_*`) 
+ * 
+ * Urls that are not `scheme://...` are returned unchanged. Canonicalizers are immutable and safe 
+ * to share between crawl workers. 
+ * 
+ * ##Usage: 
+ * 
+ *     UrlCanonicalizer canonical = new UrlCanonicalizer.Builder()
+ *         .removeTrailingSlash()
+ *         .removeQueryParam("utm_*")
+ *         .build();
+ *     String url = canonical.canonicalize("HTTP://www.Valpak.com:80/coupons/?zip=33701&utm_source=x#top");
+ *     // http://www.valpak.com/coupons?zip=33701
+ *
+ */
+public final class UrlCanonicalizer {
+	
+	/**
+	 * The default rules only. 
+	 */
+	public static final UrlCanonicalizer DEFAULT = new Builder().build();
+	
+	private static final Comparator<String> BY_NAME = new Comparator<String>() {
+		public int compare(String a, String b) {
+			return name(a).compareTo(name(b));
+		}
+	};
+	
+	private final boolean sortQuery;
+	private final boolean removeTrailingSlash;
+	private final boolean lowerCasePath;
+	private final Set<String> removedParams;
+	private final String[] removedPrefixes;
+	
+	private UrlCanonicalizer(Builder builder) {
+		this.sortQuery = builder.sortQuery;
+		this.removeTrailingSlash = builder.removeTrailingSlash;
+		this.lowerCasePath = builder.lowerCasePath;
+		this.removedParams = new HashSet<String>(builder.removedParams);
+		this.removedPrefixes = builder.removedPrefixes.toArray(new String[builder.removedPrefixes.size()]);
+	}
+	
+	public String canonicalize(String url) {
+		int end = url.indexOf('#');
+		if (end < 0) end = url.length();
+		int schemeEnd = url.indexOf("://");
+		if (schemeEnd <= 0 || schemeEnd > end) return url.substring(0, end);
+		String scheme = url.substring(0, schemeEnd).toLowerCase();
+		
+		int authorityStart = schemeEnd + 3;
+		int authorityEnd = authorityStart;
+		while (authorityEnd < end && url.charAt(authorityEnd) != '/' && url.charAt(authorityEnd) != '?') authorityEnd++;
+		int queryStart = url.indexOf('?', authorityEnd);
+		if (queryStart > end) queryStart = -1;
+		int pathEnd = (queryStart < 0) ? end : queryStart;
+		
+		StringBuilder canonical = new StringBuilder(end);
+		canonical.append(scheme).append("://");
+		appendAuthority(canonical, scheme, url.substring(authorityStart, authorityEnd));
+		appendPath(canonical, url.substring(authorityEnd, pathEnd));
+		if (queryStart >= 0) appendQuery(canonical, url.substring(queryStart + 1, end));
+		return canonical.toString();
+	}
+	
+	private void appendAuthority(StringBuilder canonical, String scheme, String authority) {
+		int at = authority.lastIndexOf('@');
+		if (at >= 0) canonical.append(authority, 0, at + 1);
+		String hostPort = authority.substring(at + 1);
+		int colon = hostPort.lastIndexOf(':');
+		if (colon >= 0 && hostPort.indexOf(']', colon) >= 0) colon = -1; // inside an IPv6 literal 
+		String host = (colon < 0) ? hostPort : hostPort.substring(0, colon);
+		String port = (colon < 0) ? "" : hostPort.substring(colon + 1);
+		canonical.append(host.toLowerCase());
+		if (port.isEmpty() || isDefaultPort(scheme, port)) return;
+		canonical.append(':').append(port);
+	}
+	
+	private static boolean isDefaultPort(String scheme, String port) {
+		return (scheme.equals("http") && port.equals("80")) || (scheme.equals("https") && port.equals("443"));
+	}
+	
+	// The path here is empty or starts with '/'. 
+	private void appendPath(StringBuilder canonical, String path) {
+		path = normalizeEscapes(path);
+		if (lowerCasePath) path = path.toLowerCase();
+		String[] parts = path.split("/", -1);
+		List<String> segments = new ArrayList<String>();
+		boolean directory = false;
+		for (int i = 1; i < parts.length; i++) {
+			boolean last = (i == parts.length - 1);
+			if (parts[i].equals("..")) {
+				if (!segments.isEmpty()) segments.remove(segments.size() - 1);
+				directory = last;
+			} else if (parts[i].equals(".") || (last && parts[i].isEmpty())) {
+				directory = last;
+			} else {
+				segments.add(parts[i]);
+			}
+		}
+		for (String segment : segments) canonical.append('/').append(segment);
+		if (segments.isEmpty() || (directory && !removeTrailingSlash)) canonical.append('/');
+	}
+	
+	private void appendQuery(StringBuilder canonical, String query) {
+		if (query.isEmpty()) return;
+		List<String> params = new ArrayList<String>(Arrays.asList(query.split("&")));
+		for (int i = params.size() - 1; i >= 0; i--) {
+			if (params.get(i).isEmpty() || isRemoved(name(params.get(i)))) params.remove(i);
+		}
+		if (params.isEmpty()) return;
+		if (sortQuery) Collections.sort(params, BY_NAME);
+		canonical.append('?');
+		for (int i = 0; i < params.size(); i++) {
+			if (i > 0) canonical.append('&');
+			canonical.append(normalizeEscapes(params.get(i)));
+		}
+	}
+	
+	private boolean isRemoved(String name) {
+		if (removedParams.contains(name)) return true;
+		for (String prefix : removedPrefixes) {
+			if (name.startsWith(prefix)) return true;
+		}
+		return false;
+	}
+	
+	private static String name(String param) {
+		int equals = param.indexOf('=');
+		return (equals < 0) ? param : param.substring(0, equals);
+	}
+	
+	// %7e -> ~, %2f -> %2F: the escapes of unreserved characters are decoded, the rest upper cased. 
+	private static String normalizeEscapes(String s) {
+		if (s.indexOf('%') < 0) return s;
+		StringBuilder normalized = new StringBuilder(s.length());
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			int value = (c == '%' && i + 2 < s.length()) ? hex(s.charAt(i + 1), s.charAt(i + 2)) : -1;
+			if (value < 0) {
+				normalized.append(c);
+			} else if (isUnreserved(value)) {
+				normalized.append((char) value);
+				i += 2;
+			} else {
+				normalized.append('%').append(Character.toUpperCase(s.charAt(i + 1))).append(Character.toUpperCase(s.charAt(i + 2)));
+				i += 2;
+			}
+		}
+		return normalized.toString();
+	}
+	
+	private static int hex(char high, char low) {
+		int h = Character.digit(high, 16);
+		int l = Character.digit(low, 16);
+		return (h < 0 || l < 0) ? -1 : h * 16 + l;
+	}
+	
+	private static boolean isUnreserved(int c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') 
+				|| c == '-' || c == '.' || c == '_' || c == '~';
+	}
+	
+	// Collects the optional rules; the default rules cannot be turned off, except query sorting 
+	// for the rare application that reads its parameters in order. 
+	//
+	public static class Builder {
+		private boolean sortQuery = true;
+		private boolean removeTrailingSlash;
+		private boolean lowerCasePath;
+		private final Set<String> removedParams = new HashSet<String>();
+		private final List<String> removedPrefixes = new ArrayList<String>();
+		
+		public Builder keepQueryOrder() {
+			this.sortQuery = false;
+			return this;
+		}
+		
+		public Builder removeTrailingSlash() {
+			this.removeTrailingSlash = true;
+			return this;
+		}
+		
+		public Builder lowerCasePath() {
+			this.lowerCasePath = true;
+			return this;
+		}
+		
+		public Builder removeQueryParam(String name) {
+			if (name == null || name.isEmpty() || name.equals("*")) throw new IllegalArgumentException("A query parameter name is required");
+			if (name.endsWith("*")) removedPrefixes.add(name.substring(0, name.length() - 1));
+			else removedParams.add(name);
+			return this;
+		}
+		
+		public UrlCanonicalizer build() {
+			return new UrlCanonicalizer(this);
+		}
+	}
+}
@@ -0,0 +1,264 @@
+package com.sseltzer.selenium.framework.utility.crawler.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ *
+ *
+ * UrlFilterEngine.java
+ * 
+ * ##About:
+ * 
+ * A set of include and exclude rules over urls, compiled once so that checking a url costs one 
+ * split of the url and a handful of lookups, however many rules there are: 
+ * 
+ * * host: the url's host is the given host or a subdomain of it (a hash lookup per label) 
+ * * path prefix: the path starts with the prefix (a binary search over the sorted prefixes) 
+ * * glob: the whole path matches; `*` and `?` stop at '/', `**` does not 
+ * * regex: found anywhere in the url 
+ * * query param: the query string has a parameter of that name (a hash lookup per parameter) 
+ * * substring: occurs anywhere in the url (one Aho-Corasick pass for all of them) 
+ * 
+ * All globs and regexes on one side are joined into a single Pattern. A url is accepted when it 
+ * is not matched by any exclude rule and, for every kind of rule that has includes, matches at 
+ * least one of that kind: include rules of one kind are alternatives, different kinds narrow. 
+ * With no include rules at all, everything not excluded is accepted. 
+ * 
+ * Engines are immutable and safe to share between crawl workers. 
+ * 
+ * ##Usage: 
+ * 
+ *     UrlFilterEngine rules = new UrlFilterEngine.Builder()
+ *         .includeHost("www.valpak.com")
+ *         .excludeSubstrings(Arrays.asList("facebook", "twitter"))
+ *         .excludePathPrefix("/blog")
+ *         .excludeQueryParam("sort")
+ *         .build();
+ *     boolean follow = rules.accepts(url);
+ *
+ */
+public final class UrlFilterEngine {
+	
+	private final Matchers include;
+	private final Matchers exclude;
+	
+	private UrlFilterEngine(Builder builder) {
+		this.include = new Matchers(builder.include);
+		this.exclude = new Matchers(builder.exclude);
+	}
+	
+	public boolean accepts(String url) {
+		return accepts(UrlParts.of(url));
+	}
+	
+	public boolean accepts(UrlParts url) {
+		return include.allKindsMatch(url) && !exclude.anyKindMatches(url);
+	}
+	
+	// The rules of one side as given to the Builder. 
+	//
+	private static class Rules {
+		private final Set<String> hosts = new HashSet<String>();
+		private final Set<String> pathPrefixes = new HashSet<String>();
+		private final List<String> patterns = new ArrayList<String>();
+		private final Set<String> queryParams = new HashSet<String>();
+		private final Set<String> substrings = new HashSet<String>();
+		private final List<String> globs = new ArrayList<String>();
+	}
+	
+	// The compiled form of one side. A null matcher means that kind has no rules. 
+	//
+	private static class Matchers {
+		private final Set<String> hosts;
+		private final String[] pathPrefixes;
+		private final Pattern pathGlobs;
+		private final Pattern urlPatterns;
+		private final Set<String> queryParams;
+		private final AhoCorasick substrings;
+		
+		private Matchers(Rules rules) {
+			this.hosts = rules.hosts.isEmpty() ? null : new HashSet<String>(rules.hosts);
+			this.pathPrefixes = rules.pathPrefixes.isEmpty() ? null : minimalPrefixes(rules.pathPrefixes);
+			this.pathGlobs = rules.globs.isEmpty() ? null : Pattern.compile(join(rules.globs));
+			this.urlPatterns = rules.patterns.isEmpty() ? null : Pattern.compile(join(rules.patterns));
+			this.queryParams = rules.queryParams.isEmpty() ? null : new HashSet<String>(rules.queryParams);
+			this.substrings = rules.substrings.isEmpty() ? null : new AhoCorasick(rules.substrings);
+		}
+		
+		private boolean allKindsMatch(UrlParts url) {
+			return (hosts == null || matchesHost(url))
+				&& (pathPrefixes == null || matchesPathPrefix(url))
+				&& (pathGlobs == null || pathGlobs.matcher(url.getPath()).matches())
+				&& (urlPatterns == null || urlPatterns.matcher(url.getUrl()).find())
+				&& (queryParams == null || matchesQueryParam(url))
+				&& (substrings == null || substrings.matches(url.getUrl()));
+		}
+		
+		private boolean anyKindMatches(UrlParts url) {
+			return (hosts != null && matchesHost(url))
+				|| (pathPrefixes != null && matchesPathPrefix(url))
+				|| (pathGlobs != null && pathGlobs.matcher(url.getPath()).matches())
+				|| (queryParams != null && matchesQueryParam(url))
+				|| (substrings != null && substrings.matches(url.getUrl()))
+				|| (urlPatterns != null && urlPatterns.matcher(url.getUrl()).find());
+		}
+		
+		private boolean matchesHost(UrlParts url) {
+			String host = url.getHost();
+			if (hosts.contains(host)) return true;
+			for (int dot = host.indexOf('.'); dot >= 0; dot = host.indexOf('.', dot + 1)) {
+				if (hosts.contains(host.substring(dot + 1))) return true;
+			}
+			return false;
+		}
+		
+		private boolean matchesPathPrefix(UrlParts url) {
+			// no prefix is a prefix of another, so only the greatest one not after the path can match 
+			String path = url.getPath();
+			int index = Arrays.binarySearch(pathPrefixes, path);
+			if (index >= 0) return true;
+			int floor = -index - 2;
+			return floor >= 0 && path.startsWith(pathPrefixes[floor]);
+		}
+		
+		private boolean matchesQueryParam(UrlParts url) {
+			String query = url.getQuery();
+			int start = 0;
+			while (start < query.length()) {
+				int end = query.indexOf('&', start);
+				if (end < 0) end = query.length();
+				int equals = query.indexOf('=', start);
+				int nameEnd = (equals < 0 || equals > end) ? end : equals;
+				if (queryParams.contains(query.substring(start, nameEnd))) return true;
+				start = end + 1;
+			}
+			return false;
+		}
+	}
+	
+	private static String[] minimalPrefixes(Set<String> prefixes) {
+		List<String> minimal = new ArrayList<String>();
+		for (String prefix : new TreeSet<String>(prefixes)) {
+			// sorted, so a shorter prefix of this one would be the last one kept 
+			if (minimal.isEmpty() || !prefix.startsWith(minimal.get(minimal.size() - 1))) minimal.add(prefix);
+		}
+		return minimal.toArray(new String[minimal.size()]);
+	}
+	
+	private static String join(List<String> regexes) {
+		StringBuilder joined = new StringBuilder();
+		for (String regex : regexes) {
+			if (joined.length() > 0) joined.append('|');
+			joined.append("(?:").append(regex).append(')');
+		}
+		return joined.toString();
+	}
+	
+	private static String globToRegex(String glob) {
+		StringBuilder regex = new StringBuilder();
+		StringBuilder literal = new StringBuilder();
+		for (int i = 0; i < glob.length(); i++) {
+			char c = glob.charAt(i);
+			if (c != '*' && c != '?') {
+				literal.append(c);
+				continue;
+			}
+			if (literal.length() > 0) regex.append(Pattern.quote(literal.toString()));
+			literal.setLength(0);
+			if (c == '?') {
+				regex.append("[^/]");
+			} else if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+				regex.append(".*");
+				i++;
+			} else {
+				regex.append("[^/]*");
+			}
+		}
+		if (literal.length() > 0) regex.append(Pattern.quote(literal.toString()));
+		return regex.toString();
+	}
+	
+	// Collects rules; `build` compiles them. Regexes are checked as they are added, so a bad 
+	// one fails where it is written rather than at build time. 
+	//
+	public static class Builder {
+		private final Rules include = new Rules();
+		private final Rules exclude = new Rules();
+		
+		public Builder includeHost(String host) {
+			include.hosts.add(host.toLowerCase());
+			return this;
+		}
+		
+		public Builder excludeHost(String host) {
+			exclude.hosts.add(host.toLowerCase());
+			return this;
+		}
+		
+		public Builder includePathPrefix(String prefix) {
+			include.pathPrefixes.add(prefix);
+			return this;
+		}
+		
+		public Builder excludePathPrefix(String prefix) {
+			exclude.pathPrefixes.add(prefix);
+			return this;
+		}
+		
+		public Builder includeGlob(String pathGlob) {
+			include.globs.add(globToRegex(pathGlob));
+			return this;
+		}
+		
+		public Builder excludeGlob(String pathGlob) {
+			exclude.globs.add(globToRegex(pathGlob));
+			return this;
+		}
+		
+		public Builder includeRegex(String regex) {
+			include.patterns.add(Pattern.compile(regex).pattern());
+			return this;
+		}
+		
+		public Builder excludeRegex(String regex) {
+			exclude.patterns.add(Pattern.compile(regex).pattern());
+			return this;
+		}
+		
+		public Builder includeQueryParam(String name) {
+			include.queryParams.add(name);
+			return this;
+		}
+		
+		public Builder excludeQueryParam(String name) {
+			exclude.queryParams.add(name);
+			return this;
+		}
+		
+		public Builder includeSubstring(String substring) {
+			include.substrings.add(substring);
+			return this;
+		}
+		
+		public Builder excludeSubstring(String substring) {
+			exclude.substrings.add(substring);
+			return this;
+		}
+		
+		public Builder excludeSubstrings(Collection<String> substrings) {
+			exclude.substrings.addAll(substrings);
+			return this;
+		}
+		
+		public UrlFilterEngine build() {
+			return new UrlFilterEngine(this);
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package com.sseltzer.selenium.framework.utility.crawler.filter;
+
+/**
+ *
+ *
+ * UrlParts.java
+ * 
+ * The pieces of an absolute url the filter rules look at, split out with a single scan and no 
+ * validation (unlike java.net.URL, which is far more than a filter needs). The host is lower 
+ * cased; a url without an authority has an empty host, and one without a path has "/". 
+ *
+ */
+public final class UrlParts {
+	
+	private final String url;
+	private final String host;
+	private final String path;
+	private final String query;
+	
+	private UrlParts(String url, String host, String path, String query) {
+		this.url = url;
+		this.host = host;
+		this.path = path;
+		this.query = query;
+	}
+	
+	public static UrlParts of(String url) {
+		int end = url.indexOf('#');
+		if (end < 0) end = url.length();
+		int queryStart = url.indexOf('?');
+		if (queryStart > end) queryStart = -1;
+		int rest = (queryStart < 0) ? end : queryStart;
+		
+		int scheme = url.indexOf("://");
+		int hostStart = (scheme < 0 || scheme > rest) ? -1 : scheme + 3;
+		int pathStart = (hostStart < 0) ? 0 : indexOf(url, '/', hostStart, rest);
+		String host = "";
+		if (hostStart >= 0) {
+			int authorityEnd = (pathStart < 0) ? rest : pathStart;
+			int userInfo = url.lastIndexOf('@', authorityEnd - 1);
+			if (userInfo >= hostStart) hostStart = userInfo + 1;
+			int port = indexOf(url, ':', hostStart, authorityEnd);
+			host = url.substring(hostStart, (port < 0) ? authorityEnd : port).toLowerCase();
+		}
+		String path = (pathStart < 0) ? "/" : url.substring(pathStart, rest);
+		String query = (queryStart < 0) ? "" : url.substring(queryStart + 1, end);
+		return new UrlParts(url, host, path, query);
+	}
+	
+	private static int indexOf(String s, char c, int from, int to) {
+		int index = s.indexOf(c, from);
+		return (index < 0 || index >= to) ? -1 : index;
+	}
+	
+	public String getUrl() {
+		return url;
+	}
+	
+	public String getHost() {
+		return host;
+	}
+	
+	public String getPath() {
+		return path;
+	}
+	
+	/**
+	 * The query string without its leading '?', or "". 
+	 */
+	public String getQuery() {
+		return query;
+	}
+}
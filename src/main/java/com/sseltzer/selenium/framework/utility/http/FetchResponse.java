@@ -0,0 +1,114 @@
+package com.sseltzer.selenium.framework.utility.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import com.sseltzer.selenium.framework.error.exceptions.FrameworkException;
+
+/**
+ *
+ *
+ * FetchResponse.java
+ * 
+ * Simple data class for a fully read HTTP response returned by the HttpEngine. The accessors 
+ * are named after Jsoup's Connection.Response so existing callers (`statusCode()`, `body()`, 
+ * `parse()`) read the same. Unlike a Jsoup response it holds no connection, so it is safe to 
+ * keep around after the engine has returned the socket to its pool. 
+ *
+ */
+public class FetchResponse {
+	
+	private static final String DEFAULT_CHARSET = "UTF-8";
+	
+	private String url;
+	private int statusCode;
+	private Map<String, List<String>> headers;
+	private byte[] body;
+	
+	public FetchResponse(String url, int statusCode, Map<String, List<String>> headers, byte[] body) {
+		this.url = url;
+		this.statusCode = statusCode;
+		this.headers = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+		this.headers.putAll(headers);
+		this.body = (body == null) ? new byte[0] : body;
+	}
+
+	public String url() {
+		return url;
+	}
+
+	public int statusCode() {
+		return statusCode;
+	}
+	
+	public Map<String, List<String>> headers() {
+		return Collections.unmodifiableMap(headers);
+	}
+	
+	/**
+	 * Returns the first value of the named header, or null if it is absent. Lookup ignores case. 
+	 */
+	public String header(String name) {
+		List<String> values = headers.get(name);
+		return (values == null || values.isEmpty()) ? null : values.get(0);
+	}
+	
+	public String contentType() {
+		return header("Content-Type");
+	}
+	
+	/**
+	 * The charset named in the Content-Type header, or null if the server did not send one. 
+	 */
+	public String charset() {
+		String contentType = contentType();
+		if (contentType == null) return null;
+		for (String param : contentType.split(";")) {
+			String trimmed = param.trim();
+			if (trimmed.toLowerCase().startsWith("charset=")) 
+				return trimmed.substring("charset=".length()).replace("\"", "").trim();
+		}
+		return null;
+	}
+
+	public byte[] bodyAsBytes() {
+		return body;
+	}
+	
+	public String body() {
+		String charset = usableCharset();
+		try {
+			return new String(body, (charset != null) ? charset : DEFAULT_CHARSET);
+		} catch (UnsupportedEncodingException e) {
+			throw new FrameworkException(e);
+		}
+	}
+	
+	/**
+	 * Parses the body into a Jsoup Document. When the server did not name a charset, Jsoup sniffs 
+	 * it from the document's meta tags. 
+	 */
+	public Document parse() throws IOException {
+		return Jsoup.parse(new ByteArrayInputStream(body), usableCharset(), url);
+	}
+	
+	private String usableCharset() {
+		String charset = charset();
+		try {
+			if (charset != null && Charset.isSupported(charset)) return charset;
+		} catch (IllegalCharsetNameException e) {
+			// fall through to the default
+		}
+		return null;
+	}
+}
@@ -0,0 +1,380 @@
+package com.sseltzer.selenium.framework.utility.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+
+import com.sseltzer.selenium.framework.error.exceptions.FrameworkException;
+import com.sseltzer.selenium.framework.utility.http.cache.CachedResponse;
+import com.sseltzer.selenium.framework.utility.http.cache.ResponseCache;
+import com.sseltzer.selenium.framework.utility.ratelimit.HostRateLimiter;
+
+/**
+ *
+ *
+ * HttpEngine.java
+ * 
+ * ##About:
+ * 
+ * HttpEngine is the shared fetcher behind ConcurrentWebTools. It sits on a single java.net.http 
+ * HttpClient, which keeps idle connections alive in a per-host pool and negotiates HTTP/2 (one 
+ * multiplexed connection per host) wherever the server offers it, falling back to HTTP/1.1 
+ * keep-alive otherwise. Bulk fetches against one host therefore pay the TCP/TLS handshake once 
+ * instead of once per URL. 
+ * 
+ * Every request is asynchronous end to end; no thread is parked while a response is in flight, 
+ * body included: the client collects the body into a byte[] as it arrives, and only then is it 
+ * decompressed. Each exchange, headers and body, must finish within the engine's timeout. 
+ * Two limits are applied without blocking either: 
+ * 
+ * * `maxConnectionsPerHost` caps the requests outstanding against any one host. Requests over 
+ *   the cap wait in a per-host queue and are started as earlier ones finish. 
+ * * An optional HostRateLimiter spaces out request starts. The wait is scheduled, not slept. 
+ * 
+ * Concurrent requests for the same url are coalesced: only the first goes to the network and 
+ * the rest share its response. With a ResponseCache set (see `setCache`), responses are also 
+ * kept between requests. A fresh entry is returned without touching the network; a stale entry 
+ * with an ETag or Last-Modified is revalidated with a conditional GET, and a 304 reuses the 
+ * stored body. 
+ * 
+ * ##Usage: 
+ * 
+ *     HttpEngine engine = new HttpEngine();
+ *     CompletableFuture<FetchResponse> pending = engine.fetchAsync(url);
+ *     FetchResponse response = engine.fetch(url); // blocking convenience 
+ *
+ */
+public class HttpEngine {
+	
+	private static final String USER_AGENT = "Mozilla/5.0 (Windows; U; WindowsNT 5.1; en-US; rv1.8.1.6) Gecko/20070725 Firefox/2.0.0.6";
+	private static final String REFERRER = "http://www.google.com";
+	private static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 8;
+	private static final long DEFAULT_TIMEOUT_MILLIS = 60000;
+	
+	private final HttpClient client;
+	private final int maxConnectionsPerHost;
+	private final Duration timeout;
+	private final ConcurrentMap<String, HostQueue> hosts = new ConcurrentHashMap<String, HostQueue>();
+	private final ConcurrentMap<String, CompletableFuture<FetchResponse>> inFlight = new ConcurrentHashMap<String, CompletableFuture<FetchResponse>>();
+	
+	private volatile HostRateLimiter rateLimiter;
+	private volatile ResponseCache cache;
+
+	public HttpEngine() {
+		this(DEFAULT_MAX_CONNECTIONS_PER_HOST, DEFAULT_TIMEOUT_MILLIS);
+	}
+	
+	public HttpEngine(int maxConnectionsPerHost, long timeoutMillis) {
+		if (maxConnectionsPerHost < 1) throw new IllegalArgumentException("maxConnectionsPerHost must be at least 1");
+		this.maxConnectionsPerHost = maxConnectionsPerHost;
+		this.timeout = Duration.ofMillis(timeoutMillis);
+		this.client = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.followRedirects(HttpClient.Redirect.NORMAL)
+				.connectTimeout(this.timeout)
+				.build();
+	}
+	
+	public void setRateLimiter(HostRateLimiter rateLimiter) {
+		this.rateLimiter = rateLimiter;
+	}
+	
+	public HostRateLimiter getRateLimiter() {
+		return rateLimiter;
+	}
+	
+	/**
+	 * Sets the response cache, or null to always go to the network. 
+	 */
+	public void setCache(ResponseCache cache) {
+		this.cache = cache;
+	}
+	
+	public ResponseCache getCache() {
+		return cache;
+	}
+	
+	/**
+	 * Fetches the url and blocks until the whole body has been read. 
+	 */
+	public FetchResponse fetch(String url) throws FrameworkException {
+		return join(fetchAsync(url));
+	}
+	
+	/**
+	 * Starts every fetch at once and blocks until all are done. Results are in input order. 
+	 */
+	public List<FetchResponse> fetchAll(List<String> urls) throws FrameworkException {
+		List<CompletableFuture<FetchResponse>> pending = new ArrayList<CompletableFuture<FetchResponse>>();
+		for (String url : urls) pending.add(fetchAsync(url));
+		List<FetchResponse> output = new ArrayList<FetchResponse>();
+		for (CompletableFuture<FetchResponse> future : pending) output.add(join(future));
+		return output;
+	}
+	
+	public CompletableFuture<FetchResponse> fetchAsync(final String url) {
+		final CompletableFuture<FetchResponse> pending = new CompletableFuture<FetchResponse>();
+		CompletableFuture<FetchResponse> existing = inFlight.putIfAbsent(url, pending);
+		// copies, so one caller cancelling does not cancel the fetch for everyone else
+		if (existing != null) return existing.copy();
+		CompletableFuture<FetchResponse> loaded;
+		try {
+			loaded = load(url);
+		} catch (RuntimeException e) {
+			loaded = new CompletableFuture<FetchResponse>();
+			loaded.completeExceptionally(e);
+		}
+		loaded.whenComplete(new BiConsumer<FetchResponse, Throwable>() {
+			public void accept(FetchResponse response, Throwable error) {
+				inFlight.remove(url, pending);
+				if (error != null) pending.completeExceptionally(unwrap(error));
+				else pending.complete(response);
+			}
+		});
+		return pending.copy();
+	}
+	
+	private CompletableFuture<FetchResponse> load(final String url) {
+		final ResponseCache cache = this.cache;
+		final CachedResponse cached = (cache == null) ? null : cache.get(url);
+		if (cached != null && cached.isFresh(System.currentTimeMillis())) return CompletableFuture.completedFuture(cached.getResponse());
+		final HttpRequest request;
+		try {
+			HttpRequest.Builder builder = requestBuilder(url);
+			if (cached != null && cached.getETag() != null) builder.header("If-None-Match", cached.getETag());
+			if (cached != null && cached.getLastModified() != null) builder.header("If-Modified-Since", cached.getLastModified());
+			request = builder.build();
+		} catch (IllegalArgumentException e) {
+			CompletableFuture<FetchResponse> failed = new CompletableFuture<FetchResponse>();
+			failed.completeExceptionally(new FrameworkException("Invalid url: " + url, e));
+			return failed;
+		}
+		CompletableFuture<FetchResponse> sent = hostQueue(request.uri().getHost()).submit(new Supplier<CompletableFuture<FetchResponse>>() {
+			public CompletableFuture<FetchResponse> get() {
+				return send(url, request);
+			}
+		});
+		if (cache == null) return sent;
+		return sent.thenApply(new Function<FetchResponse, FetchResponse>() {
+			public FetchResponse apply(FetchResponse response) {
+				return store(cache, url, cached, response);
+			}
+		});
+	}
+	
+	// Folds a network response into the cache and returns what the caller should see: the 
+	// stored body for a 304, the response itself otherwise. 
+	private static FetchResponse store(ResponseCache cache, String url, CachedResponse cached, FetchResponse response) {
+		long now = System.currentTimeMillis();
+		try {
+			if (response.statusCode() == 304 && cached != null) {
+				CachedResponse refreshed = cached.revalidated(response, now);
+				cache.put(url, refreshed);
+				return refreshed.getResponse();
+			}
+			if (CachedResponse.isStorable(response)) cache.put(url, new CachedResponse(response, now));
+			else if (cached != null) cache.remove(url);
+		} catch (FrameworkException e) {
+			// a cache that cannot be written to should cost a refetch next time, not this response
+		}
+		return response;
+	}
+	
+	protected HttpRequest.Builder requestBuilder(String url) {
+		return HttpRequest.newBuilder(URI.create(url))
+				.timeout(timeout)
+				.header("User-Agent", USER_AGENT)
+				.header("Referer", REFERRER)
+				.header("Accept-Encoding", "gzip")
+				.GET();
+	}
+	
+	private CompletableFuture<FetchResponse> send(final String url, final HttpRequest request) {
+		return delayFor(request.uri().getHost()).thenCompose(new Function<Void, CompletableFuture<FetchResponse>>() {
+			public CompletableFuture<FetchResponse> apply(Void ignored) {
+				// the client collects the body as it arrives, on no thread of ours; the request 
+				// timeout only covers the headers, so the whole exchange gets its own deadline 
+				final CompletableFuture<HttpResponse<byte[]>> exchange = client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+				return exchange.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+						.handle(new BiFunction<HttpResponse<byte[]>, Throwable, FetchResponse>() {
+							public FetchResponse apply(HttpResponse<byte[]> response, Throwable error) {
+								if (error == null) return toFetchResponse(url, response);
+								exchange.cancel(true);
+								Throwable cause = unwrap(error);
+								if (cause instanceof TimeoutException) 
+									throw new FrameworkException("Timed out after " + timeout.toMillis() + "ms fetching " + url);
+								if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+								throw new CompletionException(cause);
+							}
+						});
+			}
+		});
+	}
+	
+	// Takes a rate limit permit for the host without blocking: the permit is reserved now 
+	// and the request is started once the reservation comes due. 
+	private CompletableFuture<Void> delayFor(String host) {
+		HostRateLimiter limiter = rateLimiter;
+		long wait = (limiter == null || host == null) ? 0 : limiter.getBucket(host).reserve();
+		if (wait <= 0) return CompletableFuture.completedFuture(null);
+		return CompletableFuture.runAsync(new Runnable() {
+			public void run() {
+			}
+		}, CompletableFuture.delayedExecutor(wait, TimeUnit.NANOSECONDS));
+	}
+	
+	private static FetchResponse toFetchResponse(String url, HttpResponse<byte[]> response) {
+		Map<String, List<String>> headers = response.headers().map();
+		byte[] body = response.body();
+		String encoding = response.headers().firstValue("Content-Encoding").orElse("");
+		if (encoding.equalsIgnoreCase("gzip")) {
+			body = gunzip(url, body);
+			// the body handed on is decoded, so these no longer describe it
+			headers = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+			headers.putAll(response.headers().map());
+			headers.remove("Content-Encoding");
+			headers.remove("Content-Length");
+		}
+		return new FetchResponse(response.uri().toString(), response.statusCode(), headers, body);
+	}
+	
+	// The body is already in memory, so this is CPU work only. 
+	private static byte[] gunzip(String url, byte[] compressed) {
+		InputStream in = null;
+		try {
+			in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+			ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) out.write(buffer, 0, read);
+			return out.toByteArray();
+		} catch (IOException e) {
+			throw new FrameworkException("Failed decompressing response body from " + url, e);
+		} finally {
+			try {
+				if (in != null) in.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+	
+	private static <T> T join(CompletableFuture<T> future) throws FrameworkException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new FrameworkException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof FrameworkException) throw (FrameworkException) cause;
+			throw new FrameworkException(cause);
+		}
+	}
+	
+	private HostQueue hostQueue(String host) {
+		String key = (host == null) ? "" : host.toLowerCase();
+		HostQueue queue = hosts.get(key);
+		if (queue != null) return queue;
+		HostQueue created = new HostQueue();
+		queue = hosts.putIfAbsent(key, created);
+		return (queue == null) ? created : queue;
+	}
+	
+	// Caps the number of requests outstanding against one host. Requests past the cap are 
+	// parked (as suppliers, not threads) and started in order as running ones complete. 
+	//
+	private class HostQueue {
+		
+		private int active = 0;
+		private final Deque<Runnable> waiting = new ArrayDeque<Runnable>();
+		// starts handed over by a release further down this thread's stack 
+		private final ThreadLocal<Deque<Runnable>> starting = new ThreadLocal<Deque<Runnable>>();
+		
+		public CompletableFuture<FetchResponse> submit(final Supplier<CompletableFuture<FetchResponse>> request) {
+			final CompletableFuture<FetchResponse> result = new CompletableFuture<FetchResponse>();
+			Runnable start = new Runnable() {
+				public void run() {
+					CompletableFuture<FetchResponse> sent;
+					try {
+						sent = request.get();
+					} catch (RuntimeException e) {
+						sent = new CompletableFuture<FetchResponse>();
+						sent.completeExceptionally(e);
+					}
+					sent.whenComplete(new BiConsumer<FetchResponse, Throwable>() {
+						public void accept(FetchResponse response, Throwable error) {
+							release();
+							if (error != null) result.completeExceptionally(unwrap(error));
+							else result.complete(response);
+						}
+					});
+				}
+			};
+			boolean runNow;
+			synchronized (this) {
+				runNow = active < maxConnectionsPerHost;
+				if (runNow) active++;
+				else waiting.add(start);
+			}
+			if (runNow) start.run();
+			return result;
+		}
+		
+		private void release() {
+			Runnable next;
+			synchronized (this) {
+				next = waiting.poll();
+				if (next == null) active--;
+			}
+			if (next == null) return;
+			// a request that fails synchronously releases from inside its own start, so starting 
+			// the next one here would recurse once per queued request; the outermost release on 
+			// this thread runs them in a loop instead 
+			Deque<Runnable> pending = starting.get();
+			if (pending != null) {
+				pending.add(next);
+				return;
+			}
+			pending = new ArrayDeque<Runnable>();
+			starting.set(pending);
+			try {
+				while (next != null) {
+					next.run();
+					next = pending.poll();
+				}
+			} finally {
+				starting.remove();
+			}
+		}
+	}
+	
+	private static Throwable unwrap(Throwable error) {
+		// CompletableFuture wraps failures from dependent stages in CompletionException
+		if (error instanceof CompletionException && error.getCause() != null) return error.getCause();
+		return error;
+	}
+}
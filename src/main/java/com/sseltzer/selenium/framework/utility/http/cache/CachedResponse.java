@@ -0,0 +1,127 @@
+package com.sseltzer.selenium.framework.utility.http.cache;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.sseltzer.selenium.framework.utility.http.FetchResponse;
+
+/**
+ *
+ *
+ * CachedResponse.java
+ * 
+ * A FetchResponse plus the time it was stored, with the HTTP caching rules needed to use it: 
+ * 
+ * * `isStorable` -- only 200 responses without `Cache-Control: no-store` (or `private`, since the 
+ *   cache may be shared on disk between runs) are kept. 
+ * * `isFresh` -- fresh for `max-age` seconds (minus any `Age`), or until `Expires` when there is no 
+ *   max-age. `no-cache` means always revalidate. Without either header an entry is never fresh, 
+ *   but can still be revalidated cheaply if it has validators. 
+ * * `getETag` / `getLastModified` -- validators for the conditional request. 
+ * 
+ * The engine sends identical request headers every time, so `Vary` has nothing to vary on and is 
+ * not tracked. 
+ *
+ */
+public class CachedResponse {
+	
+	private final FetchResponse response;
+	private final long storedAtMillis;
+	
+	public CachedResponse(FetchResponse response, long storedAtMillis) {
+		this.response = response;
+		this.storedAtMillis = storedAtMillis;
+	}
+	
+	public FetchResponse getResponse() {
+		return response;
+	}
+	
+	public long getStoredAtMillis() {
+		return storedAtMillis;
+	}
+	
+	public String getETag() {
+		return response.header("ETag");
+	}
+	
+	public String getLastModified() {
+		return response.header("Last-Modified");
+	}
+	
+	public boolean hasValidators() {
+		return getETag() != null || getLastModified() != null;
+	}
+	
+	public boolean isFresh(long nowMillis) {
+		return nowMillis - storedAtMillis < freshnessLifetimeMillis(response);
+	}
+	
+	/**
+	 * Builds the entry that replaces this one after a 304: the stored body, with the headers the 
+	 * server just sent layered on top (they may carry a new max-age or ETag), stored now. 
+	 */
+	public CachedResponse revalidated(FetchResponse notModified, long nowMillis) {
+		Map<String, List<String>> headers = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+		headers.putAll(response.headers());
+		headers.putAll(notModified.headers());
+		FetchResponse merged = new FetchResponse(response.url(), response.statusCode(), headers, response.bodyAsBytes());
+		return new CachedResponse(merged, nowMillis);
+	}
+	
+	public static boolean isStorable(FetchResponse response) {
+		if (response.statusCode() != 200) return false;
+		String cacheControl = lower(response.header("Cache-Control"));
+		return !cacheControl.contains("no-store") && !cacheControl.contains("private");
+	}
+	
+	static long freshnessLifetimeMillis(FetchResponse response) {
+		String cacheControl = lower(response.header("Cache-Control"));
+		if (cacheControl.contains("no-cache")) return 0;
+		long maxAge = directiveSeconds(cacheControl, "max-age");
+		if (maxAge >= 0) return Math.max(0, maxAge - ageSeconds(response)) * 1000;
+		long expires = parseDate(response.header("Expires"));
+		long date = parseDate(response.header("Date"));
+		if (expires > 0 && date > 0) return Math.max(0, expires - date);
+		return 0;
+	}
+	
+	private static long directiveSeconds(String cacheControl, String directive) {
+		for (String part : cacheControl.split(",")) {
+			String trimmed = part.trim();
+			if (!trimmed.startsWith(directive + "=")) continue;
+			try {
+				return Long.parseLong(trimmed.substring(directive.length() + 1).replace("\"", "").trim());
+			} catch (NumberFormatException e) {
+				return -1;
+			}
+		}
+		return -1;
+	}
+	
+	private static long ageSeconds(FetchResponse response) {
+		try {
+			String age = response.header("Age");
+			return (age == null) ? 0 : Long.parseLong(age.trim());
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+	
+	private static long parseDate(String date) {
+		if (date == null) return -1;
+		try {
+			return ZonedDateTime.parse(date.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+		} catch (DateTimeParseException e) {
+			return -1;
+		}
+	}
+	
+	private static String lower(String value) {
+		return (value == null) ? "" : value.toLowerCase();
+	}
+}
@@ -0,0 +1,167 @@
+package com.sseltzer.selenium.framework.utility.http.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sseltzer.selenium.framework.error.exceptions.FrameworkException;
+import com.sseltzer.selenium.framework.utility.http.FetchResponse;
+
+/**
+ *
+ *
+ * DiskResponseCache.java
+ * 
+ * On-disk tier that survives between test runs. Each url is stored in its own file named by the 
+ * SHA-1 of the url, as a small binary record (url, status, stored time, headers, body). Strings are 
+ * stored as length-prefixed UTF-8, so header values of any size (long Set-Cookie or CSP headers) 
+ * round trip; files from the older writeUTF format read as a miss and are replaced. Writes go 
+ * to a temp file that is then renamed over the old one, so a reader never sees a half written 
+ * entry. A file that cannot be read is treated as a miss and deleted. 
+ *
+ */
+public class DiskResponseCache implements ResponseCache {
+	
+	private static final int FORMAT_VERSION = 2;
+	
+	private final File directory;
+	
+	public DiskResponseCache(String path) {
+		this(new File(path));
+	}
+	
+	public DiskResponseCache(File directory) {
+		this.directory = directory;
+		if (!directory.isDirectory() && !directory.mkdirs()) 
+			throw new FrameworkException("Could not create response cache directory " + directory);
+	}
+
+	public CachedResponse get(String url) {
+		File file = fileFor(url);
+		if (!file.isFile()) return null;
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			return read(in, url);
+		} catch (IOException e) {
+			file.delete();
+			return null;
+		} finally {
+			close(in);
+		}
+	}
+
+	public void put(String url, CachedResponse response) {
+		File file = fileFor(url);
+		File temp = new File(directory, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			write(out, url, response);
+			out.close();
+			out = null;
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			temp.delete();
+			throw new FrameworkException("Could not write response cache entry for " + url, e);
+		} finally {
+			close(out);
+		}
+	}
+
+	public void remove(String url) {
+		fileFor(url).delete();
+	}
+	
+	private static void write(DataOutputStream out, String url, CachedResponse response) throws IOException {
+		FetchResponse fetched = response.getResponse();
+		out.writeInt(FORMAT_VERSION);
+		writeString(out, url);
+		writeString(out, fetched.url());
+		out.writeInt(fetched.statusCode());
+		out.writeLong(response.getStoredAtMillis());
+		Map<String, List<String>> headers = fetched.headers();
+		out.writeInt(headers.size());
+		for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+			writeString(out, header.getKey());
+			out.writeInt(header.getValue().size());
+			for (String value : header.getValue()) writeString(out, value);
+		}
+		byte[] body = fetched.bodyAsBytes();
+		out.writeInt(body.length);
+		out.write(body);
+	}
+	
+	private static CachedResponse read(DataInputStream in, String url) throws IOException {
+		if (in.readInt() != FORMAT_VERSION) throw new IOException("Unknown cache format");
+		// guard against the (unlikely) SHA-1 collision 
+		if (!readString(in).equals(url)) throw new IOException("Cache entry belongs to another url");
+		String finalUrl = readString(in);
+		int status = in.readInt();
+		long storedAt = in.readLong();
+		int headerCount = in.readInt();
+		Map<String, List<String>> headers = new LinkedHashMap<String, List<String>>();
+		for (int i = 0; i < headerCount; i++) {
+			String name = readString(in);
+			int valueCount = in.readInt();
+			List<String> values = new ArrayList<String>();
+			for (int j = 0; j < valueCount; j++) values.add(readString(in));
+			headers.put(name, values);
+		}
+		byte[] body = new byte[in.readInt()];
+		in.readFully(body);
+		return new CachedResponse(new FetchResponse(finalUrl, status, headers, body), storedAt);
+	}
+	
+	// writeUTF caps a string at 64KB of modified UTF-8 and throws past it 
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+	
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) throw new IOException("Corrupt cache entry");
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	private File fileFor(String url) {
+		return new File(directory, sha1Hex(url));
+	}
+	
+	private static String sha1Hex(String value) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.UTF_8));
+			StringBuilder hex = new StringBuilder();
+			for (byte b : digest) hex.append(String.format("%02x", b));
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new FrameworkException(e);
+		}
+	}
+	
+	private static void close(Closeable closeable) {
+		try {
+			if (closeable != null) closeable.close();
+		} catch (IOException e) {
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package com.sseltzer.selenium.framework.utility.http.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ *
+ *
+ * MemoryResponseCache.java
+ * 
+ * In-memory LRU tier. Bounded by total body bytes rather than entry count, since a handful of 
+ * large pages can matter more than thousands of small ones. Entries bigger than a quarter of the 
+ * budget are not kept at all. 
+ *
+ */
+public class MemoryResponseCache implements ResponseCache {
+	
+	private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+	
+	private final long maxBytes;
+	private long bytes = 0;
+	private final LinkedHashMap<String, CachedResponse> entries = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true);
+	
+	public MemoryResponseCache() {
+		this(DEFAULT_MAX_BYTES);
+	}
+	
+	public MemoryResponseCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	public synchronized CachedResponse get(String url) {
+		return entries.get(url);
+	}
+
+	public synchronized void put(String url, CachedResponse response) {
+		long size = sizeOf(response);
+		remove(url);
+		if (size > maxBytes / 4) return;
+		entries.put(url, response);
+		bytes += size;
+		Iterator<Map.Entry<String, CachedResponse>> eldest = entries.entrySet().iterator();
+		while (bytes > maxBytes && eldest.hasNext()) {
+			bytes -= sizeOf(eldest.next().getValue());
+			eldest.remove();
+		}
+	}
+
+	public synchronized void remove(String url) {
+		CachedResponse removed = entries.remove(url);
+		if (removed != null) bytes -= sizeOf(removed);
+	}
+	
+	public synchronized int size() {
+		return entries.size();
+	}
+	
+	private static long sizeOf(CachedResponse response) {
+		return response.getResponse().bodyAsBytes().length;
+	}
+}
@@ -0,0 +1,23 @@
+package com.sseltzer.selenium.framework.utility.http.cache;
+
+/**
+ *
+ *
+ * ResponseCache.java
+ * 
+ * Storage for HttpEngine's response cache. Implementations only store and retrieve; deciding what 
+ * is cacheable, fresh, or in need of revalidation is done by CachedResponse and the engine. 
+ * Implementations must be safe to call from many threads at once. 
+ *
+ */
+public interface ResponseCache {
+	
+	/**
+	 * Returns the stored entry for the url, or null. 
+	 */
+	public CachedResponse get(String url);
+	
+	public void put(String url, CachedResponse response);
+	
+	public void remove(String url);
+}
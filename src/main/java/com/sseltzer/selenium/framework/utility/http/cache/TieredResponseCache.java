@@ -0,0 +1,43 @@
+package com.sseltzer.selenium.framework.utility.http.cache;
+
+/**
+ *
+ *
+ * TieredResponseCache.java
+ * 
+ * Memory in front of disk. Reads check memory first and promote disk hits into memory; writes 
+ * and removals go to both tiers. 
+ *
+ */
+public class TieredResponseCache implements ResponseCache {
+	
+	private final ResponseCache memory;
+	private final ResponseCache disk;
+	
+	public TieredResponseCache(String diskPath) {
+		this(new MemoryResponseCache(), new DiskResponseCache(diskPath));
+	}
+	
+	public TieredResponseCache(ResponseCache memory, ResponseCache disk) {
+		this.memory = memory;
+		this.disk = disk;
+	}
+
+	public CachedResponse get(String url) {
+		CachedResponse response = memory.get(url);
+		if (response != null) return response;
+		response = disk.get(url);
+		if (response != null) memory.put(url, response);
+		return response;
+	}
+
+	public void put(String url, CachedResponse response) {
+		memory.put(url, response);
+		disk.put(url, response);
+	}
+
+	public void remove(String url) {
+		memory.remove(url);
+		disk.remove(url);
+	}
+}
@@ -1,14 +1,31 @@
 
 package com.sseltzer.selenium.framework.utility.parallelism;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.BiConsumer;
 
-import org.jsoup.Connection.Response;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 
+import com.sseltzer.selenium.framework.environment.EnvironmentHandler;
 import com.sseltzer.selenium.framework.error.exceptions.FrameworkException;
+import com.sseltzer.selenium.framework.utility.http.FetchResponse;
+import com.sseltzer.selenium.framework.utility.http.HttpEngine;
+import com.sseltzer.selenium.framework.utility.http.cache.MemoryResponseCache;
+import com.sseltzer.selenium.framework.utility.http.cache.ResponseCache;
+import com.sseltzer.selenium.framework.utility.http.cache.TieredResponseCache;
+import com.sseltzer.selenium.framework.utility.ratelimit.HostRateLimiter;
+import com.sseltzer.selenium.framework.verification.support.HttpResponseObject;
 
 /**
  *
@@ -19,29 +36,205 @@ import com.sseltzer.selenium.framework.error.exceptions.FrameworkException;
  */
 public class ConcurrentWebTools {
 	
-	private static Parallel parallel = new Parallel(250);  
+	// Fetching goes through the shared HttpEngine (pooled keep-alive connections, HTTP/2 where 
+	// offered, fully async). Requests are limited per host (4/s with a burst of 10 by default) 
+	// and the limit is scheduled by the engine, so no thread waits on it. Parsing is CPU bound, 
+	// so it runs on its own pool sized to the cores; the 20 thread pool is left for callers' own 
+	// (usually I/O bound) functions. Responses are cached in memory only, so each new run refetches 
+	// everything; the disk tier is opt-in and is added when `httpCachePath` is set. 
+	private static Parallel parallel = new Parallel();  
+	private static Parallel parsers = Parallel.fixedThreads(Runtime.getRuntime().availableProcessors());
+	private static HttpEngine engine = createEngine();
+	
+	private static final int PIPELINE_MAX_IN_FLIGHT = 100;
+	
+	private static HttpEngine createEngine() {
+		HttpEngine engine = new HttpEngine();
+		engine.setRateLimiter(new HostRateLimiter(4, 10));
+		String cachePath = EnvironmentHandler.getHttpCachePath();
+		engine.setCache(cachePath.isEmpty() ? new MemoryResponseCache() : new TieredResponseCache(cachePath));
+		return engine;
+	}
+	
+	/**
+	 * Replaces the response cache, or turns caching off with null. By default responses are 
+	 * cached in memory only; set `httpCachePath` (or pass a TieredResponseCache here) to keep them 
+	 * on disk between runs. 
+	 */
+	public static void setCache(ResponseCache cache) {
+		engine.setCache(cache);
+	}
+	
+	public static void setRateLimit(double requestsPerSecondPerHost, int burst) {
+		engine.setRateLimiter(new HostRateLimiter(requestsPerSecondPerHost, burst));
+	}
+	
+	public static HostRateLimiter getRateLimiter() {
+		return engine.getRateLimiter();
+	}
+	
+	/**
+	 * Opts into running `apply` and `stream` on virtual threads (one per task) with at most 
+	 * maxConcurrency running at once, instead of the shared 20 thread pool. Parsing is CPU bound and 
+	 * stays on its own pool of one thread per core. 
+	 */
+	public static void useVirtualThreads(int maxConcurrency) {
+		replacePool(Parallel.virtualThreads(maxConcurrency));
+	}
+	
+	public static void useFixedThreadPool() {
+		replacePool(new Parallel());
+	}
+	
+	private static void replacePool(Parallel replacement) {
+		Parallel old = parallel;
+		parallel = replacement;
+		old.shutdown();
+	}
+	
+	public static ParallelMetrics getMetrics() {
+		return parallel.getMetrics();
+	}
+	
+	/**
+	 * Shuts the shared pools down, letting queued work finish, and writes their metrics to the path in the 
+	 * `parallelMetrics` environment variable when one is set: the task pool under "pool" and the parser 
+	 * pool under "parsers". The pools start again on next use. 
+	 */
+	public static void shutdown() {
+		parallel.shutdown();
+		parsers.shutdown();
+		String metricsPath = EnvironmentHandler.getParallelMetricsPath();
+		if (metricsPath.isEmpty()) return;
+		Map<String, ParallelMetrics> pools = new LinkedHashMap<String, ParallelMetrics>();
+		pools.put("pool", parallel.getMetrics());
+		pools.put("parsers", parsers.getMetrics());
+		ParallelMetrics.writeJson(new File(metricsPath), pools);
+	}
+	
+	private static Parallel pool() {
+		parallel.start();
+		return parallel;
+	}
+	
+	private static Parallel parserPool() {
+		parsers.start();
+		return parsers;
+	}
+	
+	public static ParallelMetrics getParserMetrics() {
+		return parsers.getMetrics();
+	}
+	
+	public static HttpEngine getEngine() {
+		return engine;
+	}
+	
+	public static void setEngine(HttpEngine httpEngine) {
+		engine = httpEngine;
+	}
 	
 	public static <T, E> List<T> apply(List<E> list, Function<E, T> f) throws Exception {
-		return parallel.apply(list, f);
+		return pool().apply(list, f);
+	}
+	
+	public static <T, E> List<TaskResult<E, T>> applyAll(List<E> list, Function<E, T> f) {
+		return pool().applyAll(list, f);
+	}
+	
+	public static <T, E> Iterator<T> stream(Iterable<E> items, Function<E, T> f) {
+		return pool().stream(items, f);
 	}
 	
 	public static Document openAndParse(String urls) throws FrameworkException {
 		return openAndParse(Arrays.asList(urls)).get(0);
 	}
 	
+	/**
+	 * Fetches and parses every url. Each page is handed to the parser pool as soon as its body 
+	 * arrives, so parsing overlaps the remaining network waits instead of starting after the last 
+	 * response. Results are in input order. 
+	 */
 	public static List<Document> openAndParse(List<String> urls) throws FrameworkException {
+		List<CompletableFuture<Document>> pending = new ArrayList<CompletableFuture<Document>>();
+		for (String url : urls) pending.add(openAndParseAsync(url));
+		List<Document> output = new ArrayList<Document>();
+		for (CompletableFuture<Document> document : pending) output.add(join(document));
+		return output;
+	}
+	
+	/**
+	 * Same pipeline as openAndParse, but documents are returned lazily in the order they finish, 
+	 * with at most 100 pages fetched or parsed at once. 
+	 */
+	public static Iterator<Document> streamOpenAndParse(Iterable<String> urls) {
+		return new PipelineIterator(urls.iterator(), PIPELINE_MAX_IN_FLIGHT);
+	}
+	
+	public static void streamOpenAndParse(Iterable<String> urls, Consumer<Document> consumer) throws FrameworkException {
+		Iterator<Document> documents = streamOpenAndParse(urls);
+		while (documents.hasNext()) {
+			try {
+				consumer.accept(documents.next());
+			} catch (FrameworkException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new FrameworkException(e);
+			}
+		}
+	}
+	
+	/**
+	 * Fetches the url on the HttpEngine and, once the body is in, parses it on the parser pool. 
+	 * No thread is held while the request is in flight, body download included (see HttpEngine). 
+	 */
+	public static CompletableFuture<Document> openAndParseAsync(String url) {
+		final CompletableFuture<Document> parsed = new CompletableFuture<Document>();
+		engine.fetchAsync(url).whenComplete(new BiConsumer<FetchResponse, Throwable>() {
+			public void accept(FetchResponse response, Throwable error) {
+				if (error != null) {
+					parsed.completeExceptionally(error);
+					return;
+				}
+				try {
+					parserPool().submit(response, new Function<FetchResponse, Document>() {
+						public Document apply(FetchResponse response) throws Exception {
+							try {
+								Document document = response.parse();
+								parsed.complete(document);
+								return document;
+							} catch (Exception e) {
+								parsed.completeExceptionally(e);
+								throw e;
+							}
+						}
+					});
+				} catch (RuntimeException e) {
+					// the parser pool rejected the task (e.g. it was shut down mid-flight) 
+					parsed.completeExceptionally(e);
+				}
+			}
+		});
+		return parsed;
+	}
+	
+	private static <T> T join(CompletableFuture<T> future) throws FrameworkException {
 		try {
-			return parseResponses(loadResponses(urls));
-		} catch (Exception e) {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 			throw new FrameworkException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof FrameworkException) throw (FrameworkException) e.getCause();
+			throw new FrameworkException(e.getCause());
 		}
 	}
 	
-	public static Response loadResponses(final String url) throws FrameworkException {
+	public static FetchResponse loadResponses(final String url) throws FrameworkException {
 		return loadResponses(Arrays.asList(url)).get(0);
 	}
 	
-	public static List<Response> loadResponses(final List<String> urls) throws FrameworkException {
+	public static List<FetchResponse> loadResponses(final List<String> urls) throws FrameworkException {
 		try {
 			return _loadResponses(urls);
 		} catch (Exception e ) {
@@ -49,21 +242,32 @@ public class ConcurrentWebTools {
 		}
 	}
 	
-	public static List<Response> _loadResponses(final List<String> urls) throws Exception{
-		return parallel.apply(urls, new Function<String, Response>() {
-			public Response apply(String url) throws Exception {
-				return Jsoup.connect(url)
-						.timeout(60000)
-						.userAgent("Mozilla/5.0 (Windows; U; WindowsNT 5.1; en-US; rv1.8.1.6) Gecko/20070725 Firefox/2.0.0.6")
-						.referrer("http://www.google.com")
-						.ignoreHttpErrors(true)
-						.ignoreContentType(true)
-						.execute();
-			}}
-		);
+	public static List<FetchResponse> _loadResponses(final List<String> urls) throws Exception{
+		return engine.fetchAll(urls);
+	}
+	
+	/**
+	 * Checks that each url answers, without downloading any bodies: a HEAD, or a one byte ranged 
+	 * GET where HEAD is refused (see LoaderTaskThread). For broken-link sweeps over PDFs, images 
+	 * and off-site links, where only the status matters. Requests share the per-host rate limit. 
+	 */
+	public static List<HttpResponseObject> verifyLinks(List<String> urls) throws FrameworkException {
+		try {
+			return pool().apply(urls, new Function<String, HttpResponseObject>() {
+				public HttpResponseObject apply(String url) throws Exception {
+					HostRateLimiter limiter = engine.getRateLimiter();
+					if (limiter != null) limiter.acquire(url);
+					return HttpResponseObject.verify(url);
+				}}
+			);
+		} catch (FrameworkException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new FrameworkException(e);
+		}
 	}
 	
-	public static Document parseResponses(Response response) throws FrameworkException {
+	public static Document parseResponses(FetchResponse response) throws FrameworkException {
 		try {
 			return parseResponses(Arrays.asList(response)).get(0);
 		} catch (Exception e ) {
@@ -71,11 +275,63 @@ public class ConcurrentWebTools {
 		} 
 	}
 	
-	public static List<Document> parseResponses(List<Response> responses) throws Exception {
-		return parallel.apply(responses, new Function<Response, Document>() {
-			public Document apply(Response response) throws Exception {
+	public static List<Document> parseResponses(List<FetchResponse> responses) throws Exception {
+		return parserPool().apply(responses, new Function<FetchResponse, Document>() {
+			public Document apply(FetchResponse response) throws Exception {
 				return response.parse();
 			}}
 		);
 	}
+	
+	// Keeps a bounded number of fetch+parse pipelines running and hands the 
+	// documents back as they finish. Same shape as Parallel's CompletionIterator, 
+	// but the work in flight is async, so it holds no threads while waiting. 
+	//
+	private static class PipelineIterator implements Iterator<Document> {
+		
+		private Iterator<String> urls;
+		private int maxInFlight;
+		private int inFlight = 0;
+		private BlockingQueue<CompletableFuture<Document>> completed = new LinkedBlockingQueue<CompletableFuture<Document>>();
+		
+		public PipelineIterator(Iterator<String> urls, int maxInFlight) {
+			this.urls = urls;
+			this.maxInFlight = maxInFlight;
+			fill();
+		}
+		
+		public boolean hasNext() {
+			return inFlight > 0;
+		}
+		
+		public Document next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			CompletableFuture<Document> done;
+			try {
+				done = completed.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new FrameworkException(e);
+			}
+			inFlight--;
+			fill();
+			return join(done);
+		}
+		
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+		
+		private void fill() {
+			while (inFlight < maxInFlight && urls.hasNext()) {
+				final CompletableFuture<Document> document = openAndParseAsync(urls.next());
+				inFlight++;
+				document.whenComplete(new BiConsumer<Document, Throwable>() {
+					public void accept(Document result, Throwable error) {
+						completed.add(document);
+					}
+				});
+			}
+		}
+	}
 }
@@ -0,0 +1,12 @@
+package com.sseltzer.selenium.framework.utility.parallelism;
+
+/**
+ *
+ * Consumer.java
+ * 
+ * Receives results from Parallel.stream as they complete.
+ *
+ */
+public interface Consumer<T> {
+	public void accept(T t) throws Exception;
+}
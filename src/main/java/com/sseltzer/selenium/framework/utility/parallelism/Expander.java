@@ -0,0 +1,15 @@
+package com.sseltzer.selenium.framework.utility.parallelism;
+
+import java.util.List;
+
+/**
+ *
+ * Expander.java
+ * 
+ * A function for ForkJoin.expand. Processes one node of a graph walk and adds the nodes it leads 
+ * to onto `children`; each of those becomes a task of its own. 
+ *
+ */
+public interface Expander<E, T> {
+	public T apply(E e, List<E> children) throws Exception;
+}
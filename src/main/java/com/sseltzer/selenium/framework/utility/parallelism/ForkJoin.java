@@ -0,0 +1,333 @@
+package com.sseltzer.selenium.framework.utility.parallelism;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ *
+ *
+ * ForkJoin.java
+ * 
+ * ##About:
+ * 
+ * Parallel.apply maps over a list that is known up front. Recursive work (expanding links page by 
+ * page, walking nested frames, splitting a big job in halves) only discovers its items as it goes, 
+ * and driving that from a single caller thread serializes it. ForkJoin runs that kind of work on a 
+ * work-stealing ForkJoinPool: each worker keeps its own deque of forked subtasks and idle workers 
+ * steal from the others, so there is no shared queue for every task to contend on. Results are 
+ * combined on the way back up the task tree rather than collected in one place. 
+ * 
+ * ##Usage: 
+ * 
+ * ###Construction: 
+ * 
+ * `ForkJoin()` 
+ * One worker per available core, which is what CPU bound work wants. 
+ * 
+ * `ForkJoin(int parallelism)` 
+ * A custom worker count. Workers are daemon threads. 
+ * 
+ * ###Method Summary: 
+ * 
+ * `invoke` runs a Recursive function on a root item. The function forks subtasks through the 
+ * Forks handle it is given and joins them; a join from inside the pool runs or steals other work 
+ * instead of parking the thread. 
+ * 
+ *     int total = forkJoin.invoke(pages, new Recursive<List<String>, Integer>() {
+ *       	@Override public Integer apply(List<String> urls, ForkJoin.Forks<List<String>, Integer> forks) {
+ *       		if (urls.size() <= 16) return countBroken(urls);
+ *       		ForkJoin.Fork<Integer> left = forks.fork(urls.subList(0, urls.size() / 2));
+ *       		int right = forks.invoke(urls.subList(urls.size() / 2, urls.size()));
+ *       		return left.join() + right;
+ *       	}
+ *     });
+ * 
+ * `expand` is the graph walk built on top. The Expander handles one node and adds the nodes it 
+ * links to onto a list; each becomes its own task. Every distinct item (by `equals`) is visited 
+ * once, so cycles are safe. The results come back in depth first order from the roots, whatever 
+ * order the tasks actually finished in. 
+ * 
+ *     List<Page> pages = forkJoin.expand(seeds, new Expander<String, Page>() {
+ *       	@Override public Page apply(String url, List<String> children) {
+ *       		Page page = open(url);
+ *       		children.addAll(page.getLinks());
+ *       		return page;
+ *       	}
+ *     });
+ * 
+ * Both are fail-fast: the first exception stops any task that has not started yet and is rethrown 
+ * as a RuntimeException wrapping an ExecutionException, as with Parallel.apply. Each call tracks 
+ * its own failure, so one failed walk does not affect another on the same pool. 
+ * 
+ * Joins nest on the worker's stack, so a chain of subtasks thousands deep can overflow it. Graph 
+ * walks are as deep as the longest link chain followed; bound the depth in the Expander if that 
+ * can be large. 
+ * 
+ * `getMetrics()`, `shutdown`, `start` and friends behave as they do on Parallel. 
+ *
+ */
+public class ForkJoin {
+	
+	private final int parallelism;
+	private ForkJoinPool pool;
+	
+	private final ParallelMetrics metrics = new ParallelMetrics();
+	
+	public ForkJoin() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+	
+	public ForkJoin(int parallelism) {
+		if (parallelism < 1) throw new IllegalArgumentException("parallelism must be at least 1");
+		this.parallelism = parallelism;
+		start();
+	}
+	
+	/**
+	 * Starts the pool if it has been shut down. A no-op on a running instance. 
+	 */
+	public synchronized void start() {
+		if (pool != null && !pool.isShutdown()) return;
+		pool = new ForkJoinPool(parallelism);
+	}
+	
+	public synchronized void shutdown() {
+		pool.shutdown();
+	}
+	
+	public synchronized void shutdownNow() {
+		pool.shutdownNow();
+	}
+	
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return pool.awaitTermination(timeout, unit);
+	}
+	
+	public boolean isShutdown() {
+		return pool.isShutdown();
+	}
+	
+	public int getParallelism() {
+		return parallelism;
+	}
+	
+	public ParallelMetrics getMetrics() {
+		return metrics;
+	}
+	
+	public <T, E> T invoke(E root, Recursive<E, T> f) throws RuntimeException {
+		Run run = new Run();
+		T result = pool.invoke(new RecursiveCall<T, E>(run, f, root));
+		run.rethrow();
+		return result;
+	}
+	
+	public <T, E> List<T> expand(Collection<E> roots, Expander<E, T> f) throws RuntimeException {
+		Run run = new Run();
+		Set<E> seen = ConcurrentHashMap.<E> newKeySet();
+		final List<E> unique = new ArrayList<E>();
+		for (E root : roots) {
+			if (root != null && seen.add(root)) unique.add(root);
+		}
+		final ExpandStep<T, E> step = new ExpandStep<T, E>(run, f, seen);
+		List<T> output = pool.invoke(new RecursiveTask<List<T>>() {
+			private static final long serialVersionUID = 1L;
+			protected List<T> compute() {
+				return step.expandAll(unique);
+			}
+		});
+		run.rethrow();
+		return output;
+	}
+	
+	// The handle a Recursive function uses to split its work. 
+	//
+	public static class Forks<E, T> {
+		
+		private final ForkJoin owner;
+		private final Run run;
+		private final Recursive<E, T> f;
+		
+		private Forks(ForkJoin owner, Run run, Recursive<E, T> f) {
+			this.owner = owner;
+			this.run = run;
+			this.f = f;
+		}
+		
+		/**
+		 * Queues the item on this worker's deque, where an idle worker may steal it. 
+		 */
+		public Fork<T> fork(E item) {
+			RecursiveCall<T, E> task = owner.new RecursiveCall<T, E>(run, f, item);
+			task.fork();
+			return new Fork<T>(task);
+		}
+		
+		/**
+		 * Runs the item on the current thread. 
+		 */
+		public T invoke(E item) {
+			return owner.new RecursiveCall<T, E>(run, f, item).invoke();
+		}
+		
+		/**
+		 * Forks every item and joins them all. Results are in input order. 
+		 */
+		public List<T> invokeAll(Collection<E> items) {
+			List<RecursiveCall<T, E>> tasks = new ArrayList<RecursiveCall<T, E>>();
+			for (E item : items) tasks.add(owner.new RecursiveCall<T, E>(run, f, item));
+			RecursiveTask.invokeAll(tasks);
+			List<T> output = new ArrayList<T>();
+			for (RecursiveCall<T, E> task : tasks) output.add(task.join());
+			return output;
+		}
+	}
+	
+	// A forked subtask, to be joined later. 
+	//
+	public static class Fork<T> {
+		
+		private final RecursiveTask<T> task;
+		
+		private Fork(RecursiveTask<T> task) {
+			this.task = task;
+		}
+		
+		public T join() {
+			return task.join();
+		}
+	}
+	
+	// One invoke or expand call. Holds its first failure; once set, tasks that 
+	// have not started yet skip their work and return null. 
+	//
+	private static class Run {
+		
+		private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		
+		public boolean failed() {
+			return failure.get() != null;
+		}
+		
+		public void fail(Throwable e) {
+			failure.compareAndSet(null, e);
+		}
+		
+		public void rethrow() {
+			Throwable e = failure.get();
+			if (e != null) throw new RuntimeException(new ExecutionException(e));
+		}
+	}
+	
+	// Runs the client function for one item of invoke, metered like a Parallel task. 
+	//
+	private class RecursiveCall<T, E> extends RecursiveTask<T> {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final Run run;
+		private final Recursive<E, T> f;
+		private final E item;
+		private final long submitted = System.nanoTime();
+		
+		public RecursiveCall(Run run, Recursive<E, T> f, E item) {
+			this.run = run;
+			this.f = f;
+			this.item = item;
+			metrics.taskSubmitted();
+		}
+		
+		protected T compute() {
+			if (run.failed()) {
+				metrics.taskCancelled();
+				return null;
+			}
+			long started = System.nanoTime();
+			metrics.taskStarted(started - submitted);
+			boolean success = false;
+			try {
+				T result = f.apply(item, new Forks<E, T>(ForkJoin.this, run, f));
+				success = true;
+				return result;
+			} catch (Throwable e) {
+				run.fail(e);
+				return null;
+			} finally {
+				metrics.taskFinished(System.nanoTime() - started, success);
+			}
+		}
+	}
+	
+	// Shared state of one expand call. Each node is its own task, which forks its 
+	// unseen children and concatenates their results after its own. 
+	//
+	private class ExpandStep<T, E> {
+		
+		private final Run run;
+		private final Expander<E, T> f;
+		private final Set<E> seen;
+		
+		public ExpandStep(Run run, Expander<E, T> f, Set<E> seen) {
+			this.run = run;
+			this.f = f;
+			this.seen = seen;
+		}
+		
+		public List<T> expandAll(List<E> items) {
+			List<ExpandTask> tasks = new ArrayList<ExpandTask>();
+			for (E item : items) tasks.add(new ExpandTask(item));
+			RecursiveTask.invokeAll(tasks);
+			List<T> output = new ArrayList<T>();
+			for (ExpandTask task : tasks) output.addAll(task.join());
+			return output;
+		}
+		
+		private class ExpandTask extends RecursiveTask<List<T>> {
+			
+			private static final long serialVersionUID = 1L;
+			
+			private final E item;
+			private final long submitted = System.nanoTime();
+			
+			public ExpandTask(E item) {
+				this.item = item;
+				metrics.taskSubmitted();
+			}
+			
+			protected List<T> compute() {
+				List<T> output = new ArrayList<T>();
+				if (run.failed()) {
+					metrics.taskCancelled();
+					return output;
+				}
+				List<E> children = new ArrayList<E>();
+				long started = System.nanoTime();
+				metrics.taskStarted(started - submitted);
+				boolean success = false;
+				try {
+					output.add(f.apply(item, children));
+					success = true;
+				} catch (Throwable e) {
+					run.fail(e);
+					return output;
+				} finally {
+					metrics.taskFinished(System.nanoTime() - started, success);
+				}
+				List<E> unseen = new ArrayList<E>();
+				for (E child : children) {
+					if (child != null && seen.add(child)) unseen.add(child);
+				}
+				if (!unseen.isEmpty()) output.addAll(expandAll(unseen));
+				return output;
+			}
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package com.sseltzer.selenium.framework.utility.parallelism;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ *
+ *
+ * LatencyHistogram.java
+ * 
+ * A lock-free latency histogram with power-of-two microsecond buckets: bucket 0 holds everything 
+ * under 1 us, bucket n holds [2^(n-1), 2^n) us, and the last bucket catches the rest (about 
+ * 35 minutes and up). Recording is a couple of atomic increments, so it is cheap enough to call 
+ * from every task. Percentiles are reported as the upper bound of the bucket they land in, which 
+ * is accurate to within a factor of two -- plenty for sizing pools. 
+ *
+ */
+public class LatencyHistogram {
+	
+	private static final int BUCKETS = 32;
+	
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong totalMicros = new AtomicLong();
+	private final AtomicLong maxMicros = new AtomicLong();
+	
+	public void record(long nanos) {
+		long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(0, nanos));
+		counts.incrementAndGet(bucketOf(micros));
+		count.incrementAndGet();
+		totalMicros.addAndGet(micros);
+		long max;
+		while (micros > (max = maxMicros.get()) && !maxMicros.compareAndSet(max, micros));
+	}
+	
+	private static int bucketOf(long micros) {
+		int bucket = 64 - Long.numberOfLeadingZeros(micros);
+		return Math.min(bucket, BUCKETS - 1);
+	}
+	
+	private static long upperBoundMicros(int bucket) {
+		return 1L << bucket;
+	}
+	
+	public long getCount() {
+		return count.get();
+	}
+	
+	public double getMeanMillis() {
+		long n = count.get();
+		return (n == 0) ? 0 : totalMicros.get() / 1000.0 / n;
+	}
+	
+	public double getMaxMillis() {
+		return maxMicros.get() / 1000.0;
+	}
+	
+	/**
+	 * Returns the latency, in milliseconds, that the given fraction (0 to 1) of recordings fall under. 
+	 */
+	public double getPercentileMillis(double fraction) {
+		long n = count.get();
+		if (n == 0) return 0;
+		long target = (long) Math.ceil(fraction * n);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= Math.max(1, target)) return Math.min(upperBoundMicros(i), maxMicros.get()) / 1000.0;
+		}
+		return getMaxMillis();
+	}
+	
+	public String jsonify() {
+		StringBuilder jsonStr = new StringBuilder("{");
+		jsonStr.append("\"count\": ").append(getCount());
+		jsonStr.append(", \"meanMs\": ").append(format(getMeanMillis()));
+		jsonStr.append(", \"p50Ms\": ").append(format(getPercentileMillis(0.50)));
+		jsonStr.append(", \"p90Ms\": ").append(format(getPercentileMillis(0.90)));
+		jsonStr.append(", \"p99Ms\": ").append(format(getPercentileMillis(0.99)));
+		jsonStr.append(", \"maxMs\": ").append(format(getMaxMillis()));
+		jsonStr.append(", \"bucketsUpperBoundUs\": {");
+		boolean first = true;
+		for (int i = 0; i < BUCKETS; i++) {
+			long c = counts.get(i);
+			if (c == 0) continue;
+			if (!first) jsonStr.append(", ");
+			jsonStr.append("\"").append(upperBoundMicros(i)).append("\": ").append(c);
+			first = false;
+		}
+		return jsonStr.append("}}").toString();
+	}
+	
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.3f", value);
+	}
+}
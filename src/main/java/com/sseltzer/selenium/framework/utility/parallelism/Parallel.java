@@ -2,11 +2,30 @@
 package com.sseltzer.selenium.framework.utility.parallelism;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sseltzer.selenium.framework.utility.ratelimit.TokenBucket;
 
 
 /**
@@ -48,6 +67,27 @@ import java.util.concurrent.Future;
  * Constructs a pool with a custom executor (Useful if you want to bound the threads to available 
  * core for CPU bound tasks.) 
  * 
+ * `Parallel.virtualThreads(int maxConcurrency)` 
+ * Opt-in mode for I/O bound fan-out. Every task gets its own virtual thread, and at most 
+ * maxConcurrency of them run `f` at once (the rest are parked on a semaphore, which costs a 
+ * virtual thread next to nothing). On JVMs without virtual threads this falls back to a fixed 
+ * pool of maxConcurrency platform threads, so the ceiling holds either way. 
+ * 
+ * `Parallel(int throttle)` / `Parallel(ExecutorService e, TokenBucket limiter)` 
+ * Rate limits task execution. Each task takes a permit from the bucket on its worker thread before 
+ * running, so submission itself never waits. The int form allows one task per `throttle` ms. 
+ * 
+ * ###Lifecycle: 
+ * 
+ * Pools that Parallel creates itself use daemon threads, so a forgotten instance never keeps the JVM 
+ * alive. `shutdown` / `shutdownNow` / `awaitTermination` stop it explicitly, and `start` brings a 
+ * shut down instance back with a fresh pool (injected executors cannot be restarted). 
+ * 
+ * ###Metrics: 
+ * 
+ * `getMetrics()` exposes live queue length, in-flight count, totals, and wait/run latency 
+ * histograms for everything submitted through this instance. See ParallelMetrics. 
+ * 
  * ###Method Sumary: 
  *  
  * Concurrently has a single, simple method: `apply`. 
@@ -56,6 +96,17 @@ import java.util.concurrent.Future;
  * and T is the return type. The function is then 'applied' to the input and executed inside of the 
  * ExecutorService. 
  * 
+ * `apply` is fail-fast: results are watched in completion order, and the first failure cancels (and 
+ * interrupts) every task still queued or running before the exception is rethrown. Use `applyAll` 
+ * when one bad item should not cost the rest; it never throws for a task failure and instead returns 
+ * a TaskResult per item (value or error, plus wait and run time), in input order. 
+ * 
+ * `stream` is the lazy sibling of `apply`. Instead of building the whole output list, it hands each 
+ * result back in the order it *finishes*, either through an Iterator or a Consumer. At most 
+ * `maxInFlight` items are submitted at any one time; the next input item is only pulled once a 
+ * result has been handed back. A slow item no longer holds back the finished ones, and memory 
+ * stays bounded no matter how long the input is (the input can itself be a lazy Iterable). 
+ * 
  * Example 1. Opening a URL
  * 
  *     public Response parallelOpen(List<String> urls) {
@@ -69,54 +120,234 @@ import java.util.concurrent.Future;
  * 2. Usage
  * 
  *     List<Response> responses = parallelOpen(urls); 
+ * 
+ * 3. Streaming 
+ * 
+ *     Iterator<Response> responses = parallel.stream(urls, openUrl);
+ *     while (responses.hasNext()) check(responses.next());
  *
  * 
  * @author ckiehl Jul 31, 2014
  */
 public class Parallel {
 	
-	private int throttle; 
+	private static final int DEFAULT_THREADS = 20;
+	private static final int DEFAULT_MAX_IN_FLIGHT = 100;
+	private static final AtomicInteger poolNumber = new AtomicInteger();
+	
+	private TokenBucket limiter; 
+	private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
 
 	private ExecutorService executor; 
+	private Callable<ExecutorService> executorFactory;
+	private Semaphore concurrencyLimit;
+	
+	private final ParallelMetrics metrics = new ParallelMetrics();
 	
 	
 	public Parallel() { 
-		this(Executors.newFixedThreadPool(20), 0);
+		this(fixedPool(DEFAULT_THREADS), null);
 	}
 	
 	public Parallel(int throttleAmount) { 
-		this(Executors.newFixedThreadPool(20), throttleAmount);
+		this(fixedPool(DEFAULT_THREADS), bucketFor(throttleAmount));
 	}
 	
 	public Parallel(ExecutorService executor, int throttle) { 
+		this(executor, bucketFor(throttle));
+	}
+	
+	public Parallel(ExecutorService executor, TokenBucket limiter) { 
 		this.executor = executor;
-		this.throttle = throttle;
+		this.limiter = limiter;
+	}
+	
+	private Parallel(Callable<ExecutorService> executorFactory, TokenBucket limiter) { 
+		this.executorFactory = executorFactory;
+		this.limiter = limiter;
+		start();
+	}
+	
+	/**
+	 * Builds a Parallel backed by its own fixed pool of daemon threads. 
+	 */
+	public static Parallel fixedThreads(int threads) {
+		if (threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+		return new Parallel(fixedPool(threads), null);
+	}
+	
+	/**
+	 * Builds a Parallel that runs each task on its own virtual thread, with at most maxConcurrency 
+	 * tasks running at a time. Falls back to a fixed pool of that size when virtual threads are not 
+	 * available. 
+	 */
+	public static Parallel virtualThreads(int maxConcurrency) {
+		if (maxConcurrency < 1) throw new IllegalArgumentException("maxConcurrency must be at least 1");
+		if (!VirtualThreads.isSupported()) return fixedThreads(maxConcurrency);
+		Parallel parallel = new Parallel(new Callable<ExecutorService>() {
+			public ExecutorService call() {
+				return VirtualThreads.newPerTaskExecutor();
+			}
+		}, null);
+		parallel.concurrencyLimit = new Semaphore(maxConcurrency);
+		return parallel;
+	}
+	
+	private static TokenBucket bucketFor(int throttle) {
+		return (throttle > 0) ? TokenBucket.everyMillis(throttle) : null;
+	}
+	
+	private static Callable<ExecutorService> fixedPool(final int threads) {
+		return new Callable<ExecutorService>() {
+			public ExecutorService call() {
+				return Executors.newFixedThreadPool(threads, new DaemonThreadFactory());
+			}
+		};
+	}
+	
+	/**
+	 * Starts the pool if it has been shut down. A no-op on a running instance. 
+	 */
+	public synchronized void start() {
+		if (executor != null && !executor.isShutdown()) return;
+		if (executorFactory == null) throw new IllegalStateException("Parallel was given an executor that has been shut down; it cannot be restarted");
+		try {
+			executor = executorFactory.call();
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Lets submitted tasks finish but accepts no new ones. 
+	 */
+	public synchronized void shutdown() {
+		executor.shutdown();
+	}
+	
+	/**
+	 * Interrupts running tasks and drops queued ones. 
+	 */
+	public synchronized void shutdownNow() {
+		executor.shutdownNow();
+	}
+	
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return executor.awaitTermination(timeout, unit);
+	}
+	
+	public boolean isShutdown() {
+		return executor.isShutdown();
+	}
+	
+	public ParallelMetrics getMetrics() {
+		return metrics;
 	}
 	
 	public <T, E> List<T> apply(List<E> list, Function<E, T> f) throws RuntimeException {
 		
-		List<Future<T>> tasks = new ArrayList<Future<T>>();
-		List<T> output = new ArrayList<T>(); 
+		BlockingQueue<Future<T>> completed = new LinkedBlockingQueue<Future<T>>();
+		Map<Future<T>, Integer> positions = new HashMap<Future<T>, Integer>();
+		List<T> output = new ArrayList<T>(Collections.<T> nCopies(list.size(), null)); 
+		
+		int index = 0;
+		for (E item : list) {
+			positions.put(execute(new CallableTask<T,E>(f, item), completed), index++);
+		}
+		for (int done = 0; done < index; done++) { 
+			try {
+				Future<T> future = completed.take();
+				output.set(positions.get(future), future.get()); 
+			} 	catch (InterruptedException e) {
+				cancelAll(positions.keySet());
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			} 	catch (ExecutionException e) {
+				cancelAll(positions.keySet());
+				throw new RuntimeException(e);
+			}
+		}
+		return output;
+	}
+	
+	/**
+	 * Applies f to every item and waits for all of them, whatever happens. Failures are recorded on 
+	 * the item's TaskResult instead of being thrown. Results are in input order. 
+	 */
+	public <T, E> List<TaskResult<E, T>> applyAll(List<E> list, Function<E, T> f) {
+		
+		List<Future<TaskResult<E, T>>> tasks = new ArrayList<Future<TaskResult<E, T>>>();
+		List<TaskResult<E, T>> output = new ArrayList<TaskResult<E, T>>(); 
 		
 		for (E item : list) {
-			tasks.add(executor.submit(new CallableTask<T,E>(f, item)));
-			sleep(this.throttle);
+			tasks.add(execute(new TimedTask<T,E>(f, item), null));
 		}
-		for (Future<T> future : tasks) { 
+		for (Future<TaskResult<E, T>> future : tasks) { 
 			try {
 				output.add(future.get()); 
-			} 	catch (Exception e) {
+			} 	catch (InterruptedException e) {
+				cancelAll(tasks);
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			} 	catch (ExecutionException e) {
+				// TimedTask catches everything f throws, so this is the executor failing 
 				throw new RuntimeException(e);
 			}
 		}
 		return output;
 	}
 	
-	private void sleep(int amount) {
-		try {
-			Thread.sleep(throttle);
-		} catch (InterruptedException e) {
-			throw new RuntimeException(e);
+	/**
+	 * Submits a single item. The returned Future is tracked in this instance's metrics like any other task. 
+	 */
+	public <T, E> Future<T> submit(E item, Function<E, T> f) {
+		return execute(new CallableTask<T, E>(f, item), null);
+	}
+	
+	private <T> Future<T> execute(Callable<T> task, BlockingQueue<Future<T>> completed) {
+		TaskFuture<T> future = new TaskFuture<T>(task, completed);
+		executor.execute(future);
+		return future;
+	}
+	
+	private static void cancelAll(Collection<? extends Future<?>> futures) {
+		for (Future<?> future : futures) future.cancel(true);
+	}
+	
+	/**
+	 * Sets the maximum number of tasks `stream` will have submitted but not yet handed back. 
+	 */
+	public void setMaxInFlight(int maxInFlight) {
+		if (maxInFlight < 1) throw new IllegalArgumentException("maxInFlight must be at least 1");
+		this.maxInFlight = maxInFlight;
+	}
+	
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+	
+	/**
+	 * Applies f to every item and returns the results lazily, in completion order. Input items are 
+	 * only pulled from the Iterable as in-flight slots free up. 
+	 */
+	public <T, E> Iterator<T> stream(Iterable<E> items, Function<E, T> f) {
+		return new CompletionIterator<T, E>(items.iterator(), f);
+	}
+	
+	/**
+	 * Applies f to every item and passes each result to the consumer, in completion order, on the 
+	 * calling thread. Returns once every item has been consumed. 
+	 */
+	public <T, E> void stream(Iterable<E> items, Function<E, T> f, Consumer<T> consumer) throws RuntimeException {
+		Iterator<T> results = stream(items, f);
+		while (results.hasNext()) {
+			try {
+				consumer.accept(results.next());
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
 		}
 	}
 	
@@ -136,22 +367,163 @@ public class Parallel {
 		}
 
 		public T call() throws Exception {
+			if (concurrencyLimit == null) return run();
+			concurrencyLimit.acquire();
+			try {
+				return run();
+			} finally {
+				concurrencyLimit.release();
+			}
+		}
+		
+		private T run() throws Exception {
+			if (limiter != null) limiter.acquire();
 			return f.apply(collection);
 		}
 	}
 	
-
+	// Runs a CallableTask and captures its outcome and timing rather than 
+	// letting a failure escape. Used by applyAll. 
+	//
+	private class TimedTask<T, E> implements Callable<TaskResult<E, T>> {
+		
+		private CallableTask<T, E> task;
+		private E item;
+		private long submitted;
+		
+		public TimedTask(Function<E, T> f, E item) {
+			this.task = new CallableTask<T, E>(f, item);
+			this.item = item;
+			this.submitted = System.nanoTime();
+		}
+		
+		public TaskResult<E, T> call() {
+			long started = System.nanoTime();
+			try {
+				T value = task.call();
+				return new TaskResult<E, T>(item, value, null, started - submitted, System.nanoTime() - started);
+			} catch (Throwable e) {
+				return new TaskResult<E, T>(item, null, e, started - submitted, System.nanoTime() - started);
+			}
+		}
+	}
+	
+	// Every task goes through one of these. It feeds the metrics (wait and run 
+	// time, outcome, or cancellation before it ever started) and, when given a 
+	// queue, adds itself to it once done -- the same trick ExecutorCompletionService 
+	// uses, minus the wrapper we could not meter. 
+	//
+	private class TaskFuture<T> extends FutureTask<T> {
+		
+		private final BlockingQueue<Future<T>> completed;
+		private final AtomicBoolean claimed;
+		
+		public TaskFuture(Callable<T> task, BlockingQueue<Future<T>> completed) {
+			this(new AtomicBoolean(), task, completed);
+		}
+		
+		private TaskFuture(final AtomicBoolean claimed, final Callable<T> task, BlockingQueue<Future<T>> completed) {
+			super(new Callable<T>() {
+				private final long submitted = System.nanoTime();
+				
+				public T call() throws Exception {
+					// whoever claims first, the worker or a cancel, decides how the task is counted 
+					if (!claimed.compareAndSet(false, true)) return task.call();
+					long started = System.nanoTime();
+					metrics.taskStarted(started - submitted);
+					boolean success = false;
+					try {
+						T result = task.call();
+						// applyAll's TimedTask reports failures as values rather than throwing 
+						success = !(result instanceof TaskResult) || ((TaskResult<?, ?>) result).isSuccess();
+						return result;
+					} finally {
+						metrics.taskFinished(System.nanoTime() - started, success);
+					}
+				}
+			});
+			this.claimed = claimed;
+			this.completed = completed;
+			metrics.taskSubmitted();
+		}
+		
+		@Override
+		protected void done() {
+			if (claimed.compareAndSet(false, true)) metrics.taskCancelled();
+			if (completed != null) completed.add(this);
+		}
+	}
+	
+	// Keeps at most maxInFlight tasks submitted and hands results back as they 
+	// complete. A new input item is only submitted once a result is taken, so 
+	// neither the pending inputs nor the finished outputs pile up on the heap. 
+	//
+	private class CompletionIterator<T, E> implements Iterator<T> {
+		
+		private Iterator<E> input;
+		private Function<E, T> f;
+		private BlockingQueue<Future<T>> completed = new LinkedBlockingQueue<Future<T>>();
+		private Set<Future<T>> inFlight = new HashSet<Future<T>>();
+		
+		public CompletionIterator(Iterator<E> input, Function<E, T> f) {
+			this.input = input;
+			this.f = f;
+			fill();
+		}
+		
+		public boolean hasNext() {
+			return !inFlight.isEmpty();
+		}
+		
+		public T next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			T result;
+			try {
+				Future<T> done = completed.take();
+				inFlight.remove(done);
+				result = done.get();
+			} catch (InterruptedException e) {
+				abandon();
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				abandon();
+				throw new RuntimeException(e);
+			}
+			fill();
+			return result;
+		}
+		
+		// fail-fast, same as apply: stop everything in flight and submit nothing more 
+		private void abandon() {
+			cancelAll(inFlight);
+			inFlight.clear();
+			input = Collections.<E> emptyList().iterator();
+		}
+		
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+		
+		private void fill() {
+			while (inFlight.size() < maxInFlight && input.hasNext()) {
+				inFlight.add(execute(new CallableTask<T, E>(f, input.next()), completed));
+			}
+		}
+	}
 	
+	// Pool threads are daemons so an instance nobody shut down does not hold 
+	// the JVM open at the end of a run. 
+	//
+	private static class DaemonThreadFactory implements ThreadFactory {
+		
+		private final int pool = poolNumber.incrementAndGet();
+		private final AtomicInteger thread = new AtomicInteger();
+		
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "parallel-" + pool + "-thread-" + thread.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
 }
-
-
-
-
-
-
-
-
-
-
-
-
@@ -0,0 +1,157 @@
+package com.sseltzer.selenium.framework.utility.parallelism;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sseltzer.selenium.framework.error.exceptions.FrameworkException;
+
+/**
+ *
+ *
+ * ParallelMetrics.java
+ * 
+ * Live counters for a Parallel instance. Every task moves through submitted -> started -> 
+ * (succeeded | failed), or submitted -> cancelled if it is cancelled before it starts, so 
+ * 
+ * * queued   = submitted - started - cancelled (waiting for a worker) 
+ * * inFlight = started - succeeded - failed    (running right now) 
+ * 
+ * Two histograms record how long each task waited in the queue and how long it ran. Waits that 
+ * dominate run times mean the pool is too small; idle workers mean it is too big. `jsonify` and 
+ * `writeJson` dump everything so a run can be sized from data; the static `writeJson` puts several 
+ * pools in one file, each under its own key. 
+ *
+ */
+public class ParallelMetrics {
+	
+	private final AtomicLong submitted = new AtomicLong();
+	private final AtomicLong started = new AtomicLong();
+	private final AtomicLong succeeded = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong cancelled = new AtomicLong();
+	private final AtomicLong peakInFlight = new AtomicLong();
+	
+	private final LatencyHistogram waitTimes = new LatencyHistogram();
+	private final LatencyHistogram runTimes = new LatencyHistogram();
+	
+	void taskSubmitted() {
+		submitted.incrementAndGet();
+	}
+	
+	void taskStarted(long waitNanos) {
+		started.incrementAndGet();
+		waitTimes.record(waitNanos);
+		long now = getInFlight();
+		long peak;
+		while (now > (peak = peakInFlight.get()) && !peakInFlight.compareAndSet(peak, now));
+	}
+	
+	void taskFinished(long runNanos, boolean success) {
+		if (success) succeeded.incrementAndGet();
+		else failed.incrementAndGet();
+		runTimes.record(runNanos);
+	}
+	
+	void taskCancelled() {
+		cancelled.incrementAndGet();
+	}
+	
+	public long getSubmitted() {
+		return submitted.get();
+	}
+	
+	public long getStarted() {
+		return started.get();
+	}
+	
+	public long getSucceeded() {
+		return succeeded.get();
+	}
+	
+	public long getFailed() {
+		return failed.get();
+	}
+	
+	public long getCancelled() {
+		return cancelled.get();
+	}
+	
+	public long getQueueLength() {
+		return Math.max(0, submitted.get() - started.get() - cancelled.get());
+	}
+	
+	public long getInFlight() {
+		return Math.max(0, started.get() - succeeded.get() - failed.get());
+	}
+	
+	public long getPeakInFlight() {
+		return peakInFlight.get();
+	}
+	
+	public LatencyHistogram getWaitTimes() {
+		return waitTimes;
+	}
+	
+	public LatencyHistogram getRunTimes() {
+		return runTimes;
+	}
+	
+	public String jsonify() {
+		StringBuilder jsonStr = new StringBuilder("{\n");
+		jsonStr.append("  \"submitted\" : ").append(getSubmitted()).append(",\n");
+		jsonStr.append("  \"started\" : ").append(getStarted()).append(",\n");
+		jsonStr.append("  \"succeeded\" : ").append(getSucceeded()).append(",\n");
+		jsonStr.append("  \"failed\" : ").append(getFailed()).append(",\n");
+		jsonStr.append("  \"cancelled\" : ").append(getCancelled()).append(",\n");
+		jsonStr.append("  \"queueLength\" : ").append(getQueueLength()).append(",\n");
+		jsonStr.append("  \"inFlight\" : ").append(getInFlight()).append(",\n");
+		jsonStr.append("  \"peakInFlight\" : ").append(getPeakInFlight()).append(",\n");
+		jsonStr.append("  \"waitTime\" : ").append(waitTimes.jsonify()).append(",\n");
+		jsonStr.append("  \"runTime\" : ").append(runTimes.jsonify()).append("\n");
+		return jsonStr.append("}").toString();
+	}
+	
+	public void writeJson(File file) {
+		write(file, jsonify());
+	}
+	
+	public static String jsonify(Map<String, ParallelMetrics> pools) {
+		StringBuilder jsonStr = new StringBuilder("{\n");
+		Iterator<Map.Entry<String, ParallelMetrics>> entries = pools.entrySet().iterator();
+		while (entries.hasNext()) {
+			Map.Entry<String, ParallelMetrics> entry = entries.next();
+			String pool = entry.getValue().jsonify().replace("\n", "\n  ");
+			jsonStr.append("  \"").append(entry.getKey()).append("\" : ").append(pool);
+			jsonStr.append(entries.hasNext() ? ",\n" : "\n");
+		}
+		return jsonStr.append("}").toString();
+	}
+	
+	public static void writeJson(File file, Map<String, ParallelMetrics> pools) {
+		write(file, jsonify(pools));
+	}
+	
+	private static void write(File file, String json) {
+		BufferedWriter writer = null;
+		try {
+			writer = new BufferedWriter(new FileWriter(file));
+			writer.write(json);
+		} catch (Exception e) {
+			throw new FrameworkException(e);
+		} finally {
+			try {
+				if (writer != null) writer.close();
+			} catch (Exception e) {
+			}
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return jsonify();
+	}
+}
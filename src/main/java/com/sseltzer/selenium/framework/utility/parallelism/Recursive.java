@@ -0,0 +1,13 @@
+package com.sseltzer.selenium.framework.utility.parallelism;
+
+/**
+ *
+ * Recursive.java
+ * 
+ * A function for ForkJoin.invoke that may split its item into subtasks. Fork the parts through 
+ * `forks`, do any remaining work on the current thread, then join the parts and combine them. 
+ *
+ */
+public interface Recursive<E, T> {
+	public T apply(E e, ForkJoin.Forks<E, T> forks) throws Exception;
+}
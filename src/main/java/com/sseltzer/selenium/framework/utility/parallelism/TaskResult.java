@@ -0,0 +1,57 @@
+package com.sseltzer.selenium.framework.utility.parallelism;
+
+/**
+ *
+ *
+ * TaskResult.java
+ * 
+ * The outcome of one item from Parallel.applyAll: the input, either its value or the exception it 
+ * failed with, and how long it waited in the queue and ran for. 
+ *
+ */
+public class TaskResult<E, T> {
+	
+	private E item;
+	private T value;
+	private Throwable error;
+	private long waitNanos;
+	private long runNanos;
+	
+	public TaskResult(E item, T value, Throwable error, long waitNanos, long runNanos) {
+		this.item = item;
+		this.value = value;
+		this.error = error;
+		this.waitNanos = waitNanos;
+		this.runNanos = runNanos;
+	}
+	
+	public E getItem() {
+		return item;
+	}
+	
+	public T getValue() {
+		return value;
+	}
+	
+	public Throwable getError() {
+		return error;
+	}
+	
+	public boolean isSuccess() {
+		return error == null;
+	}
+	
+	public long getWaitMillis() {
+		return waitNanos / 1000000;
+	}
+	
+	public long getRunMillis() {
+		return runNanos / 1000000;
+	}
+	
+	@Override
+	public String toString() {
+		String outcome = isSuccess() ? "ok" : "failed: " + error;
+		return String.format("%s -> %s (waited %d ms, ran %d ms)", item, outcome, getWaitMillis(), getRunMillis());
+	}
+}
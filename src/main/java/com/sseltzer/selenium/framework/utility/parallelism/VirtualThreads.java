@@ -0,0 +1,44 @@
+package com.sseltzer.selenium.framework.utility.parallelism;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ *
+ *
+ * VirtualThreads.java
+ * 
+ * Looks up `Executors.newVirtualThreadPerTaskExecutor()` reflectively, so the framework still 
+ * compiles for Java 11 and picks up virtual threads when it runs on a JVM that has them (21+). 
+ *
+ */
+public class VirtualThreads {
+	
+	private static final Method FACTORY = findFactory();
+	
+	private static Method findFactory() {
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+	
+	public static boolean isSupported() {
+		return FACTORY != null;
+	}
+	
+	/**
+	 * Returns an executor that starts one virtual thread per task, or null when the running JVM 
+	 * has no virtual threads. 
+	 */
+	public static ExecutorService newPerTaskExecutor() {
+		if (FACTORY == null) return null;
+		try {
+			return (ExecutorService) FACTORY.invoke(null);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package com.sseltzer.selenium.framework.utility.ratelimit;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ *
+ *
+ * AdaptiveHostScheduler.java
+ * 
+ * Keeps one AimdLimit per host, so each host is driven as hard as it will take and no harder: a 
+ * staging box that starts answering 503 or slowing down is backed off while production, on the 
+ * same crawl or the next, ramps up to `maxPerHost`. Limits are created lazily, starting at 
+ * `initialPerHost`. A 429, a 503, or no response at all (status 0) counts as throttling. 
+ * 
+ * Unlike HostRateLimiter, a request holds its slot until `release`, so every `acquire` must be 
+ * paired with one `release` (in a finally). 
+ *
+ */
+public class AdaptiveHostScheduler {
+	
+	private static final double DEFAULT_DECREASE = 0.5;
+	private static final double DEFAULT_SPIKE_FACTOR = 3;
+	
+	private final ConcurrentMap<String, AimdLimit> limits = new ConcurrentHashMap<String, AimdLimit>();
+	
+	private final int initialPerHost;
+	private final int maxPerHost;
+	
+	public AdaptiveHostScheduler(int initialPerHost, int maxPerHost) {
+		// build one up front so bad arguments fail here instead of on the first request
+		new AimdLimit(initialPerHost, 1, maxPerHost, DEFAULT_DECREASE, DEFAULT_SPIKE_FACTOR);
+		this.initialPerHost = initialPerHost;
+		this.maxPerHost = maxPerHost;
+	}
+	
+	public AimdLimit getLimit(String host) {
+		String key = host.toLowerCase();
+		AimdLimit limit = limits.get(key);
+		if (limit != null) return limit;
+		AimdLimit created = new AimdLimit(initialPerHost, 1, maxPerHost, DEFAULT_DECREASE, DEFAULT_SPIKE_FACTOR);
+		limit = limits.putIfAbsent(key, created);
+		return (limit == null) ? created : limit;
+	}
+	
+	/**
+	 * Never starts two requests to this host closer together than `millis` (e.g. a robots.txt 
+	 * Crawl-delay). 
+	 */
+	public void setMinInterval(String host, long millis) {
+		getLimit(host).setMinInterval(millis);
+	}
+	
+	public void acquire(String url) throws InterruptedException {
+		getLimit(HostRateLimiter.hostOf(url)).acquire();
+	}
+	
+	public void release(String url, int statusCode, long latencyNanos) {
+		getLimit(HostRateLimiter.hostOf(url)).release(isThrottled(statusCode), latencyNanos);
+	}
+	
+	private static boolean isThrottled(int statusCode) {
+		return statusCode == 0 || statusCode == 429 || statusCode == 503;
+	}
+}
@@ -0,0 +1,121 @@
+package com.sseltzer.selenium.framework.utility.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ *
+ * AimdLimit.java
+ * 
+ * ##About:
+ * 
+ * A concurrency limit for one host that finds its own level, the way TCP finds a link's: every 
+ * healthy response raises the limit by `1/limit` (about one more request in flight per round 
+ * trip), and a sign of overload cuts it by the decrease factor, at most once per round trip so 
+ * one burst of errors is one cut. Overload is whatever the caller reports as throttled (a 429 or 
+ * 503, a timeout) or a latency spike: a response more than `spikeFactor` times slower than the 
+ * running average of unthrottled ones. A spike that cuts the limit also becomes the new average, 
+ * so a host that has just got slower for good is cut once and then judged against its new normal 
+ * rather than cut down to the minimum. 
+ * 
+ * Once the limit is down to its minimum, further overload spaces out request starts instead, 
+ * doubling a backoff delay up to `MAX_BACKOFF_MILLIS`; healthy responses halve it again. Starts 
+ * are never closer together than the minimum interval either (a robots.txt Crawl-delay). 
+ * 
+ * `acquire` blocks until the host has room; every acquire must be paired with one `release`. 
+ *
+ */
+public class AimdLimit {
+	
+	private static final long MAX_BACKOFF_MILLIS = 30000;
+	private static final double LATENCY_WEIGHT = 0.1;
+	private static final int WARMUP_SAMPLES = 5;
+	
+	private final int minLimit;
+	private final int maxLimit;
+	private final double decrease;
+	private final double spikeFactor;
+	
+	private double limit;
+	private int inFlight;
+	private long minIntervalNanos;
+	private long backoffNanos;
+	private long nextStartNanos = System.nanoTime();
+	private double averageLatencyNanos;
+	private int samples;
+	private long lastDecreaseNanos;
+	
+	public AimdLimit(int initialLimit, int minLimit, int maxLimit, double decrease, double spikeFactor) {
+		if (minLimit < 1) throw new IllegalArgumentException("minLimit must be at least 1");
+		if (maxLimit < minLimit) throw new IllegalArgumentException("maxLimit must be at least minLimit");
+		if (decrease <= 0 || decrease >= 1) throw new IllegalArgumentException("decrease must be between 0 and 1");
+		if (spikeFactor <= 1) throw new IllegalArgumentException("spikeFactor must be more than 1");
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.decrease = decrease;
+		this.spikeFactor = spikeFactor;
+		this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+		this.lastDecreaseNanos = System.nanoTime() - TimeUnit.DAYS.toNanos(1);
+	}
+	
+	public synchronized void setMinInterval(long millis) {
+		this.minIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis));
+	}
+	
+	public synchronized void acquire() throws InterruptedException {
+		while (true) {
+			long now = System.nanoTime();
+			if (inFlight < (int) limit) {
+				long wait = nextStartNanos - now;
+				if (wait <= 0) {
+					inFlight++;
+					nextStartNanos = now + Math.max(minIntervalNanos, backoffNanos);
+					return;
+				}
+				TimeUnit.NANOSECONDS.timedWait(this, wait);
+			} else {
+				wait();
+			}
+		}
+	}
+	
+	public synchronized void release(boolean throttled, long latencyNanos) {
+		inFlight--;
+		long now = System.nanoTime();
+		boolean spike = samples >= WARMUP_SAMPLES && latencyNanos > averageLatencyNanos * spikeFactor;
+		if (throttled || spike) {
+			// one cut per round trip; the other responses in flight saw the same overload 
+			double roundTrip = (samples == 0) ? latencyNanos : averageLatencyNanos;
+			if (now - lastDecreaseNanos >= roundTrip) {
+				lastDecreaseNanos = now;
+				if (spike) averageLatencyNanos = latencyNanos;
+				if (limit > minLimit) {
+					limit = Math.max(minLimit, limit * decrease);
+				} else {
+					long doubled = Math.max(TimeUnit.MILLISECONDS.toNanos(100), backoffNanos * 2);
+					backoffNanos = Math.min(TimeUnit.MILLISECONDS.toNanos(MAX_BACKOFF_MILLIS), doubled);
+				}
+			} else if (spike) {
+				averageLatencyNanos += LATENCY_WEIGHT * (latencyNanos - averageLatencyNanos);
+			}
+		} else {
+			averageLatencyNanos = (samples == 0) ? latencyNanos : averageLatencyNanos + LATENCY_WEIGHT * (latencyNanos - averageLatencyNanos);
+			samples++;
+			if (backoffNanos > 0) backoffNanos /= 2;
+			else limit = Math.min(maxLimit, limit + 1 / limit);
+		}
+		notifyAll();
+	}
+	
+	public synchronized int getLimit() {
+		return (int) limit;
+	}
+	
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+	
+	public synchronized long getBackoffMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(backoffNanos);
+	}
+}
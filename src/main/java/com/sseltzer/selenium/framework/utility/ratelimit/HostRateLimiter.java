@@ -0,0 +1,62 @@
+package com.sseltzer.selenium.framework.utility.ratelimit;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.sseltzer.selenium.framework.error.exceptions.FrameworkException;
+
+/**
+ *
+ *
+ * HostRateLimiter.java
+ * 
+ * Keeps one TokenBucket per host, so a batch of URLs spread over many hosts runs as fast as each 
+ * host allows rather than as fast as the slowest limit. Buckets are created lazily on first use 
+ * with the limiter's default rate and burst; `setLimit` overrides them for a single host. 
+ *
+ */
+public class HostRateLimiter {
+	
+	private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<String, TokenBucket>();
+	
+	private final double permitsPerSecond;
+	private final int burst;
+	
+	public HostRateLimiter(double permitsPerSecond, int burst) {
+		// build one up front so bad arguments fail here instead of on the first request
+		new TokenBucket(permitsPerSecond, burst);
+		this.permitsPerSecond = permitsPerSecond;
+		this.burst = burst;
+	}
+	
+	public void setLimit(String host, double permitsPerSecond, int burst) {
+		buckets.put(host.toLowerCase(), new TokenBucket(permitsPerSecond, burst));
+	}
+	
+	public TokenBucket getBucket(String host) {
+		String key = host.toLowerCase();
+		TokenBucket bucket = buckets.get(key);
+		if (bucket != null) return bucket;
+		TokenBucket created = new TokenBucket(permitsPerSecond, burst);
+		bucket = buckets.putIfAbsent(key, created);
+		return (bucket == null) ? created : bucket;
+	}
+	
+	public void acquire(String url) throws InterruptedException {
+		getBucket(hostOf(url)).acquire();
+	}
+	
+	public boolean tryAcquire(String url) {
+		return getBucket(hostOf(url)).tryAcquire();
+	}
+	
+	public static String hostOf(String url) {
+		try {
+			return new URL(url).getHost();
+		} catch (MalformedURLException e) {
+			throw new FrameworkException(e);
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package com.sseltzer.selenium.framework.utility.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ *
+ * TokenBucket.java
+ * 
+ * ##About:
+ * 
+ * A classic token bucket. Tokens refill continuously at `permitsPerSecond` up to `burst`, and each 
+ * acquire spends one. An idle bucket can therefore absorb a burst of requests immediately, and a busy 
+ * one settles into the configured rate. 
+ * 
+ * The bucket never holds a lock while waiting. `acquire` reserves its token first (the balance is 
+ * allowed to go negative, which is what queues later callers behind earlier ones) and then sleeps off 
+ * the debt on the calling thread. In Parallel that calling thread is the worker running the task, not 
+ * the thread submitting work, so submission is never slowed down by the limit. `tryAcquire` is the 
+ * non-blocking form for callers that would rather skip or requeue work than wait. 
+ *
+ */
+public class TokenBucket {
+	
+	private final long nanosPerPermit;
+	private final double burst;
+	
+	private double available;
+	private long lastRefill;
+	
+	public TokenBucket(double permitsPerSecond) {
+		this(permitsPerSecond, 1);
+	}
+	
+	public TokenBucket(double permitsPerSecond, int burst) {
+		if (permitsPerSecond <= 0) throw new IllegalArgumentException("permitsPerSecond must be positive");
+		if (burst < 1) throw new IllegalArgumentException("burst must be at least 1");
+		this.nanosPerPermit = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+		this.burst = burst;
+		this.available = burst;
+		this.lastRefill = System.nanoTime();
+	}
+	
+	/**
+	 * Builds a bucket that allows one permit every `intervalMillis`, with no burst. This matches the 
+	 * old fixed sleep between submits, minus the sleeping on the submitter. 
+	 */
+	public static TokenBucket everyMillis(long intervalMillis) {
+		return new TokenBucket(1000.0 / intervalMillis, 1);
+	}
+	
+	/**
+	 * Takes a permit if one is available right now. Never blocks.
+	 */
+	public synchronized boolean tryAcquire() {
+		refill();
+		if (available < 1) return false;
+		available -= 1;
+		return true;
+	}
+	
+	/**
+	 * Takes a permit, sleeping the calling thread until it is due. 
+	 */
+	public void acquire() throws InterruptedException {
+		long wait = reserve();
+		if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+	}
+	
+	/**
+	 * Takes a permit immediately and returns how long, in nanoseconds, the caller must wait before 
+	 * using it. Useful for callers that schedule rather than sleep. 
+	 */
+	public synchronized long reserve() {
+		refill();
+		available -= 1;
+		if (available >= 0) return 0;
+		return (long) (-available * nanosPerPermit);
+	}
+	
+	public synchronized double getAvailablePermits() {
+		refill();
+		return available;
+	}
+	
+	private void refill() {
+		long now = System.nanoTime();
+		available = Math.min(burst, available + (double) (now - lastRefill) / nanosPerPermit);
+		lastRefill = now;
+	}
+}
@@ -1,7 +1,7 @@
-
 package com.sseltzer.selenium.framework.verification.support;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 
 /**
@@ -10,20 +10,40 @@ import java.net.HttpURLConnection;
  * Simple data class for handling HttpResponses. 
  * This lightweight alternative to keeping HttpUrlConnection
  * objects alive while threading in the UrlTester class. 
+ * 
+ * Everything is read from the headers and the connection is let go at once, without reading the 
+ * body: a HEAD or a one byte ranged GET is handed back for reuse, anything else is disconnected 
+ * so an unwanted body is never downloaded. 
  *
  * @author ckiehl May 19, 2014
  */
 public class HttpResponseObject {
+	private static final int MAX_DRAIN_BYTES = 1;
+	
 	private String url;
 	private Integer statusCode;
+	private String method;
+	private String contentType;
+	private long contentLength;
 	
 	public HttpResponseObject(HttpURLConnection connection) {
 		this.url = connection.getURL().toString();
+		this.method = connection.getRequestMethod();
 		try {
 			this.statusCode = connection.getResponseCode();
 		} catch (IOException e) {
 			this.statusCode = null;
 		}
+		this.contentType = connection.getContentType();
+		this.contentLength = contentLengthOf(connection);
+		release(connection);
+	}
+	
+	/**
+	 * Checks a url without downloading its body (see LoaderTaskThread). 
+	 */
+	public static HttpResponseObject verify(String url) {
+		return new HttpResponseObject(new LoaderTaskThread(url, true).call());
 	}
 
 	public String getUrl() {
@@ -33,4 +53,62 @@ public class HttpResponseObject {
 	public Integer getStatusCode() {
 		return statusCode;
 	}
+	
+	/**
+	 * True for any 2xx, including the 206 of a ranged GET. 
+	 */
+	public boolean isOk() {
+		return statusCode != null && statusCode >= 200 && statusCode < 300;
+	}
+	
+	public String getMethod() {
+		return method;
+	}
+	
+	public String getContentType() {
+		return contentType;
+	}
+	
+	/**
+	 * Size of the whole resource in bytes, or -1 when the server did not say. 
+	 */
+	public long getContentLength() {
+		return contentLength;
+	}
+	
+	private static long contentLengthOf(HttpURLConnection connection) {
+		// a 206 gives the full size after the slash: "bytes 0-0/12345" 
+		String range = connection.getHeaderField("Content-Range");
+		if (range != null && range.indexOf('/') >= 0) {
+			try {
+				return Long.parseLong(range.substring(range.indexOf('/') + 1).trim());
+			} catch (NumberFormatException e) {
+				return -1;
+			}
+		}
+		return connection.getContentLengthLong();
+	}
+	
+	private void release(HttpURLConnection connection) {
+		boolean bodyIsTiny = "HEAD".equals(method) || (statusCode != null && statusCode == HttpURLConnection.HTTP_PARTIAL);
+		if (!bodyIsTiny || !drain(connection)) connection.disconnect();
+	}
+	
+	// Reads what is left of a HEAD or one byte body and closes it, leaving the socket to be kept alive. 
+	private static boolean drain(HttpURLConnection connection) {
+		try {
+			InputStream in = (connection.getResponseCode() >= 400) ? connection.getErrorStream() : connection.getInputStream();
+			if (in == null) return true;
+			try {
+				for (int i = 0; i <= MAX_DRAIN_BYTES; i++) {
+					if (in.read() < 0) return true;
+				}
+				return false;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
 }
@@ -16,20 +16,36 @@ import java.util.concurrent.Callable;
 
 import com.sseltzer.selenium.framework.error.exceptions.PublicException;
 
+/*
+ * With `headFirst` the task only verifies the url: it sends a HEAD, and if the server will not 
+ * answer HEAD (405 or 501) a GET for the first byte only (`Range: bytes=0-0`). Either way the 
+ * connection comes back with its body unread; wrap it in an HttpResponseObject to read the 
+ * status and let the connection go without downloading anything. 
+ * */
 public final class LoaderTaskThread implements Callable<HttpURLConnection> {
+	private static final int TIMEOUT_MILLIS = 60000;
+	
 	private String testUrl;
+	private boolean headFirst;
 
 	public LoaderTaskThread(String testUrl) {
+		this(testUrl, false);
+	}
+	
+	public LoaderTaskThread(String testUrl, boolean headFirst) {
 		this.testUrl = testUrl;
+		this.headFirst = headFirst;
 	}
 
 	public HttpURLConnection call() {
 		try {
 			URL url = new URL(this.testUrl);
-			HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-			connection.setRequestMethod("GET");
-			connection.connect();
-			return connection;
+			if (!headFirst) return connect(url, "GET", false);
+			HttpURLConnection connection = connect(url, "HEAD", false);
+			int status = connection.getResponseCode();
+			if (status != HttpURLConnection.HTTP_BAD_METHOD && status != HttpURLConnection.HTTP_NOT_IMPLEMENTED) return connection;
+			connection.disconnect();
+			return connect(url, "GET", true);
 		} catch (MalformedURLException e) {
 			throw new PublicException(e);
 		} catch (ProtocolException e) {
@@ -38,4 +54,17 @@ public final class LoaderTaskThread implements Callable<HttpURLConnection> {
 			throw new PublicException(e);
 		}
 	}
+	
+	private static HttpURLConnection connect(URL url, String method, boolean firstByteOnly) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setRequestMethod(method);
+		connection.setConnectTimeout(TIMEOUT_MILLIS);
+		connection.setReadTimeout(TIMEOUT_MILLIS);
+		if (firstByteOnly) {
+			connection.setRequestProperty("Range", "bytes=0-0");
+			connection.setRequestProperty("Accept-Encoding", "identity");
+		}
+		connection.connect();
+		return connection;
+	}
 }
@@ -0,0 +1,203 @@
+package com.sseltzer.selenium.internal.test.tests.utility;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sseltzer.selenium.framework.error.exceptions.FrameworkException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ *
+ *
+ * LoopbackServer.java 
+ *
+ * A throwaway HTTP server on a random loopback port for tests and benchmarks that need a real 
+ * server without depending on the network. Paths map to a canned Response (status, body, 
+ * headers); paths that are not mapped go to the fallback Responder, or 404 without one. Every 
+ * request is logged as "METHOD /path" (plus " <Range>" when one was sent) before it is answered. 
+ *
+ * ##Usage: 
+ *
+ *     LoopbackServer server = new LoopbackServer();
+ *     server.page("/", "<a href=\"/gone\">gone</a>");
+ *     server.status("/gone", 404);
+ *     server.start();
+ *     try {
+ *         new Crawler().crawl(server.url("/"));
+ *     } finally {
+ *         server.stop();
+ *     }
+ *
+ */
+public class LoopbackServer {
+	
+	private final Map<String, Object> routes = new ConcurrentHashMap<String, Object>();
+	private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+	private volatile Responder fallback;
+	private volatile long latencyMillis;
+	private HttpServer server;
+	private ExecutorService workers;
+	
+	//
+	// What a path answers with. A null body sends no body at all (the HEAD/404 case); a body 
+	// without an explicit Content-Type is served as UTF-8 HTML. 
+	//
+	public static class Response {
+	
+		private final int status;
+		private final String body;
+		private final Map<String, String> headers = new LinkedHashMap<String, String>();
+	
+		public Response(int status, String body) {
+			this.status = status;
+			this.body = body;
+		}
+	
+		public static Response html(String body) {
+			return new Response(200, "<html><body>" + body + "</body></html>");
+		}
+	
+		public Response header(String name, String value) {
+			headers.put(name, value);
+			return this;
+		}
+	}
+	
+	//
+	// Answers requests no fixed path matches. Returning null sends a 404. 
+	//
+	public interface Responder {
+		public Response respond(HttpExchange exchange, String path) throws IOException;
+	}
+	
+	/**
+	 * Serves body wrapped in html/body tags with a 200. 
+	 */
+	public Response page(String path, String body) {
+		return respond(path, Response.html(body));
+	}
+	
+	/**
+	 * Answers path with a bare status code and no body. 
+	 */
+	public Response status(String path, int status) {
+		return respond(path, new Response(status, null));
+	}
+	
+	public Response respond(String path, Response response) {
+		routes.put(path, response);
+		return response;
+	}
+	
+	/**
+	 * Hands path to a raw handler, for responses a canned Response cannot express (a body that 
+	 * stalls halfway, for one). The handler must close the exchange. 
+	 */
+	public void handle(String path, HttpHandler handler) {
+		routes.put(path, handler);
+	}
+	
+	public void setFallback(Responder responder) {
+		fallback = responder;
+	}
+	
+	/**
+	 * Delays every answer, standing in for a remote server's latency. 
+	 */
+	public void setLatency(long millis) {
+		latencyMillis = millis;
+	}
+	
+	public LoopbackServer start() {
+		try {
+			server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+		} catch (IOException e) {
+			throw new FrameworkException("Could not start loopback server", e);
+		}
+		workers = Executors.newCachedThreadPool();
+		server.setExecutor(workers);
+		server.createContext("/", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				dispatch(exchange);
+			}
+		});
+		server.start();
+		return this;
+	}
+	
+	public void stop() {
+		if (server == null) return;
+		server.stop(0);
+		workers.shutdownNow();
+		server = null;
+	}
+	
+	public String base() {
+		return "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+	
+	public String url(String path) {
+		return base() + path;
+	}
+	
+	public List<String> getRequests() {
+		return requests;
+	}
+	
+	public int getRequestCount() {
+		return requests.size();
+	}
+	
+	private void dispatch(HttpExchange exchange) throws IOException {
+		String path = exchange.getRequestURI().getPath();
+		String range = exchange.getRequestHeaders().getFirst("Range");
+		requests.add(exchange.getRequestMethod() + " " + path + ((range == null) ? "" : " " + range));
+		pause(latencyMillis);
+		Object route = routes.get(path);
+		if (route instanceof HttpHandler) {
+			((HttpHandler) route).handle(exchange);
+			return;
+		}
+		Response response = (Response) route;
+		if (response == null && fallback != null) response = fallback.respond(exchange, path);
+		if (response == null) response = new Response(404, null);
+		send(exchange, response);
+	}
+	
+	private static void send(HttpExchange exchange, Response response) throws IOException {
+		for (Map.Entry<String, String> header : response.headers.entrySet())
+			exchange.getResponseHeaders().add(header.getKey(), header.getValue());
+		if (response.body == null || exchange.getRequestMethod().equals("HEAD")) {
+			exchange.sendResponseHeaders(response.status, -1);
+			exchange.close();
+			return;
+		}
+		byte[] body = response.body.getBytes("UTF-8");
+		if (!exchange.getResponseHeaders().containsKey("Content-Type"))
+			exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+		exchange.sendResponseHeaders(response.status, body.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(body);
+		out.close();
+	}
+	
+	public static void pause(long millis) {
+		if (millis <= 0) return;
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
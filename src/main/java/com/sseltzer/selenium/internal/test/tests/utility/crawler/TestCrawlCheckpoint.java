@@ -0,0 +1,118 @@
+package com.sseltzer.selenium.internal.test.tests.utility.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.sseltzer.selenium.framework.utility.crawler.CrawlCheckpoint;
+
+/**
+ *
+ *
+ * TestCrawlCheckpoint.java
+ *
+ */
+public class TestCrawlCheckpoint {
+	
+	private static final String SEED = "http://www.valpak.com/";
+
+	@Test
+	public void testReplayRebuildsFrontierAndResults() throws IOException {
+		File directory = Files.createTempDirectory("crawl-checkpoint").toFile();
+		CrawlCheckpoint journal = CrawlCheckpoint.create(directory, SEED, 60000);
+		journal.seen(SEED);
+		journal.queued(SEED + "a", 1);
+		journal.queued(SEED + "b", 1);
+		journal.done(SEED);
+		journal.visited(SEED + "a");
+		journal.queued(SEED + "a/1", 2);
+		journal.done(SEED + "a");
+		journal.broken(SEED + "b", "Connection\treset\nby peer");
+		journal.done(SEED + "b");
+		journal.queued(SEED + "c", 1);
+		journal.close();
+		
+		CrawlCheckpoint.Recovered state = CrawlCheckpoint.open(directory, 60000).replay();
+		assertTrue(state.isSeedFinished());
+		assertEquals(Arrays.asList(SEED, SEED + "a", SEED + "b", SEED + "a/1", SEED + "c"), state.getSeen());
+		assertEquals(Arrays.asList(SEED + "a/1", SEED + "c"), Arrays.asList(state.getPending().keySet().toArray()));
+		assertEquals(Integer.valueOf(2), state.getPending().get(SEED + "a/1"));
+		assertEquals(Arrays.asList(SEED + "a"), state.getVisited());
+		assertEquals("Connection reset by peer", state.getBroken().get(0)[1]);
+		assertEquals(2, state.getFinished());
+	}
+	
+	@Test
+	public void testReopenedJournalAppendsAndSkipsTornLine() throws IOException {
+		File directory = Files.createTempDirectory("crawl-checkpoint").toFile();
+		CrawlCheckpoint journal = CrawlCheckpoint.create(directory, SEED, 60000);
+		journal.done(SEED);
+		// a page finished before the Q line of the page that found it was written 
+		journal.done(SEED + "fast");
+		journal.queued(SEED + "fast", 1);
+		journal.close();
+		FileWriter torn = new FileWriter(new File(directory, "journal.log"), true);
+		torn.write("Q\t1");
+		torn.close();
+		
+		CrawlCheckpoint reopened = CrawlCheckpoint.open(directory, 60000);
+		assertEquals(SEED, reopened.getSeed());
+		reopened.queued(SEED + "later", 1);
+		reopened.close();
+		
+		CrawlCheckpoint.Recovered state = CrawlCheckpoint.open(directory, 60000).replay();
+		assertEquals(1, state.getFinished());
+		assertEquals(Arrays.asList(SEED + "later"), Arrays.asList(state.getPending().keySet().toArray()));
+	}
+	
+	@Test
+	public void testTornUrlIsNotReplayedAsAShorterUrl() throws IOException {
+		File directory = Files.createTempDirectory("crawl-checkpoint").toFile();
+		CrawlCheckpoint journal = CrawlCheckpoint.create(directory, SEED, 60000);
+		journal.done(SEED);
+		journal.queued(SEED + "a", 1);
+		journal.close();
+		FileWriter torn = new FileWriter(new File(directory, "journal.log"), true);
+		torn.write("Q\t1\t" + SEED + "produ");
+		torn.close();
+		
+		CrawlCheckpoint.Recovered state = CrawlCheckpoint.open(directory, 60000).replay();
+		assertEquals(Arrays.asList(SEED + "a"), Arrays.asList(state.getPending().keySet().toArray()));
+		assertEquals(Arrays.asList(SEED + "a"), state.getSeen());
+	}
+	
+	@Test
+	public void testPagesFetchedAgainAfterRestartAreReportedOnce() throws IOException {
+		File directory = Files.createTempDirectory("crawl-checkpoint").toFile();
+		CrawlCheckpoint journal = CrawlCheckpoint.create(directory, SEED, 60000);
+		journal.seen(SEED);
+		journal.queued(SEED + "a", 1);
+		journal.done(SEED);
+		// died after fetching /a, before finishing it 
+		journal.visited(SEED + "a");
+		journal.broken(SEED + "a", "500");
+		journal.close();
+		
+		CrawlCheckpoint.Recovered state = CrawlCheckpoint.open(directory, 60000).replay();
+		assertEquals(Arrays.asList(SEED + "a"), Arrays.asList(state.getPending().keySet().toArray()));
+		assertTrue(state.getVisited().isEmpty());
+		assertTrue(state.getBroken().isEmpty());
+		
+		CrawlCheckpoint resumed = CrawlCheckpoint.open(directory, 60000);
+		resumed.visited(SEED + "a");
+		resumed.broken(SEED + "a", "404");
+		resumed.done(SEED + "a");
+		resumed.close();
+		state = CrawlCheckpoint.open(directory, 60000).replay();
+		assertEquals(Arrays.asList(SEED + "a"), state.getVisited());
+		assertEquals(1, state.getBroken().size());
+		assertEquals("404", state.getBroken().get(0)[1]);
+	}
+}
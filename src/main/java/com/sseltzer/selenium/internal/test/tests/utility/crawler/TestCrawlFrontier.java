@@ -0,0 +1,130 @@
+package com.sseltzer.selenium.internal.test.tests.utility.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.sseltzer.selenium.framework.utility.crawler.CrawlFrontier;
+import com.sseltzer.selenium.framework.utility.crawler.CrawlPriority;
+import com.sseltzer.selenium.framework.utility.crawler.FrontierEntry;
+import com.sseltzer.selenium.framework.utility.crawler.UrlInterner;
+
+/**
+ *
+ *
+ * TestCrawlFrontier.java
+ *
+ */
+public class TestCrawlFrontier {
+
+	@Test
+	public void testShallowestUrlsComeOutFirst() throws InterruptedException {
+		CrawlFrontier frontier = new CrawlFrontier();
+		frontier.offer("/a/b/c", 3);
+		frontier.offer("/a", 1);
+		frontier.offer("/a/b", 2);
+		frontier.offer("/b", 1);
+		List<String> order = new ArrayList<String>();
+		FrontierEntry entry;
+		while ((entry = frontier.take()) != null) {
+			order.add(entry.getUrl());
+			frontier.done();
+		}
+		assertEquals(Arrays.asList("/a", "/b", "/a/b", "/a/b/c"), order);
+	}
+	
+	@Test
+	public void testMostImportantUrlsComeOutFirst() throws InterruptedException {
+		CrawlFrontier frontier = new CrawlFrontier(new CrawlPriority(), new UrlInterner());
+		frontier.markSeen("/");
+		frontier.offer("/a", 1);
+		frontier.offer("/b", 1);
+		frontier.offer("/c", 1);
+		frontier.offer("/a/deep", 3, true);
+		frontier.offer("/d", 2);
+		// four links lift /c by a click; broken last time makes up for /a/deep's extra two; a second, 
+		// shallower link puts /d at depth 1 and ahead of /a and /b 
+		for (int i = 0; i < 3; i++) assertFalse(frontier.offer("/c", 2));
+		assertFalse(frontier.offer("/d", 1));
+		assertEquals(5, frontier.size());
+		
+		List<String> order = new ArrayList<String>();
+		FrontierEntry entry;
+		while ((entry = frontier.take()) != null) {
+			order.add(entry.getUrl() + "@" + entry.getDepth());
+			frontier.done();
+		}
+		assertEquals(Arrays.asList("/c@1", "/a/deep@3", "/d@1", "/a@1", "/b@1"), order);
+		assertEquals(0, frontier.size());
+	}
+	
+	@Test
+	public void testCloseCountsWhatWasLeft() throws InterruptedException {
+		CrawlFrontier frontier = new CrawlFrontier(new CrawlPriority(), new UrlInterner());
+		frontier.offer("/a", 1);
+		frontier.offer("/b", 1);
+		frontier.offer("/b", 1);
+		frontier.offer("/c", 1);
+		assertEquals("/b", frontier.take().getUrl());
+		frontier.close();
+		assertEquals(2, frontier.droppedCount());
+		assertNull(frontier.take());
+	}
+	
+	@Test
+	public void testUrlIsOnlyAcceptedOnce() throws InterruptedException {
+		CrawlFrontier frontier = new CrawlFrontier();
+		frontier.markSeen("/");
+		assertFalse(frontier.offer("/", 1));
+		assertTrue(frontier.offer("/a", 1));
+		assertFalse(frontier.offer("/a", 2));
+		assertEquals(1, frontier.size());
+	}
+	
+	@Test
+	public void testTakeWaitsWhileAnotherWorkerIsBusy() throws InterruptedException {
+		final CrawlFrontier frontier = new CrawlFrontier();
+		frontier.offer("/", 0);
+		assertEquals("/", frontier.take().getUrl());
+		final List<String> taken = new ArrayList<String>();
+		final CountDownLatch finished = new CountDownLatch(1);
+		new Thread(new Runnable() {
+			public void run() {
+				try {
+					FrontierEntry entry = frontier.take();
+					taken.add(entry.getUrl());
+					frontier.done();
+					assertNull(frontier.take());
+					finished.countDown();
+				} catch (InterruptedException e) {
+				}
+			}
+		}).start();
+		// the first worker is still "on" the seed, so the second has to wait for its links 
+		assertFalse(finished.await(100, TimeUnit.MILLISECONDS));
+		frontier.offer("/a", 1);
+		frontier.done();
+		assertTrue(finished.await(1, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("/a"), taken);
+	}
+	
+	@Test
+	public void testCloseReleasesWaitingWorkers() throws InterruptedException {
+		CrawlFrontier frontier = new CrawlFrontier();
+		frontier.offer("/", 0);
+		frontier.offer("/a", 1);
+		frontier.take();
+		frontier.close();
+		assertNull(frontier.take());
+		assertFalse(frontier.offer("/b", 1));
+	}
+}
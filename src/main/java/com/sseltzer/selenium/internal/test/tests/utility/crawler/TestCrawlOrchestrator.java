@@ -0,0 +1,117 @@
+package com.sseltzer.selenium.internal.test.tests.utility.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.sseltzer.selenium.framework.environment.enums.EnvironmentConfig;
+import com.sseltzer.selenium.framework.utility.crawler.CrawlDiff;
+import com.sseltzer.selenium.framework.utility.crawler.CrawlOrchestrator;
+import com.sseltzer.selenium.framework.utility.crawler.Crawler;
+import com.sseltzer.selenium.framework.utility.crawler.CrawlerConfig;
+import com.sseltzer.selenium.internal.test.tests.utility.LoopbackServer;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ *
+ *
+ * TestCrawlOrchestrator.java
+ * 
+ * Crawls two loopback "environments" serving the same three pages, except that one of them 
+ * 404s on /b and both 404 on /c. 
+ *
+ */
+public class TestCrawlOrchestrator {
+	
+	private final List<LoopbackServer> servers = new ArrayList<LoopbackServer>();
+	
+	private String startEnvironment(boolean bIsBroken) {
+		LoopbackServer server = new LoopbackServer();
+		for (String path : new String[] { "/", "/a", "/b" }) 
+			server.page(path, "<a href=\"/a\">a</a><a href=\"/b\">b</a><a href=\"/c\">c</a>");
+		if (bIsBroken) server.status("/b", 404);
+		servers.add(server.start());
+		return server.base();
+	}
+	
+	@After
+	public void stopServers() {
+		for (LoopbackServer server : servers) server.stop();
+	}
+
+	@Test
+	public void testDiffSeparatesEnvironmentProblemsFromBadLinks() {
+		CrawlOrchestrator orchestrator = new CrawlOrchestrator();
+		orchestrator.addTarget(EnvironmentConfig.TST1, startEnvironment(true));
+		orchestrator.addTarget(EnvironmentConfig.PRD1, startEnvironment(false));
+		orchestrator.addSeed("/");
+		orchestrator.setWorkerThreads(2);
+		CrawlDiff diff = orchestrator.run();
+		
+		assertTrue(orchestrator.getFailures().isEmpty());
+		assertEquals(1, diff.getDifferences().size());
+		CrawlDiff.Entry differs = diff.getDifferences().get(0);
+		assertEquals("/b", differs.getUrl());
+		assertEquals("404", differs.getBroken().get(EnvironmentConfig.TST1));
+		assertEquals(EnumSet.of(EnvironmentConfig.PRD1), differs.getOk());
+		assertEquals(1, diff.getBrokenEverywhere().size());
+		assertEquals("/c", diff.getBrokenEverywhere().get(0).getUrl());
+	}
+	
+	@Test
+	public void testEveryWorkerGetsAThreadWhateverTheWorkerThreads() {
+		final AtomicInteger inFlight = new AtomicInteger();
+		final AtomicInteger peak = new AtomicInteger();
+		LoopbackServer server = new LoopbackServer();
+		server.page("/", "<a href=\"/1\">1</a><a href=\"/2\">2</a><a href=\"/3\">3</a>");
+		server.setFallback(new LoopbackServer.Responder() {
+			public LoopbackServer.Response respond(HttpExchange exchange, String path) {
+				int now = inFlight.incrementAndGet();
+				while (peak.get() < now && !peak.compareAndSet(peak.get(), now)) ;
+				LoopbackServer.pause(300);
+				inFlight.decrementAndGet();
+				return LoopbackServer.Response.html(path);
+			}
+		});
+		servers.add(server.start());
+		CrawlOrchestrator orchestrator = new CrawlOrchestrator();
+		orchestrator.addTarget(EnvironmentConfig.TST1, server.base());
+		orchestrator.addTarget(EnvironmentConfig.PRD1, server.base());
+		orchestrator.addSeed("/");
+		orchestrator.setWorkerThreads(1);
+		orchestrator.setCrawlerFactory(new CrawlOrchestrator.CrawlerFactory() {
+			public Crawler create(EnvironmentConfig environment, String seed) {
+				return new Crawler(new CrawlerConfig.Builder().workers(3).build());
+			}
+		});
+		orchestrator.run();
+		
+		assertTrue(orchestrator.getFailures().isEmpty());
+		// both crawls' pages at once (6 at best), not one page at a time on a single thread 
+		assertTrue("peak " + peak.get(), peak.get() > 3);
+	}
+	
+	@Test
+	public void testNotCrawledIsNotHealthy() {
+		CrawlDiff diff = new CrawlDiff();
+		List<HashMap<String, String>> none = new ArrayList<HashMap<String, String>>();
+		HashMap<String, String> broken = new HashMap<String, String>();
+		broken.put("url", "http://dev1.valpak.com/coupons");
+		broken.put("code", "500");
+		diff.add(EnvironmentConfig.DEV1, "http://dev1.valpak.com/", Arrays.asList("http://dev1.valpak.com/coupons"), Arrays.asList(broken));
+		diff.add(EnvironmentConfig.PRD1, "http://www.valpak.com", Arrays.asList("http://www.valpak.com/"), none);
+		assertEquals(0, diff.getDifferences().size());
+		CrawlDiff.Entry coupons = diff.getBrokenEverywhere().get(0);
+		assertEquals("/coupons", coupons.getUrl());
+		assertEquals(EnumSet.of(EnvironmentConfig.PRD1), coupons.getNotCrawled());
+	}
+}
@@ -0,0 +1,94 @@
+package com.sseltzer.selenium.internal.test.tests.utility.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.sseltzer.selenium.framework.utility.crawler.CrawlCheckpoint;
+import com.sseltzer.selenium.framework.utility.crawler.CrawlResultSink;
+import com.sseltzer.selenium.framework.utility.crawler.Crawler;
+import com.sseltzer.selenium.framework.utility.crawler.CrawlerConfig;
+import com.sseltzer.selenium.internal.test.tests.utility.LoopbackServer;
+
+/**
+ *
+ *
+ * TestCrawlResultSink.java
+ *
+ */
+public class TestCrawlResultSink {
+	
+	private static final String PAGE = "http://www.valpak.com/coupons";
+
+	@Test
+	public void testJsonLinesAreReadableBeforeClose() throws IOException {
+		File file = new File(Files.createTempDirectory("crawl-results").toFile(), "results.jsonl");
+		CrawlResultSink sink = CrawlResultSink.create(file.getPath());
+		sink.record(PAGE, 200, 35, 1, null);
+		sink.record(PAGE + "?q=\"a\"", 0, 60000, 2, "Read timed out\n");
+		sink.flush();
+		assertEquals(Arrays.asList(
+				"{\"url\":\"" + PAGE + "\",\"status\":200,\"latencyMillis\":35,\"depth\":1,\"error\":null}",
+				"{\"url\":\"" + PAGE + "?q=\\\"a\\\"\",\"status\":0,\"latencyMillis\":60000,\"depth\":2,\"error\":\"Read timed out\\n\"}"), 
+				Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+		sink.close();
+	}
+	
+	@Test
+	public void testCsvKeepsOneHeaderWhenAppending() throws IOException {
+		File file = new File(Files.createTempDirectory("crawl-results").toFile(), "results.csv");
+		CrawlResultSink sink = CrawlResultSink.create(file.getPath());
+		sink.record(PAGE, 404, 12, 1, "HTTP 404");
+		sink.close();
+		sink = CrawlResultSink.open(file.getPath());
+		sink.record(PAGE + "?a=1,2", 200, 8, 2, null);
+		sink.close();
+		assertEquals(Arrays.asList(
+				"url,status,latencyMillis,depth,error",
+				PAGE + ",404,12,1,HTTP 404",
+				"\"" + PAGE + "?a=1,2\",200,8,2,"), 
+				Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+	}
+	
+	@Test
+	public void testResumeWithoutResultsInMemoryOnlyStreams() throws IOException {
+		LoopbackServer server = new LoopbackServer();
+		server.page("/", "<a href=\"/a\">a</a><a href=\"/b\">b</a>");
+		server.page("/b", "b");
+		server.start();
+		try {
+			String seed = server.url("/");
+			File directory = Files.createTempDirectory("crawl-results").toFile();
+			File checkpointDir = new File(directory, "checkpoint");
+			CrawlCheckpoint journal = CrawlCheckpoint.create(checkpointDir, seed, 60000);
+			journal.seen(seed);
+			journal.queued(seed + "a", 1);
+			journal.queued(seed + "b", 1);
+			journal.visited(seed);
+			journal.done(seed);
+			journal.broken(seed + "a", "HTTP 404");
+			journal.done(seed + "a");
+			journal.close();
+			
+			File results = new File(directory, "results.csv");
+			Crawler crawler = new Crawler(new CrawlerConfig.Builder().keepResultsInMemory(false).resultSink(results.getPath()).build());
+			crawler.resume(checkpointDir.getPath());
+			
+			assertTrue(crawler.getVisitedUrls().isEmpty());
+			assertTrue(crawler.getBrokenUrls().isEmpty());
+			List<String> lines = Files.readAllLines(results.toPath(), StandardCharsets.UTF_8);
+			assertEquals(2, lines.size());
+			assertTrue(lines.get(1), lines.get(1).startsWith(seed + "b,200,"));
+		} finally {
+			server.stop();
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package com.sseltzer.selenium.internal.test.tests.utility.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sseltzer.selenium.framework.utility.crawler.CrawledPage;
+import com.sseltzer.selenium.framework.utility.crawler.HeadFetcher;
+import com.sseltzer.selenium.framework.utility.crawler.StreamingFetcher;
+import com.sseltzer.selenium.framework.verification.support.HttpResponseObject;
+import com.sseltzer.selenium.internal.test.tests.utility.LoopbackServer;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ *
+ *
+ * TestHeadFetcher.java
+ * 
+ * Runs link verification against a loopback server that logs each request's method and Range. 
+ * /doc.pdf answers HEAD, /nohead.pdf refuses it (405) and serves ranged GETs, /missing.pdf is a 
+ * 404 and /page is a small HTML page. 
+ *
+ */
+public class TestHeadFetcher {
+	
+	private static final int PDF_SIZE = 5 * 1024 * 1024;
+	
+	private final LoopbackServer server = new LoopbackServer();
+	private String base;
+	private List<String> requests;
+
+	@Before
+	public void startServer() {
+		server.page("/page", "<a href=\"/doc.pdf\">doc</a>");
+		server.status("/missing.pdf", 404);
+		server.setFallback(new LoopbackServer.Responder() {
+			public LoopbackServer.Response respond(HttpExchange exchange, String path) {
+				String method = exchange.getRequestMethod();
+				if (method.equals("HEAD") && path.equals("/nohead.pdf")) return new LoopbackServer.Response(405, null);
+				if (method.equals("HEAD")) 
+					return new LoopbackServer.Response(200, null)
+						.header("Content-Type", "application/pdf")
+						.header("Content-Length", Integer.toString(PDF_SIZE));
+				if (exchange.getRequestHeaders().getFirst("Range") != null) 
+					return new LoopbackServer.Response(206, "%")
+						.header("Content-Type", "application/pdf")
+						.header("Content-Range", "bytes 0-0/" + PDF_SIZE);
+				return new LoopbackServer.Response(500, null);
+			}
+		});
+		server.start();
+		base = server.base();
+		requests = server.getRequests();
+	}
+	
+	@After
+	public void stopServer() {
+		server.stop();
+	}
+
+	@Test
+	public void testHeadIsEnoughWhenSupported() {
+		HttpResponseObject response = HttpResponseObject.verify(base + "/doc.pdf");
+		assertTrue(response.isOk());
+		assertEquals("application/pdf", response.getContentType());
+		assertEquals(PDF_SIZE, response.getContentLength());
+		assertEquals(Arrays.asList("HEAD /doc.pdf"), requests);
+	}
+	
+	@Test
+	public void testFallsBackToFirstByteWhenHeadIsRefused() throws IOException {
+		CrawledPage page = new HeadFetcher().fetch(base + "/nohead.pdf", null);
+		assertEquals(200, page.getStatusCode());
+		assertFalse(page.isBroken());
+		assertEquals(Arrays.asList("HEAD /nohead.pdf", "GET /nohead.pdf bytes=0-0"), requests);
+		assertTrue(new HeadFetcher().fetch(base + "/missing.pdf", null).isBroken());
+	}
+	
+	@Test
+	public void testOnlyLikelyAssetsSkipTheGet() throws IOException {
+		assertTrue(HeadFetcher.isNonHtml(base + "/files/Report.PDF?v=2"));
+		assertFalse(HeadFetcher.isNonHtml(base + "/coupons.pdf/tampa"));
+		assertFalse(HeadFetcher.isNonHtml(base + "/coupons"));
+		StreamingFetcher fetcher = new StreamingFetcher();
+		CrawledPage page = fetcher.fetch(base + "/page", null);
+		fetcher.close();
+		assertEquals(Collections.singletonList(base + "/doc.pdf"), page.getLinks());
+	}
+}
@@ -0,0 +1,62 @@
+package com.sseltzer.selenium.internal.test.tests.utility.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URL;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.sseltzer.selenium.framework.utility.crawler.LinkExtractor;
+import com.sseltzer.selenium.framework.utility.crawler.UrlFingerprint;
+
+/**
+ *
+ *
+ * TestLinkExtractor.java
+ *
+ */
+public class TestLinkExtractor {
+	
+	private static final String PAGE = "http://www.valpak.com/coupons/";
+	
+	private LinkExtractor extract(String html) throws IOException {
+		return new LinkExtractor(new URL(PAGE)).extract(new StringReader(html));
+	}
+
+	@Test
+	public void testFindsAnchorsOnly() throws IOException {
+		String html = "<html><head><link href=\"/style.css\"><script>var a = '<a href=\"/nope\">';</script></head>"
+				+ "<body><!-- <a href=\"/commented\"> --><A class=x HREF='/one?a=1&amp;b=2'>One</A>"
+				+ "<a name=top><a href=two>Two</a><img src=\"/i.png\"><a href = \" http://www.facebook.com/share \" >"
+				+ "<style>a { content: \"<a href='/css'>\" }</style></body></html>";
+		assertEquals(Arrays.asList(
+				"http://www.valpak.com/one?a=1&b=2", 
+				"http://www.valpak.com/coupons/two", 
+				"http://www.facebook.com/share"), extract(html).getLinks());
+	}
+	
+	@Test
+	public void testResolvesAgainstBase() throws IOException {
+		String html = "<head><base href=\"http://www.valpak.com/deals/\"><base href=\"/ignored/\"></head><a href=\"tampa\">";
+		assertEquals(Arrays.asList("http://www.valpak.com/deals/tampa"), extract(html).getLinks());
+	}
+	
+	@Test
+	public void testErrorPageAndHash() throws IOException {
+		assertTrue(extract("Application Error").isErrorPage());
+		assertFalse(extract("404 error, and then some").isErrorPage());
+		String html = "<a href=\"/x\">x</a>";
+		assertEquals(UrlFingerprint.of(html), extract(html).getContentHash());
+	}
+	
+	@Test
+	public void testToleratesTruncatedMarkup() throws IOException {
+		assertEquals(Arrays.asList("http://www.valpak.com/a"), extract("<a href=\"/a\"><a href=\"/b").getLinks());
+		assertEquals(0, extract("<!-- <a href=\"/a\">").getLinks().size());
+	}
+}
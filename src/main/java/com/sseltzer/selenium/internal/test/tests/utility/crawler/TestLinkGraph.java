@@ -0,0 +1,124 @@
+package com.sseltzer.selenium.internal.test.tests.utility.crawler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.sseltzer.selenium.framework.utility.crawler.CrawlResults;
+import com.sseltzer.selenium.framework.utility.crawler.Crawler;
+import com.sseltzer.selenium.framework.utility.crawler.CrawlerConfig;
+import com.sseltzer.selenium.framework.utility.crawler.LinkGraph;
+import com.sseltzer.selenium.framework.utility.crawler.UrlInterner;
+import com.sseltzer.selenium.internal.test.tests.utility.LoopbackServer;
+
+/**
+ *
+ *
+ * TestLinkGraph.java
+ *
+ */
+public class TestLinkGraph {
+	
+	private static final String HOST = "http://www.valpak.com/";
+
+	@Test
+	public void testAnalytics() {
+		// root -> a, b; a -> b, c (twice), a; b -> c; d is never linked to 
+		UrlInterner ids = new UrlInterner();
+		for (String page : new String[] { "", "a", "b", "c", "d" }) ids.intern(HOST + page);
+		LinkGraph.Recorder recorder = new LinkGraph.Recorder();
+		recorder.record(0, new int[] { 2, 1 }, 2);
+		recorder.record(1, new int[] { 3, 2, 3, 1, 99 }, 4);
+		recorder.record(2, new int[] { 3 }, 1);
+		LinkGraph graph = LinkGraph.build(ids, 0, recorder);
+		
+		assertEquals(5, graph.nodeCount());
+		assertEquals(5, graph.edgeCount());
+		assertArrayEquals(new int[] { 2, 3 }, graph.getOutlinks(1));
+		assertEquals(Arrays.asList(HOST + "a", HOST + "b"), graph.getReferrers(HOST + "c"));
+		assertEquals(Arrays.asList(HOST + "d"), graph.getOrphans());
+		assertEquals(Arrays.asList(HOST + "d", HOST + "e"), graph.getOrphans(Arrays.asList(HOST + "a", HOST + "d", HOST + "e")));
+		assertArrayEquals(new int[] { 1, 2, 1 }, graph.getDepthDistribution());
+		assertEquals(-1, graph.getDepth(4));
+		assertEquals(Arrays.asList(HOST + "b", HOST + "c", HOST + "a"), graph.getMostLinked(3));
+	}
+	
+	@Test
+	public void testMillionsOfEdgesStaySmallAndSurviveSaving() throws IOException {
+		int pages = 200000;
+		UrlInterner ids = new UrlInterner();
+		for (int i = 0; i < pages; i++) ids.intern(HOST + "coupons/" + i);
+		LinkGraph.Recorder recorder = new LinkGraph.Recorder();
+		int[] links = new int[10];
+		for (int i = 0; i < pages; i++) {
+			// a header of popular pages plus a neighbourhood 
+			for (int j = 0; j < 5; j++) links[j] = j + 1;
+			for (int j = 5; j < 10; j++) links[j] = (i + j * 7) % pages;
+			recorder.record(i, links, links.length);
+		}
+		LinkGraph graph = LinkGraph.build(ids, 0, recorder);
+		assertTrue(graph.edgeCount() > 1900000);
+		assertTrue("edge bytes: " + graph.edgeBytes(), graph.edgeBytes() < graph.edgeCount() * 2);
+		
+		File file = File.createTempFile("links", ".graph");
+		try {
+			graph.save(file);
+			LinkGraph loaded = LinkGraph.load(file);
+			assertEquals(graph.edgeCount(), loaded.edgeCount());
+			assertArrayEquals(graph.getOutlinks(12345), loaded.getOutlinks(12345));
+			assertEquals(HOST + "coupons/1", loaded.getMostLinked(1).get(0));
+			assertEquals(pages - 1, loaded.getInDegree(1));
+			assertTrue("file bytes: " + file.length(), file.length() < 20 * 1024 * 1024);
+		} finally {
+			file.delete();
+		}
+	}
+	
+	@Test
+	public void testUrlsOver64KbSurviveSaving() throws IOException {
+		StringBuilder query = new StringBuilder(HOST + "?track=");
+		while (query.length() < 70000) query.append("0123456789");
+		UrlInterner ids = new UrlInterner();
+		ids.intern(HOST);
+		ids.intern(query.toString());
+		LinkGraph.Recorder recorder = new LinkGraph.Recorder();
+		recorder.record(0, new int[] { 1 }, 1);
+		
+		File file = File.createTempFile("links", ".graph");
+		try {
+			LinkGraph.build(ids, 0, recorder).save(file);
+			LinkGraph loaded = LinkGraph.load(file);
+			assertEquals(Arrays.asList(HOST), loaded.getReferrers(query.toString()));
+		} finally {
+			file.delete();
+		}
+	}
+	
+	@Test
+	public void testCrawlRecordsReferrersOfBrokenLinks() throws IOException {
+		LoopbackServer server = new LoopbackServer();
+		server.page("/", "<a href=\"/a\">a</a><a href=\"/b#top\">b</a>");
+		server.page("/a", "<a href=\"/gone\">gone</a><a href=\"/b\">b</a>");
+		server.page("/b", "<a href=\"/gone\">gone</a>");
+		server.start();
+		try {
+			String base = server.base();
+			Crawler crawler = new Crawler(new CrawlerConfig.Builder().recordLinkGraph().build());
+			CrawlResults results = crawler.crawl(base + "/");
+			
+			assertEquals(Arrays.asList(base + "/a", base + "/b"), results.getReferrers(base + "/gone"));
+			LinkGraph graph = crawler.getLinkGraph();
+			assertEquals(base + "/", graph.getRoot());
+			assertEquals(4, graph.nodeCount());
+			assertArrayEquals(new int[] { 1, 2, 1 }, graph.getDepthDistribution());
+		} finally {
+			server.stop();
+		}
+	}
+}
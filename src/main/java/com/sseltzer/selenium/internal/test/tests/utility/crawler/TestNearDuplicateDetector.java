@@ -0,0 +1,98 @@
+package com.sseltzer.selenium.internal.test.tests.utility.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URL;
+
+import org.junit.Test;
+
+import com.sseltzer.selenium.framework.utility.crawler.LinkExtractor;
+import com.sseltzer.selenium.framework.utility.crawler.NearDuplicateDetector;
+import com.sseltzer.selenium.framework.utility.crawler.SimHash;
+
+/**
+ *
+ *
+ * TestNearDuplicateDetector.java
+ *
+ */
+public class TestNearDuplicateDetector {
+	
+	// A results page sized like a real one: SimHash needs a few hundred shingles to be stable. 
+	private static final String LISTING = listing();
+
+	@Test
+	public void testSimHashDistance() {
+		long listing = SimHash.of(LISTING + "Sorted by distance.");
+		long resorted = SimHash.of(LISTING + "Sorted by name.");
+		long other = SimHash.of("Sign in to your account to see the coupons you have saved, print them, or share "
+				+ "them with a friend. Forgot your password? We can email you a link to reset it.");
+		assertEquals(0, SimHash.distance(listing, SimHash.of(LISTING.toUpperCase() + "sorted, by distance")));
+		assertTrue(SimHash.distance(listing, resorted) <= 3);
+		assertTrue(SimHash.distance(listing, other) > 10);
+	}
+	
+	@Test
+	public void testExtractorHashesTextOnly() throws IOException {
+		String markup = "<html><head><style>p { color: red }</style><script>var x = 1;</script></head>"
+				+ "<body><p class=\"a\">" + LISTING + "</p><a href=\"/next\">More</a></body></html>";
+		String other = "<div id=\"b\"><span>" + LISTING + "</span> <b>More</b></div>";
+		assertEquals(SimHash.of(LISTING + " More"), extract(markup));
+		assertEquals(extract(markup), extract(other));
+	}
+	
+	@Test
+	public void testPatternOf() {
+		assertEquals("www.valpak.com/coupons/search?page&sort", 
+				NearDuplicateDetector.patternOf("http://www.valpak.com/coupons/search?sort=distance&page=3"));
+		assertEquals("www.valpak.com/coupons/search?page&sort", 
+				NearDuplicateDetector.patternOf("http://WWW.valpak.com/coupons/search?page=4&sort=name"));
+		assertEquals("www.valpak.com/coupons/printable/#/#", 
+				NearDuplicateDetector.patternOf("http://www.valpak.com/coupons/printable/123/45678"));
+	}
+	
+	@Test
+	public void testPrunesPatternsOfDuplicates() {
+		NearDuplicateDetector detector = new NearDuplicateDetector(3, 3, 0.6);
+		String search = "http://www.valpak.com/coupons/search?sort=";
+		assertFalse(detector.check("http://www.valpak.com/coupons/search", SimHash.of(LISTING)));
+		assertFalse(detector.check("http://www.valpak.com/coupons/savings", SimHash.of("Nothing like the listing at all, "
+				+ "just a page about how savings work and where to find them in your mailbox.")));
+		assertTrue(detector.check(search + "distance", SimHash.of(LISTING + "Sorted by distance.")));
+		assertTrue(detector.check(search + "name", SimHash.of(LISTING + "Sorted by name.")));
+		assertFalse(detector.isPruned(search + "newest"));
+		assertTrue(detector.check(search + "newest", SimHash.of(LISTING + "Sorted by newest.")));
+		assertTrue(detector.isPruned(search + "oldest"));
+		assertFalse(detector.isPruned("http://www.valpak.com/coupons/search"));
+		assertEquals(3, detector.getDuplicateCount());
+		assertEquals(1, detector.getPrunedPatternCount());
+		assertEquals("www.valpak.com/coupons/search?sort", detector.getPrunedPatterns().get(0));
+	}
+	
+	@Test
+	public void testWideDistanceScansEverything() {
+		NearDuplicateDetector detector = new NearDuplicateDetector(8, 1, 1);
+		assertFalse(detector.check("http://a.com/1", 0x00000000000000FFL));
+		assertTrue(detector.check("http://a.com/2", 0x000000000000FF00L ^ 0x000000000000FFFFL ^ 0x0000000000000003L));
+		assertFalse(detector.check("http://a.com/3", 0xFFFFFFFFFFFF0000L));
+	}
+	
+	private static String listing() {
+		String[] stores = { "Jiffy Lube", "Midas", "Tony's Pizza", "Sparkle Wash", "Olive Garden", "Home Depot", "Great Clips", "Pet Supplies Plus" };
+		String[] deals = { "oil changes", "tire rotation", "large pizzas", "car washes", "entrees", "paint", "haircuts", "dog food" };
+		StringBuilder listing = new StringBuilder();
+		for (int i = 0; i < 40; i++) {
+			listing.append("Save " + (5 + i * 3) + "% on " + deals[i % 8] + " at " + stores[(i * 3) % 8] 
+					+ " location " + (100 + i) + ". Expires " + (i % 12 + 1) + "/30. ");
+		}
+		return listing.toString();
+	}
+	
+	private static long extract(String html) throws IOException {
+		return new LinkExtractor(new URL("http://www.valpak.com/")).extract(new StringReader(html)).getSimHash();
+	}
+}
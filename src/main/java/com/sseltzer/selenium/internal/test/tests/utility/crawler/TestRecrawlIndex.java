@@ -0,0 +1,131 @@
+package com.sseltzer.selenium.internal.test.tests.utility.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.sseltzer.selenium.framework.utility.crawler.CrawlCheckpoint;
+import com.sseltzer.selenium.framework.utility.crawler.CrawledPage;
+import com.sseltzer.selenium.framework.utility.crawler.Crawler;
+import com.sseltzer.selenium.framework.utility.crawler.CrawlerConfig;
+import com.sseltzer.selenium.framework.utility.crawler.PageRecord;
+import com.sseltzer.selenium.framework.utility.crawler.RecrawlIndex;
+import com.sseltzer.selenium.internal.test.tests.utility.LoopbackServer;
+
+/**
+ *
+ *
+ * TestRecrawlIndex.java
+ *
+ */
+public class TestRecrawlIndex {
+	
+	private static final String PAGE = "http://www.valpak.com/coupons";
+
+	@Test
+	public void testSavedRecordsAreThePreviousOfTheNextCrawl() throws IOException {
+		File file = new File(Files.createTempDirectory("recrawl").toFile(), "index.bin");
+		RecrawlIndex first = new RecrawlIndex(file);
+		assertNull(first.getPrevious(PAGE));
+		first.record(PAGE, new PageRecord("\"abc\"", null, 42L, Arrays.asList(PAGE + "/a", PAGE + "/b")));
+		first.save();
+		
+		RecrawlIndex second = new RecrawlIndex(file);
+		PageRecord previous = second.getPrevious(PAGE);
+		assertEquals("\"abc\"", previous.getETag());
+		assertNull(previous.getLastModified());
+		assertEquals(42L, previous.getContentHash());
+		assertEquals(Arrays.asList(PAGE + "/a", PAGE + "/b"), previous.getOutlinks());
+		assertEquals(0, second.currentSize());
+	}
+	
+	@Test
+	public void testBrokenPagesAreRememberedForTheNextCrawl() throws IOException {
+		File file = new File(Files.createTempDirectory("recrawl").toFile(), "index.bin");
+		RecrawlIndex first = new RecrawlIndex(file);
+		first.recordBroken(PAGE + "/gone");
+		first.recordBroken(PAGE + "/flaky");
+		first.record(PAGE + "/flaky", new PageRecord(null, null, 1L, Arrays.<String> asList()));
+		first.save();
+		
+		RecrawlIndex second = new RecrawlIndex(file);
+		assertTrue(second.wasBroken(PAGE + "/gone"));
+		assertFalse(second.wasBroken(PAGE + "/flaky"));
+		assertEquals(1, second.previousSize());
+	}
+	
+	@Test
+	public void testUrlsOver64KbSurviveSaving() throws IOException {
+		File file = new File(Files.createTempDirectory("recrawl").toFile(), "index.bin");
+		StringBuilder query = new StringBuilder(PAGE + "?track=");
+		while (query.length() < 70000) query.append("0123456789");
+		String longUrl = query.toString();
+		RecrawlIndex first = new RecrawlIndex(file);
+		first.record(longUrl, new PageRecord(null, null, 7L, Arrays.asList(longUrl + "/a")));
+		first.recordBroken(longUrl + "/gone");
+		first.save();
+		
+		RecrawlIndex second = new RecrawlIndex(file);
+		assertEquals(Arrays.asList(longUrl + "/a"), second.getPrevious(longUrl).getOutlinks());
+		assertTrue(second.wasBroken(longUrl + "/gone"));
+	}
+	
+	@Test
+	public void testNotModifiedReusesPreviousLinks() {
+		PageRecord previous = new PageRecord("\"abc\"", "Tue, 01 Sep 2026 00:00:00 GMT", 42L, Arrays.asList(PAGE + "/a"));
+		CrawledPage page = CrawledPage.notModified(PAGE, previous, "\"def\"", null);
+		assertTrue(page.isNotModified());
+		assertFalse(page.isBroken());
+		assertEquals("\"def\"", page.getETag());
+		assertEquals(previous.getLastModified(), page.getLastModified());
+		assertEquals(previous.getOutlinks(), page.getLinks());
+	}
+	
+	@Test
+	public void testResumedCrawlKeepsRecordsOfPagesFinishedBeforeTheRestart() throws IOException {
+		LoopbackServer server = new LoopbackServer();
+		server.page("/", "<a href=\"/a\">a</a><a href=\"/b\">b</a>");
+		server.page("/a", "a");
+		server.page("/b", "b");
+		server.start();
+		try {
+			String seed = server.url("/");
+			File directory = Files.createTempDirectory("recrawl").toFile();
+			File file = new File(directory, "index.bin");
+			RecrawlIndex earlier = new RecrawlIndex(file);
+			for (String page : new String[] { "", "a", "b" }) 
+				earlier.record(seed + page, new PageRecord(null, null, 1L, Arrays.<String> asList()));
+			earlier.save();
+			// the process died after finishing the seed and /a 
+			File checkpointDir = new File(directory, "checkpoint");
+			CrawlCheckpoint journal = CrawlCheckpoint.create(checkpointDir, seed, 60000);
+			journal.seen(seed);
+			journal.queued(seed + "a", 1);
+			journal.queued(seed + "b", 1);
+			journal.done(seed);
+			journal.visited(seed + "a");
+			journal.done(seed + "a");
+			journal.close();
+			
+			Crawler crawler = new Crawler(new CrawlerConfig.Builder().recrawlIndex(file.getPath()).build());
+			crawler.resume(checkpointDir.getPath());
+			
+			assertEquals(Arrays.asList("GET /b"), server.getRequests());
+			RecrawlIndex saved = new RecrawlIndex(file);
+			assertEquals(3, saved.previousSize());
+			assertNotNull(saved.getPrevious(seed));
+			assertNotNull(saved.getPrevious(seed + "a"));
+		} finally {
+			server.stop();
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package com.sseltzer.selenium.internal.test.tests.utility.crawler;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.sseltzer.selenium.framework.utility.crawler.RobotsTxt;
+
+/**
+ *
+ *
+ * TestRobotsTxt.java
+ *
+ */
+public class TestRobotsTxt {
+
+	@Test
+	public void testRobotsCrawlDelay() {
+		String robots = "User-agent: *\nCrawl-delay: 2 # seconds\nDisallow: /tmp\n\n"
+				+ "User-agent: Googlebot\nUser-agent: ValpakQA\nCrawl-delay: 0.5\n";
+		assertEquals(2000, RobotsTxt.parseCrawlDelay(robots, null));
+		assertEquals(2000, RobotsTxt.parseCrawlDelay(robots, "SomeBot/1.0"));
+		assertEquals(500, RobotsTxt.parseCrawlDelay(robots, "ValpakQA/1.0"));
+		assertEquals(0, RobotsTxt.parseCrawlDelay("User-agent: *\nDisallow: /\n", null));
+	}
+}
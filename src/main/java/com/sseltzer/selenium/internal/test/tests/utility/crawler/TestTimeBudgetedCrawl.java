@@ -0,0 +1,64 @@
+package com.sseltzer.selenium.internal.test.tests.utility.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+import com.sseltzer.selenium.framework.utility.crawler.Crawler;
+import com.sseltzer.selenium.framework.utility.crawler.CrawlerConfig;
+import com.sseltzer.selenium.framework.utility.crawler.RecrawlIndex;
+import com.sseltzer.selenium.internal.test.tests.utility.LoopbackServer;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ *
+ *
+ * TestTimeBudgetedCrawl.java
+ * 
+ * Crawls an endless loopback site, where every page takes 100ms and links to five new ones, on 
+ * a one second budget. 
+ *
+ */
+public class TestTimeBudgetedCrawl {
+
+	@Test
+	public void testStopsAtTheDeadlineMostImportantFirst() throws IOException {
+		LoopbackServer server = new LoopbackServer();
+		server.setLatency(100);
+		server.setFallback(new LoopbackServer.Responder() {
+			public LoopbackServer.Response respond(HttpExchange exchange, String path) {
+				long page = path.equals("/") ? 0 : Long.parseLong(path.substring(3));
+				StringBuilder links = new StringBuilder();
+				for (long next = page * 5 + 1; next <= page * 5 + 5; next++) links.append("<a href=\"/p/" + next + "\">more</a>");
+				return LoopbackServer.Response.html(links.toString());
+			}
+		});
+		server.start();
+		try {
+			String base = server.base();
+			File index = new File(Files.createTempDirectory("budget").toFile(), "index.bin");
+			RecrawlIndex previous = new RecrawlIndex(index);
+			previous.recordBroken(base + "/p/5");
+			previous.save();
+			
+			Crawler crawler = new Crawler(new CrawlerConfig.Builder().recrawlIndex(index.getPath()).timeBudget(1000).build());
+			long started = System.currentTimeMillis();
+			crawler.crawl(base + "/");
+			long elapsed = System.currentTimeMillis() - started;
+			
+			assertTrue("took " + elapsed + "ms", elapsed < 3000);
+			assertTrue(crawler.isOutOfTime());
+			assertTrue(crawler.getUncrawledCount() > 0);
+			assertEquals(base + "/p/5", crawler.getVisitedUrls().get(0));
+			assertTrue(crawler.getVisitedUrls().size() < 15);
+			assertTrue(new RecrawlIndex(index).previousSize() > 1);
+		} finally {
+			server.stop();
+		}
+	}
+}
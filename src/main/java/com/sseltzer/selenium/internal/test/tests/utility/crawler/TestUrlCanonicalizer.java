@@ -0,0 +1,77 @@
+package com.sseltzer.selenium.internal.test.tests.utility.crawler;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.sseltzer.selenium.framework.utility.crawler.Crawler;
+import com.sseltzer.selenium.framework.utility.crawler.CrawlerConfig;
+import com.sseltzer.selenium.framework.utility.crawler.LinkGraph;
+import com.sseltzer.selenium.framework.utility.crawler.filter.UrlCanonicalizer;
+import com.sseltzer.selenium.internal.test.tests.utility.LoopbackServer;
+
+/**
+ *
+ *
+ * TestUrlCanonicalizer.java
+ *
+ */
+public class TestUrlCanonicalizer {
+	
+	private static final UrlCanonicalizer DEFAULT = UrlCanonicalizer.DEFAULT;
+
+	@Test
+	public void testDefaultRules() {
+		assertEquals("http://www.valpak.com/coupons/search?page=2&zip=33701", 
+				DEFAULT.canonicalize("HTTP://WWW.Valpak.com:80/coupons/search?zip=33701&page=2#results"));
+		assertEquals("https://www.valpak.com/", DEFAULT.canonicalize("https://www.valpak.com:443"));
+		assertEquals("https://www.valpak.com:8443/a", DEFAULT.canonicalize("https://www.valpak.com:8443/a?"));
+		assertEquals("http://www.valpak.com/coupons/", DEFAULT.canonicalize("http://www.valpak.com/local/../coupons/./"));
+		assertEquals("http://www.valpak.com/a", DEFAULT.canonicalize("http://www.valpak.com/../a"));
+		assertEquals("http://www.valpak.com/~me/a%2Fb?q=%3D", DEFAULT.canonicalize("http://www.valpak.com/%7eme/a%2fb?q=%3d"));
+		assertEquals("http://user@www.valpak.com/Coupons/", DEFAULT.canonicalize("http://user@WWW.VALPAK.COM/Coupons/"));
+		assertEquals("mailto:help@valpak.com", DEFAULT.canonicalize("mailto:help@valpak.com#x"));
+	}
+	
+	@Test
+	public void testSameNamedParamsKeepTheirOrder() {
+		assertEquals("http://a.com/?a=1&b=2&b=1&c", DEFAULT.canonicalize("http://a.com/?b=2&c&a=1&b=1"));
+		UrlCanonicalizer ordered = new UrlCanonicalizer.Builder().keepQueryOrder().build();
+		assertEquals("http://a.com/?b=2&a=1", ordered.canonicalize("http://a.com/?b=2&a=1"));
+	}
+	
+	@Test
+	public void testOptionalRules() {
+		UrlCanonicalizer canonical = new UrlCanonicalizer.Builder()
+				.removeTrailingSlash()
+				.lowerCasePath()
+				.removeQueryParam("utm_*")
+				.removeQueryParam("sessionid")
+				.build();
+		assertEquals("http://www.valpak.com/coupons?zip=33701", 
+				canonical.canonicalize("http://www.valpak.com/Coupons/?utm_source=mail&zip=33701&utm_medium=x&sessionid=9"));
+		assertEquals("http://www.valpak.com/", canonical.canonicalize("http://www.valpak.com/?utm_source=mail"));
+		assertEquals("http://www.valpak.com/a", canonical.canonicalize("http://www.valpak.com/a/b/.."));
+	}
+	
+	@Test
+	public void testSeedWithoutTrailingSlashIsFetchedOnce() {
+		LoopbackServer server = new LoopbackServer();
+		server.page("/", "<a href=\"/\">home</a><a href=\"/a\">a</a>");
+		server.start();
+		try {
+			server.page("/a", "<a href=\"" + server.base() + "\">home</a>");
+			Crawler crawler = new Crawler(new CrawlerConfig.Builder().recordLinkGraph().build());
+			crawler.crawl(server.base());
+			
+			assertEquals(Arrays.asList("GET /", "GET /a"), server.getRequests());
+			LinkGraph graph = crawler.getLinkGraph();
+			assertEquals(server.url("/"), graph.getRoot());
+			assertEquals(2, graph.nodeCount());
+		} finally {
+			server.stop();
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package com.sseltzer.selenium.internal.test.tests.utility.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.sseltzer.selenium.framework.utility.crawler.UrlFilter;
+import com.sseltzer.selenium.framework.utility.crawler.filter.AhoCorasick;
+import com.sseltzer.selenium.framework.utility.crawler.filter.UrlFilterEngine;
+import com.sseltzer.selenium.framework.utility.crawler.filter.UrlParts;
+
+/**
+ *
+ *
+ * TestUrlFilterEngine.java
+ *
+ */
+public class TestUrlFilterEngine {
+
+	@Test
+	public void testAhoCorasickAgreesWithContains() {
+		List<String> patterns = Arrays.asList("he", "she", "his", "hers", "sort=", "radius=", "caf\u00e9");
+		AhoCorasick automaton = new AhoCorasick(patterns);
+		Random random = new Random(7);
+		String alphabet = "hersiodt=a\u00e9cf";
+		for (int i = 0; i < 5000; i++) {
+			StringBuilder text = new StringBuilder();
+			int length = random.nextInt(12);
+			for (int j = 0; j < length; j++) text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+			boolean expected = false;
+			for (String pattern : patterns) expected |= text.toString().contains(pattern);
+			assertEquals(text.toString(), expected, automaton.matches(text));
+		}
+	}
+	
+	@Test
+	public void testUrlParts() {
+		UrlParts parts = UrlParts.of("http://user@WWW.Valpak.com:8080/coupons/tampa?sort=a&page=2#top");
+		assertEquals("www.valpak.com", parts.getHost());
+		assertEquals("/coupons/tampa", parts.getPath());
+		assertEquals("sort=a&page=2", parts.getQuery());
+		assertEquals("/", UrlParts.of("http://www.valpak.com?x").getPath());
+	}
+	
+	@Test
+	public void testIncludeKindsNarrowAndExcludesWin() {
+		UrlFilterEngine rules = new UrlFilterEngine.Builder()
+			.includeHost("valpak.com")
+			.includePathPrefix("/coupons")
+			.includePathPrefix("/coupons/savings")
+			.includePathPrefix("/deals")
+			.excludeGlob("/coupons/*/grocery/**")
+			.excludeQueryParam("radius")
+			.excludeRegex("page=\\d{3,}")
+			.build();
+		assertTrue(rules.accepts("http://www.valpak.com/coupons/tampa"));
+		assertTrue(rules.accepts("https://valpak.com/deals?page=12"));
+		assertFalse(rules.accepts("http://www.valpak.com/blog"));
+		assertFalse(rules.accepts("http://www.facebook.com/coupons?u=www.valpak.com"));
+		assertFalse(rules.accepts("http://www.valpak.com/coupons/tampa/grocery/milk/2"));
+		assertTrue(rules.accepts("http://www.valpak.com/coupons/grocery"));
+		assertFalse(rules.accepts("http://www.valpak.com/coupons?zip=33701&radius=5"));
+		assertTrue(rules.accepts("http://www.valpak.com/coupons?radiuses=5"));
+		assertFalse(rules.accepts("http://www.valpak.com/deals?page=120"));
+	}
+	
+	@Test
+	public void testUrlFilterKeepsSeedScopeAndBlacklist() {
+		UrlFilter filter = new UrlFilter("http://www.valpak.com/", Arrays.asList("grocery"));
+		assertTrue(filter.accepts("http://www.valpak.com/coupons/tampa"));
+		assertFalse(filter.accepts("http://www.valpak.com/coupons/grocery"));
+		assertFalse(filter.accepts("http://www.valpak.com/search?sort=name"));
+		assertFalse(filter.accepts("http://www.google.com/"));
+		List<String> none = new ArrayList<String>();
+		UrlFilter narrowed = new UrlFilter("http://www.valpak.com/", none, new UrlFilterEngine.Builder().excludePathPrefix("/coupons").build());
+		assertFalse(narrowed.accepts("http://www.valpak.com/coupons/tampa"));
+		assertTrue(narrowed.accepts("http://www.valpak.com/deals"));
+	}
+}
@@ -0,0 +1,102 @@
+package com.sseltzer.selenium.internal.test.tests.utility.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.sseltzer.selenium.framework.utility.crawler.BloomSeenSet;
+import com.sseltzer.selenium.framework.utility.crawler.CrawlPriority;
+import com.sseltzer.selenium.framework.utility.crawler.Crawler;
+import com.sseltzer.selenium.framework.utility.crawler.CrawlerConfig;
+import com.sseltzer.selenium.framework.utility.crawler.FingerprintSeenSet;
+import com.sseltzer.selenium.framework.utility.crawler.UrlInterner;
+import com.sseltzer.selenium.internal.test.tests.utility.LoopbackServer;
+
+/**
+ *
+ *
+ * TestUrlSeenSet.java
+ *
+ */
+public class TestUrlSeenSet {
+	
+	private static String url(int i) {
+		return "http://www.valpak.com/coupons/savings/category-" + i;
+	}
+
+	@Test
+	public void testFingerprintSetIsExactAcrossGrowth() {
+		FingerprintSeenSet seen = new FingerprintSeenSet(16);
+		for (int i = 0; i < 200000; i++) assertTrue(seen.add(url(i)));
+		for (int i = 0; i < 200000; i++) assertFalse(seen.add(url(i)));
+		assertEquals(200000, seen.size());
+		assertTrue(seen.contains(url(199999)));
+		assertFalse(seen.contains(url(200000)));
+	}
+	
+	@Test
+	public void testInternerGivesDenseIdsAndSharesInstances() {
+		UrlInterner urls = new UrlInterner(16);
+		for (int i = 0; i < 100000; i++) assertEquals(i, urls.put(url(i)));
+		for (int i = 0; i < 100000; i++) assertEquals(-i - 1, urls.put(url(i)));
+		assertEquals(100000, urls.size());
+		assertEquals(42, urls.intern(url(42)));
+		assertEquals(-1, urls.idOf(url(100000)));
+		assertFalse(urls.add(url(7)));
+		assertTrue(urls.add(url(100000)));
+		assertTrue(urls.contains(url(100000)));
+		String first = urls.urlOf(3);
+		assertTrue(first == urls.urlOf(urls.idOf(new String(url(3)))));
+		assertEquals(url(3), first);
+	}
+	
+	@Test
+	public void testBloomSetNeverForgetsAndStaysNearItsErrorRate() {
+		BloomSeenSet seen = new BloomSeenSet(100000, 0.01);
+		for (int i = 0; i < 100000; i++) seen.add(url(i));
+		for (int i = 0; i < 100000; i++) assertTrue(seen.contains(url(i)));
+		int falsePositives = 0;
+		for (int i = 100000; i < 200000; i++) {
+			if (seen.contains(url(i))) falsePositives++;
+		}
+		assertTrue("false positives: " + falsePositives, falsePositives < 2000);
+		assertTrue(seen.getBitCount() < 100000 * 10);
+	}
+	
+	@Test
+	public void testCrawlInternsUrlsOnlyWhenItNeedsIds() {
+		LoopbackServer server = new LoopbackServer();
+		server.page("/", "<a href=\"/a\">a</a>");
+		server.page("/a", "<a href=\"/\">home</a>");
+		server.start();
+		try {
+			Crawler crawler = new Crawler();
+			crawler.crawl(server.base());
+			assertNull(crawler.getUrlIds());
+			assertEquals(1, crawler.getVisitedUrls().size());
+			Crawler prioritized = new Crawler(new CrawlerConfig.Builder().crawlPriority(new CrawlPriority()).build());
+			prioritized.crawl(server.base());
+			assertNotNull(prioritized.getUrlIds());
+			assertEquals(2, prioritized.getUrlIds().size());
+		} finally {
+			server.stop();
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testLinkGraphNeedsExactSeenSet() {
+		new CrawlerConfig.Builder().recordLinkGraph().probabilisticSeenSet(1000, 0.01).build();
+	}
+	
+	@Test
+	public void testNullMaxDepthIsUnlimited() {
+		assertEquals(Integer.MAX_VALUE, new Crawler((Integer) null).getConfig().getMaxDepth());
+		assertEquals(Integer.MAX_VALUE, new Crawler(Arrays.asList("/logout"), null).getConfig().getMaxDepth());
+	}
+}
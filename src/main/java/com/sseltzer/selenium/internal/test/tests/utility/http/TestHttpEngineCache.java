@@ -0,0 +1,187 @@
+package com.sseltzer.selenium.internal.test.tests.utility.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sseltzer.selenium.framework.error.exceptions.FrameworkException;
+import com.sseltzer.selenium.framework.utility.http.FetchResponse;
+import com.sseltzer.selenium.framework.utility.http.HttpEngine;
+import com.sseltzer.selenium.framework.utility.http.cache.CachedResponse;
+import com.sseltzer.selenium.framework.utility.http.cache.DiskResponseCache;
+import com.sseltzer.selenium.framework.utility.http.cache.MemoryResponseCache;
+import com.sseltzer.selenium.framework.utility.http.cache.ResponseCache;
+import com.sseltzer.selenium.framework.utility.ratelimit.HostRateLimiter;
+import com.sseltzer.selenium.framework.utility.ratelimit.TokenBucket;
+import com.sseltzer.selenium.internal.test.tests.utility.LoopbackServer;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ *
+ *
+ * TestHttpEngineCache.java
+ * 
+ * Runs HttpEngine against a loopback server that counts requests. /fresh is cacheable for an 
+ * hour, /etag must be revalidated every time and answers If-None-Match with 304, /slow takes a 
+ * moment so concurrent requests overlap, and /trickle sends its headers and then stalls mid-body. 
+ *
+ */
+public class TestHttpEngineCache {
+	
+	private final LoopbackServer server = new LoopbackServer();
+	private final AtomicInteger notModified = new AtomicInteger();
+
+	@Before
+	public void startServer() {
+		server.respond("/fresh", LoopbackServer.Response.html("/fresh").header("Cache-Control", "max-age=3600"));
+		server.setFallback(new LoopbackServer.Responder() {
+			public LoopbackServer.Response respond(HttpExchange exchange, String path) {
+				if (path.equals("/slow")) LoopbackServer.pause(200);
+				if (!path.equals("/etag")) return LoopbackServer.Response.html(path);
+				boolean revalidating = "\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"));
+				if (revalidating) notModified.incrementAndGet();
+				return new LoopbackServer.Response(revalidating ? 304 : 200, revalidating ? null : "<html><body>/etag</body></html>")
+					.header("Cache-Control", "no-cache")
+					.header("ETag", "\"v1\"");
+			}
+		});
+		server.handle("/trickle", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				exchange.sendResponseHeaders(200, 0);
+				exchange.getResponseBody().write('<');
+				exchange.getResponseBody().flush();
+				LoopbackServer.pause(5000);
+				exchange.close();
+			}
+		});
+		server.start();
+	}
+	
+	@After
+	public void stopServer() {
+		server.stop();
+	}
+	
+	@Test
+	public void testFreshResponseIsServedFromCache() {
+		HttpEngine engine = engine(new MemoryResponseCache());
+		assertEquals("<html><body>/fresh</body></html>", engine.fetch(url("/fresh")).body());
+		assertEquals("<html><body>/fresh</body></html>", engine.fetch(url("/fresh")).body());
+		assertEquals(1, server.getRequestCount());
+	}
+	
+	@Test
+	public void testStaleResponseIsRevalidated() {
+		HttpEngine engine = engine(new MemoryResponseCache());
+		engine.fetch(url("/etag"));
+		FetchResponse revalidated = engine.fetch(url("/etag"));
+		assertEquals(200, revalidated.statusCode());
+		assertEquals("<html><body>/etag</body></html>", revalidated.body());
+		assertEquals(2, server.getRequestCount());
+		assertEquals(1, notModified.get());
+	}
+	
+	@Test
+	public void testConcurrentRequestsForOneUrlAreCoalesced() {
+		HttpEngine engine = engine(null);
+		List<CompletableFuture<FetchResponse>> pending = new ArrayList<CompletableFuture<FetchResponse>>();
+		for (int i = 0; i < 10; i++) pending.add(engine.fetchAsync(url("/slow")));
+		for (CompletableFuture<FetchResponse> future : pending) assertEquals(200, future.join().statusCode());
+		assertEquals(1, server.getRequestCount());
+	}
+	
+	@Test
+	public void testDiskCacheSurvivesANewEngine() throws IOException {
+		File directory = Files.createTempDirectory("response-cache").toFile();
+		engine(new DiskResponseCache(directory)).fetch(url("/fresh"));
+		CachedResponse stored = new DiskResponseCache(directory).get(url("/fresh"));
+		assertNotNull(stored);
+		assertEquals("max-age=3600", stored.getResponse().header("cache-control"));
+		engine(new DiskResponseCache(directory)).fetch(url("/fresh"));
+		assertEquals(1, server.getRequestCount());
+	}
+	
+	@Test
+	public void testDiskCacheKeepsHeadersOver64KB() throws IOException {
+		StringBuilder policy = new StringBuilder("default-src 'self'");
+		while (policy.length() < 100000) policy.append(" https://cdn").append(policy.length()).append(".example.com");
+		Map<String, List<String>> headers = new LinkedHashMap<String, List<String>>();
+		headers.put("content-security-policy", Arrays.asList(policy.toString()));
+		FetchResponse response = new FetchResponse(url("/big"), 200, headers, "body".getBytes("UTF-8"));
+		File directory = Files.createTempDirectory("response-cache").toFile();
+		new DiskResponseCache(directory).put(url("/big"), new CachedResponse(response, 1L));
+		CachedResponse stored = new DiskResponseCache(directory).get(url("/big"));
+		assertNotNull(stored);
+		assertEquals(policy.toString(), stored.getResponse().header("content-security-policy"));
+		assertEquals("body", stored.getResponse().body());
+	}
+	
+	@Test
+	public void testStalledBodyTimesOut() {
+		HttpEngine engine = new HttpEngine(8, 500);
+		long started = System.currentTimeMillis();
+		try {
+			engine.fetch(url("/trickle"));
+			fail("a body that never finishes should time out");
+		} catch (FrameworkException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("Timed out"));
+		}
+		assertTrue(System.currentTimeMillis() - started < 3000);
+	}
+	
+	@Test
+	public void testQueueOfSynchronousFailuresDoesNotRecurse() throws Exception {
+		HttpEngine engine = new HttpEngine(1, 5000);
+		final AtomicInteger buckets = new AtomicInteger();
+		// every request after the first fails before it reaches the network 
+		engine.setRateLimiter(new HostRateLimiter(1000, 1000) {
+			public TokenBucket getBucket(String host) {
+				if (buckets.incrementAndGet() > 1) throw new IllegalStateException("no permit");
+				return super.getBucket(host);
+			}
+		});
+		CompletableFuture<FetchResponse> slow = engine.fetchAsync(url("/slow"));
+		List<CompletableFuture<FetchResponse>> failing = new ArrayList<CompletableFuture<FetchResponse>>();
+		for (int i = 0; i < 20000; i++) failing.add(engine.fetchAsync(url("/page/" + i)));
+		
+		assertEquals(200, slow.get(5, TimeUnit.SECONDS).statusCode());
+		for (CompletableFuture<FetchResponse> request : failing) {
+			try {
+				request.get(5, TimeUnit.SECONDS);
+				fail("the rate limiter refused this request");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof IllegalStateException);
+			}
+		}
+	}
+	
+	private HttpEngine engine(ResponseCache cache) {
+		HttpEngine engine = new HttpEngine();
+		engine.setCache(cache);
+		return engine;
+	}
+	
+	private String url(String path) {
+		return server.url(path);
+	}
+
+}
@@ -0,0 +1,101 @@
+package com.sseltzer.selenium.internal.test.tests.utility.parallelism;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.sseltzer.selenium.framework.utility.parallelism.Expander;
+import com.sseltzer.selenium.framework.utility.parallelism.ForkJoin;
+import com.sseltzer.selenium.framework.utility.parallelism.Recursive;
+
+/**
+ *
+ *
+ * TestForkJoin.java
+ *
+ */
+public class TestForkJoin {
+	
+	private static Recursive<int[], Long> sum = new Recursive<int[], Long>() {
+		public Long apply(int[] range, ForkJoin.Forks<int[], Long> forks) {
+			if (range[1] - range[0] <= 1000) {
+				long total = 0;
+				for (int i = range[0]; i < range[1]; i++) total += i;
+				return total;
+			}
+			int middle = (range[0] + range[1]) / 2;
+			ForkJoin.Fork<Long> left = forks.fork(new int[] { range[0], middle });
+			long right = forks.invoke(new int[] { middle, range[1] });
+			return left.join() + right;
+		}
+	};
+	
+	@Test
+	public void testInvokeCombinesSubtasks() {
+		ForkJoin forkJoin = new ForkJoin(4);
+		assertEquals(Long.valueOf(999999L * 1000000L / 2), forkJoin.invoke(new int[] { 0, 1000000 }, sum));
+		assertTrue(forkJoin.getMetrics().getSucceeded() > 1000);
+	}
+	
+	@Test
+	public void testExpandVisitsEachNodeOnceInDepthFirstOrder() {
+		final Map<String, List<String>> links = new HashMap<String, List<String>>();
+		links.put("/", Arrays.asList("/a", "/b"));
+		links.put("/a", Arrays.asList("/a/1", "/"));
+		links.put("/b", Arrays.asList("/a", "/b/1"));
+		final AtomicInteger visits = new AtomicInteger();
+		List<String> visited = new ForkJoin(4).expand(Arrays.asList("/"), new Expander<String, String>() {
+			public String apply(String url, List<String> children) {
+				visits.incrementAndGet();
+				if (links.containsKey(url)) children.addAll(links.get(url));
+				return url;
+			}
+		});
+		assertEquals(Arrays.asList("/", "/a", "/a/1", "/b", "/b/1"), visited);
+		assertEquals(5, visits.get());
+	}
+	
+	@Test
+	public void testExpandFailsFast() {
+		final AtomicInteger visits = new AtomicInteger();
+		try {
+			new ForkJoin(2).expand(Arrays.asList(0), new Expander<Integer, Integer>() {
+				public Integer apply(Integer i, List<Integer> children) throws Exception {
+					visits.incrementAndGet();
+					if (i == 10) throw new IllegalStateException("boom");
+					if (i < 100000) children.add(i + 1);
+					return i;
+				}
+			});
+			fail("expected the failure to be rethrown");
+		} catch (RuntimeException e) {
+			assertTrue(e.getCause() instanceof ExecutionException);
+			assertEquals("boom", e.getCause().getCause().getMessage());
+		}
+		assertEquals(11, visits.get());
+	}
+	
+	@Test
+	public void testRestartAfterShutdown() {
+		ForkJoin forkJoin = new ForkJoin(2);
+		forkJoin.shutdown();
+		assertTrue(forkJoin.isShutdown());
+		forkJoin.start();
+		List<Integer> roots = new ArrayList<Integer>(Arrays.asList(1, 2, 3));
+		assertEquals(roots, forkJoin.expand(roots, new Expander<Integer, Integer>() {
+			public Integer apply(Integer i, List<Integer> children) {
+				return i;
+			}
+		}));
+	}
+}
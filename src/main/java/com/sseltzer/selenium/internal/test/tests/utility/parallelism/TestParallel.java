@@ -0,0 +1,206 @@
+package com.sseltzer.selenium.internal.test.tests.utility.parallelism;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.sseltzer.selenium.framework.utility.parallelism.Consumer;
+import com.sseltzer.selenium.framework.utility.parallelism.Function;
+import com.sseltzer.selenium.framework.utility.parallelism.Parallel;
+import com.sseltzer.selenium.framework.utility.parallelism.ParallelMetrics;
+import com.sseltzer.selenium.framework.utility.parallelism.TaskResult;
+
+/**
+ *
+ *
+ * TestParallel.java
+ *
+ */
+public class TestParallel {
+	
+	private static List<Integer> numbers(int amount) {
+		List<Integer> numbers = new ArrayList<Integer>();
+		for (int i = 0; i < amount; i++) numbers.add(i);
+		return numbers;
+	}
+	
+	private static Function<Integer, Integer> square = new Function<Integer, Integer>() {
+		public Integer apply(Integer i) throws Exception {
+			return i * i;
+		}
+	};
+
+	@Test
+	public void testApplyPreservesInputOrder() {
+		List<Integer> output = new Parallel().apply(numbers(50), square);
+		for (int i = 0; i < 50; i++) assertEquals(i * i, (int) output.get(i));
+	}
+	
+	@Test
+	public void testStreamReturnsResultsInCompletionOrder() {
+		// the first item is the slowest, so it must come back last 
+		Iterator<Integer> results = new Parallel().stream(Arrays.asList(300, 0, 0), new Function<Integer, Integer>() {
+			public Integer apply(Integer delay) throws Exception {
+				Thread.sleep(delay);
+				return delay;
+			}
+		});
+		List<Integer> output = new ArrayList<Integer>();
+		while (results.hasNext()) output.add(results.next());
+		assertEquals(Arrays.asList(0, 0, 300), output);
+	}
+	
+	@Test
+	public void testStreamNeverExceedsMaxInFlight() {
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger peak = new AtomicInteger();
+		Parallel parallel = new Parallel();
+		parallel.setMaxInFlight(3);
+		final List<Integer> consumed = Collections.synchronizedList(new ArrayList<Integer>());
+		parallel.stream(numbers(30), new Function<Integer, Integer>() {
+			public Integer apply(Integer i) throws Exception {
+				int now = running.incrementAndGet();
+				if (now > peak.get()) peak.set(now);
+				Thread.sleep(5);
+				running.decrementAndGet();
+				return i;
+			}
+		}, new Consumer<Integer>() {
+			public void accept(Integer i) {
+				consumed.add(i);
+			}
+		});
+		assertEquals(30, consumed.size());
+		assertTrue(peak.get() <= 3);
+	}
+	
+	@Test
+	public void testVirtualThreadsRespectConcurrencyCeiling() {
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger peak = new AtomicInteger();
+		List<Integer> output = Parallel.virtualThreads(4).apply(numbers(40), new Function<Integer, Integer>() {
+			public Integer apply(Integer i) throws Exception {
+				int now = running.incrementAndGet();
+				synchronized (peak) {
+					if (now > peak.get()) peak.set(now);
+				}
+				Thread.sleep(5);
+				running.decrementAndGet();
+				return i;
+			}
+		});
+		assertEquals(numbers(40), output);
+		assertTrue(peak.get() <= 4);
+	}
+	
+	private static Function<Integer, Integer> failOnZero = new Function<Integer, Integer>() {
+		public Integer apply(Integer i) throws Exception {
+			if (i == 0) throw new IllegalStateException("bad item");
+			Thread.sleep(10);
+			return i;
+		}
+	};
+	
+	@Test
+	public void testApplyFailsFastAndCancelsOutstandingTasks() {
+		final AtomicInteger finished = new AtomicInteger();
+		try {
+			new Parallel().apply(numbers(200), new Function<Integer, Integer>() {
+				public Integer apply(Integer i) throws Exception {
+					failOnZero.apply(i);
+					finished.incrementAndGet();
+					return i;
+				}
+			});
+			fail("apply should rethrow the failure");
+		} catch (RuntimeException e) {
+			assertTrue(e.getCause().getCause() instanceof IllegalStateException);
+		}
+		// only the first wave of 20 threads can have started before the failure 
+		assertTrue(finished.get() < 100);
+	}
+	
+	@Test
+	public void testApplyAllKeepsGoodResultsAndRecordsFailures() {
+		List<TaskResult<Integer, Integer>> results = new Parallel().applyAll(numbers(20), failOnZero);
+		assertEquals(20, results.size());
+		assertFalse(results.get(0).isSuccess());
+		assertNull(results.get(0).getValue());
+		assertTrue(results.get(0).getError() instanceof IllegalStateException);
+		for (int i = 1; i < 20; i++) {
+			assertTrue(results.get(i).isSuccess());
+			assertEquals(i, (int) results.get(i).getValue());
+			assertTrue(results.get(i).getRunMillis() >= 9);
+		}
+	}
+	
+	@Test
+	public void testMetricsAccountForEveryTask() throws InterruptedException {
+		Parallel parallel = new Parallel();
+		parallel.apply(numbers(50), square);
+		parallel.applyAll(numbers(10), failOnZero);
+		ParallelMetrics metrics = parallel.getMetrics();
+		assertEquals(60, metrics.getSubmitted());
+		assertEquals(59, metrics.getSucceeded());
+		assertEquals(1, metrics.getFailed());
+		assertEquals(0, metrics.getQueueLength());
+		assertEquals(0, metrics.getInFlight());
+		assertEquals(60, metrics.getRunTimes().getCount());
+		assertTrue(metrics.jsonify().contains("\"submitted\" : 60"));
+		
+		try {
+			parallel.apply(numbers(200), failOnZero);
+		} catch (RuntimeException e) {
+			// expected, the rest are cancelled 
+		}
+		parallel.shutdown();
+		assertTrue(parallel.awaitTermination(5, TimeUnit.SECONDS));
+		assertEquals(metrics.getSubmitted(), metrics.getSucceeded() + metrics.getFailed() + metrics.getCancelled());
+		assertTrue(metrics.getCancelled() > 0);
+	}
+	
+	@Test
+	public void testMetricsForSeveralPoolsKeepSeparateKeys() throws Exception {
+		Parallel tasks = new Parallel();
+		Parallel parsers = Parallel.fixedThreads(2);
+		tasks.apply(numbers(5), square);
+		parsers.apply(numbers(3), square);
+		Map<String, ParallelMetrics> pools = new LinkedHashMap<String, ParallelMetrics>();
+		pools.put("pool", tasks.getMetrics());
+		pools.put("parsers", parsers.getMetrics());
+		String json = ParallelMetrics.jsonify(pools);
+		int parserKey = json.indexOf("\"parsers\" : {");
+		assertTrue(json.startsWith("{\n  \"pool\" : {"));
+		assertTrue(parserKey > 0);
+		assertTrue(json.substring(0, parserKey).contains("\"submitted\" : 5"));
+		assertTrue(json.substring(parserKey).contains("\"submitted\" : 3"));
+		tasks.shutdownNow();
+		parsers.shutdownNow();
+	}
+	
+	@Test
+	public void testShutdownInstanceCanBeRestarted() throws InterruptedException {
+		Parallel parallel = new Parallel();
+		parallel.shutdown();
+		assertTrue(parallel.awaitTermination(5, TimeUnit.SECONDS));
+		assertTrue(parallel.isShutdown());
+		parallel.start();
+		assertFalse(parallel.isShutdown());
+		assertEquals(4, (int) parallel.apply(Arrays.asList(2), square).get(0));
+		parallel.shutdownNow();
+	}
+}
@@ -0,0 +1,82 @@
+package com.sseltzer.selenium.internal.test.tests.utility.ratelimit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.sseltzer.selenium.framework.utility.ratelimit.AimdLimit;
+
+/**
+ *
+ *
+ * TestAimdLimit.java
+ *
+ */
+public class TestAimdLimit {
+	
+	private static final long HEALTHY = TimeUnit.MILLISECONDS.toNanos(20);
+	
+	private static void respond(AimdLimit limit, boolean throttled, long latencyNanos) throws InterruptedException {
+		limit.acquire();
+		limit.release(throttled, latencyNanos);
+	}
+
+	@Test
+	public void testRampsUpAdditivelyAndCapsAtMax() throws InterruptedException {
+		AimdLimit limit = new AimdLimit(1, 1, 8, 0.5, 3);
+		// 1/1 + 1/2 ... about one step per limit's worth of responses 
+		for (int i = 0; i < 3; i++) respond(limit, false, HEALTHY);
+		assertEquals(2, limit.getLimit());
+		for (int i = 0; i < 1000; i++) respond(limit, false, HEALTHY);
+		assertEquals(8, limit.getLimit());
+	}
+	
+	@Test
+	public void testThrottlingHalvesThenBacksOffInTime() throws InterruptedException {
+		AimdLimit limit = new AimdLimit(8, 1, 8, 0.5, 3);
+		respond(limit, true, HEALTHY);
+		assertEquals(4, limit.getLimit());
+		// a second 503 from the same round trip is not a second cut 
+		respond(limit, true, HEALTHY);
+		assertEquals(4, limit.getLimit());
+		
+		AimdLimit floor = new AimdLimit(1, 1, 8, 0.5, 3);
+		floor.release(true, 0);
+		assertEquals(1, floor.getLimit());
+		assertEquals(100, floor.getBackoffMillis());
+	}
+	
+	@Test
+	public void testLatencySpikeCountsAsOverload() throws InterruptedException {
+		AimdLimit limit = new AimdLimit(4, 1, 4, 0.5, 3);
+		for (int i = 0; i < 10; i++) respond(limit, false, HEALTHY);
+		Thread.sleep(30);
+		respond(limit, false, HEALTHY * 10);
+		assertEquals(2, limit.getLimit());
+	}
+	
+	@Test
+	public void testSustainedSlowdownIsCutOnceThenLearned() throws InterruptedException {
+		AimdLimit limit = new AimdLimit(4, 1, 4, 0.5, 3);
+		for (int i = 0; i < 10; i++) respond(limit, false, HEALTHY);
+		for (int i = 0; i < 5; i++) {
+			Thread.sleep(30);
+			respond(limit, false, HEALTHY * 10);
+		}
+		// one cut to 2, then the slower responses count as healthy and it climbs again 
+		assertTrue("limit " + limit.getLimit(), limit.getLimit() >= 2);
+		assertEquals(0, limit.getBackoffMillis());
+	}
+	
+	@Test
+	public void testMinIntervalSpacesStarts() throws InterruptedException {
+		AimdLimit limit = new AimdLimit(4, 1, 4, 0.5, 3);
+		limit.setMinInterval(50);
+		long started = System.nanoTime();
+		for (int i = 0; i < 3; i++) respond(limit, false, HEALTHY);
+		assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(95));
+	}
+}
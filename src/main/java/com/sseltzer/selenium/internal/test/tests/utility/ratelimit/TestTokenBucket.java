@@ -0,0 +1,57 @@
+package com.sseltzer.selenium.internal.test.tests.utility.ratelimit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.sseltzer.selenium.framework.utility.ratelimit.HostRateLimiter;
+import com.sseltzer.selenium.framework.utility.ratelimit.TokenBucket;
+
+/**
+ *
+ *
+ * TestTokenBucket.java
+ *
+ */
+public class TestTokenBucket {
+
+	@Test
+	public void testBurstIsAvailableImmediately() {
+		TokenBucket bucket = new TokenBucket(1, 3);
+		assertTrue(bucket.tryAcquire());
+		assertTrue(bucket.tryAcquire());
+		assertTrue(bucket.tryAcquire());
+		assertFalse(bucket.tryAcquire());
+	}
+	
+	@Test
+	public void testReserveQueuesCallersBehindEachOther() {
+		TokenBucket bucket = new TokenBucket(10, 1);
+		assertEquals(0, bucket.reserve());
+		long first = bucket.reserve();
+		long second = bucket.reserve();
+		assertTrue(first > 0);
+		assertTrue(second > first);
+	}
+	
+	@Test
+	public void testAcquireWaitsForTheConfiguredRate() throws InterruptedException {
+		TokenBucket bucket = new TokenBucket(20, 1);
+		long start = System.nanoTime();
+		for (int i = 0; i < 5; i++) bucket.acquire();
+		long elapsedMillis = (System.nanoTime() - start) / 1000000;
+		assertTrue(elapsedMillis >= 180);
+	}
+	
+	@Test
+	public void testHostsGetIndependentBuckets() {
+		HostRateLimiter limiter = new HostRateLimiter(1, 1);
+		assertTrue(limiter.tryAcquire("http://a.example.com/one"));
+		assertFalse(limiter.tryAcquire("http://a.example.com/two"));
+		assertTrue(limiter.tryAcquire("http://b.example.com/one"));
+		assertSame(limiter.getBucket("a.example.com"), limiter.getBucket("A.EXAMPLE.COM"));
+	}
+}